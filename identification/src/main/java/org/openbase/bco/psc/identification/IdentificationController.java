@@ -24,14 +24,17 @@ package org.openbase.bco.psc.identification;
  */
 
 import org.openbase.bco.psc.identification.jp.JPDistanceType;
+import org.openbase.bco.psc.identification.jp.JPIdentificationMaxUnits;
 import org.openbase.bco.psc.identification.jp.JPIdentificationThreshold;
 import org.openbase.bco.psc.identification.jp.JPUnitSelectorType;
 import org.openbase.bco.psc.identification.rsb.RSBConnection;
 import org.openbase.bco.psc.identification.selection.*;
 import org.openbase.bco.psc.identification.selection.distance.AbstractDistanceMeasure;
 import org.openbase.bco.psc.identification.selection.distance.AngleMeasure;
+import org.openbase.bco.psc.identification.selection.distance.AngleVsMaxMeasure;
 import org.openbase.bco.psc.identification.selection.distance.DistanceType;
 import org.openbase.bco.psc.identification.selection.distance.OrthogonalMeasure;
+import org.openbase.bco.psc.identification.selection.distance.OrthogonalVsMaxMeasure;
 import org.openbase.bco.psc.lib.jp.JPPscUnitFilterList;
 import org.openbase.bco.psc.lib.registry.PointingUnitChecker;
 import org.openbase.bco.registry.remote.Registries;
@@ -131,15 +134,15 @@ public class IdentificationController extends AbstractEventHandler implements Id
             case ANGLE:
                 distanceMeasure = new AngleMeasure();
                 break;
-//            case ANGLE_MAX:
-//                distanceMeasure = new AngleVsMaxMeasure();
-//                break;
+            case ANGLE_MAX:
+                distanceMeasure = new AngleVsMaxMeasure();
+                break;
             case ORTHOGONAL:
                 distanceMeasure = new OrthogonalMeasure();
                 break;
-//            case ORTHOGONAL_MAX:
-//                distanceMeasure = new OrthogonalVsMaxMeasure();
-//                break;
+            case ORTHOGONAL_MAX:
+                distanceMeasure = new OrthogonalVsMaxMeasure();
+                break;
 //            case PEARSON:
 //                distanceMeasure = new PearsonMeasure();
 //                break;
@@ -158,6 +161,9 @@ public class IdentificationController extends AbstractEventHandler implements Id
                 selector = new MeanSelector(threshold, distanceMeasure);
                 break;
         }
+        int maxUnits = JPService.getProperty(JPIdentificationMaxUnits.class).getValue();
+        LOGGER.info("Selected maximal number of units: " + maxUnits);
+        selector.setMaxUnits(maxUnits);
 
     }
 
@@ -199,6 +205,7 @@ public class IdentificationController extends AbstractEventHandler implements Id
         if (active) {
             active = false;
             rsbConnection.deactivate();
+            LOGGER.info("Candidate cache hits: " + selector.getCandidateCacheHits() + ", misses: " + selector.getCandidateCacheMisses());
             LOGGER.info("Deactivating Registry synchronization.");
             selectableObjectRegistrySynchronizer.deactivate();
         }
@@ -23,6 +23,7 @@ package org.openbase.bco.psc.identification;
  * #L%
  */
 import org.openbase.bco.psc.identification.jp.JPDistanceType;
+import org.openbase.bco.psc.identification.jp.JPIdentificationMaxUnits;
 import org.openbase.bco.psc.identification.jp.JPIdentificationThreshold;
 import org.openbase.bco.psc.identification.jp.JPUnitSelectorType;
 import org.openbase.bco.psc.lib.jp.*;
@@ -59,6 +60,7 @@ public class IdentificationLauncher extends AbstractLauncher<IdentificationContr
 
         // Threshold
         JPService.registerProperty(JPIdentificationThreshold.class);
+        JPService.registerProperty(JPIdentificationMaxUnits.class);
 
         // Unit filter
         JPService.registerProperty(JPPscUnitFilterList.class);
@@ -22,18 +22,19 @@ package org.openbase.bco.psc.identification.selection;
  * <http://www.gnu.org/licenses/gpl-3.0.html>.
  * #L%
  */
-import java.util.stream.Collectors;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import org.openbase.bco.psc.identification.selection.distance.AbstractDistanceMeasure;
 import org.openbase.jul.exception.CouldNotPerformException;
 import org.openbase.jul.exception.InstantiationException;
-import org.openbase.jul.exception.NotAvailableException;
-import org.openbase.jul.exception.printer.ExceptionPrinter;
-import org.openbase.jul.exception.printer.LogLevel;
 import org.openbase.jul.storage.registry.SynchronizableRegistryImpl;
-import org.slf4j.LoggerFactory;
 import org.openbase.type.domotic.unit.UnitProbabilityCollectionType.UnitProbabilityCollection;
 import org.openbase.type.domotic.unit.UnitProbabilityType.UnitProbability;
 import org.openbase.type.tracking.PointingRay3DFloatDistributionCollectionType.PointingRay3DFloatDistributionCollection;
 import org.openbase.type.tracking.PointingRay3DFloatDistributionType.PointingRay3DFloatDistribution;
+import org.openbase.type.tracking.PointingRay3DFloatType.PointingRay3DFloat;
+import org.openbase.type.geometry.Ray3DFloatType.Ray3DFloat;
 
 /**
  *
@@ -41,18 +42,36 @@ import org.openbase.type.tracking.PointingRay3DFloatDistributionType.PointingRay
  */
 public abstract class AbstractUnitSelector {
 
-    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(AbstractUnitSelector.class);
     private final double threshold;
-    //TODO: Ideas: maximal bounding box and kdtree first.
-    // Then rating by distances
-    // Maybe fast enough for required numbers
+    private final AbstractDistanceMeasure distance;
+    private volatile int maxUnits = 0;
 
     private SynchronizableRegistryImpl<String, SelectableObject> selectedObjectRegistry;
+    private final SpatialIndex<SelectableObject> objectIndex = new SpatialIndex<>();
 
-    public AbstractUnitSelector(double threshold) throws InstantiationException {
+    // Working arrays reused between calls, grown on demand.
+    private final BitSet candidates = new BitSet();
+    private final BitSet seen = new BitSet();
+    private final CandidateCache candidateCache = new CandidateCache();
+    private double[] halfAngles = new double[0];
+    private int[] units = new int[0];
+    private int[] block = new int[0];
+    private long[] order = new long[0];
+    private double[] scratch = new double[0];
+    private double[] probabilities = new double[0];
+    private float[] bounds = new float[0];
+    private float[] accumulated = new float[0];
+    private float[] best = new float[0];
+    // Indices of the best units in descending order of their probability, only used if maxUnits is positive.
+    private int[] top = new int[0];
+    private int topCount;
+
+    public AbstractUnitSelector(double threshold, AbstractDistanceMeasure distance) throws InstantiationException {
         this.threshold = threshold;
+        this.distance = distance;
         try {
             this.selectedObjectRegistry = new SynchronizableRegistryImpl<>();
+            this.selectedObjectRegistry.addObserver((source, data) -> updateObjects(data));
         } catch (InstantiationException ex) {
             throw new InstantiationException(this, ex);
         }
@@ -62,29 +81,262 @@ public abstract class AbstractUnitSelector {
         return selectedObjectRegistry;
     }
 
-    public UnitProbabilityCollection getUnitProbabilities(PointingRay3DFloatDistributionCollection pointingRays) throws CouldNotPerformException {
+    /**
+     * Updates the spatial index with the current selectable objects.
+     *
+     * @param objects the current objects by their unit id.
+     */
+    void updateObjects(final Map<String, SelectableObject> objects) {
+        objectIndex.update(objects);
+    }
+
+    /**
+     * Sets the maximal number of units that are published per call of
+     * {@link #getUnitProbabilities(PointingRay3DFloatDistributionCollection)}. If it is positive, only the units with
+     * the highest probabilities are published and all units whose upper bound cannot beat the current k-th best unit
+     * are skipped before the exact distance measure is calculated.
+     *
+     * @param maxUnits the maximal number of units, values smaller than 1 publish all units above the threshold.
+     */
+    public void setMaxUnits(final int maxUnits) {
+        this.maxUnits = maxUnits;
+    }
+
+    /**
+     * Returns the number of ray distributions whose candidate units were taken from the candidate cache.
+     *
+     * @return the number of cache hits.
+     */
+    public synchronized long getCandidateCacheHits() {
+        return candidateCache.getHits();
+    }
+
+    /**
+     * Returns the number of ray distributions whose candidate units had to be queried from the spatial index.
+     *
+     * @return the number of cache misses.
+     */
+    public synchronized long getCandidateCacheMisses() {
+        return candidateCache.getMisses();
+    }
+
+    public synchronized UnitProbabilityCollection getUnitProbabilities(PointingRay3DFloatDistributionCollection pointingRays) throws CouldNotPerformException {
+        final UnitTable<SelectableObject> table = objectIndex.getTable();
+        final int k = Math.max(maxUnits, 0);
+        ensureCapacity(table.size(), k);
+        seen.clear();
+        topCount = 0;
+        candidateCache.beginFrame(table);
+        for (PointingRay3DFloatDistribution rayDistribution : pointingRays.getElementList()) {
+            candidates.clear();
+            collectCandidates(table, rayDistribution);
+            int count = 0;
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                units[count++] = i;
+            }
+            if (count == 0) {
+                continue;
+            }
+            // Without a limit every candidate is evaluated anyway, so the bounds cannot save any work.
+            if (k == 0) {
+                evaluate(table, rayDistribution, units, count);
+                continue;
+            }
+            count = pruneByBounds(table, rayDistribution, count);
+            if (count == 0) {
+                continue;
+            }
+            // Evaluate the units in descending order of their bounds, k at a time, until no unit can beat the k-th best.
+            sortByBounds(count);
+            for (int from = 0; from < count && canBeat(bounds[from]); from += k) {
+                final int blockCount = Math.min(k, count - from);
+                System.arraycopy(units, from, block, 0, blockCount);
+                evaluate(table, rayDistribution, block, blockCount);
+            }
+        }
         UnitProbabilityCollection.Builder collectionBuilder = UnitProbabilityCollection.newBuilder();
-        //TODO: Invert this here! first iterate the distributions, then the objects!
-        collectionBuilder.addAllElement(selectedObjectRegistry.getEntries().stream()
-                .map(
-                        entry -> pointingRays.getElementList().stream()
-                                .map(rayDist -> getUnitProbability(entry, rayDist))
-                                .max((u1, u2) -> Float.compare(u1.getProbability(), u2.getProbability())))
-                .filter(u -> u.isPresent() && u.get().getProbability() >= threshold)
-                .map(u -> u.get())
-                .collect(Collectors.toList()));
+        if (k > 0) {
+            for (int j = 0; j < topCount; j++) {
+                addUnitProbability(collectionBuilder, table, top[j]);
+            }
+        } else {
+            for (int i = seen.nextSetBit(0); i >= 0; i = seen.nextSetBit(i + 1)) {
+                addUnitProbability(collectionBuilder, table, i);
+            }
+        }
         return collectionBuilder.build();
     }
 
-    private UnitProbability getUnitProbability(SelectableObject object, PointingRay3DFloatDistribution rayDistribution) {
-        try {
-            float prob = calculateProbability(object.getBoundingBox(), rayDistribution);
-            return UnitProbability.newBuilder().setId(object.getId()).setProbability(prob).build();
-        } catch (NotAvailableException ex) {
-            ExceptionPrinter.printHistory(new CouldNotPerformException("Could not calculate the probability for a SelectableObject", ex), LOGGER, LogLevel.WARN);
-            return UnitProbability.newBuilder().setProbability(Float.NEGATIVE_INFINITY).build();
+    private void addUnitProbability(UnitProbabilityCollection.Builder collectionBuilder, UnitTable<SelectableObject> table, int unit) {
+        if (best[unit] >= threshold) {
+            collectionBuilder.addElement(UnitProbability.newBuilder().setId(table.getId(unit)).setProbability(best[unit]));
         }
     }
 
-    protected abstract float calculateProbability(BoundingBox boundingBox, PointingRay3DFloatDistribution pointingRays);
+    /**
+     * Calculates upper bounds for the candidates of the ray distribution and removes all candidates that can neither
+     * reach the threshold nor beat the current k-th best unit.
+     *
+     * @return the number of remaining candidates.
+     */
+    private int pruneByBounds(UnitTable<SelectableObject> table, PointingRay3DFloatDistribution rayDistribution, int count) {
+        for (int j = 0; j < count; j++) {
+            bounds[j] = 0.0f;
+        }
+        for (PointingRay3DFloat pointingRay : rayDistribution.getRayList()) {
+            table.probabilityBounds(distance, pointingRay.getRay(), units, count, probabilities);
+            accumulate(bounds, probabilities, pointingRay.getCertainty(), count);
+        }
+        int remaining = 0;
+        for (int j = 0; j < count; j++) {
+            if (bounds[j] >= threshold && canBeat(bounds[j])) {
+                units[remaining] = units[j];
+                bounds[remaining] = bounds[j];
+                remaining++;
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * Sorts the candidates in descending order of their bounds. Bounds are non-negative, so their bit patterns have
+     * the same order as their values.
+     */
+    private void sortByBounds(int count) {
+        for (int j = 0; j < count; j++) {
+            order[j] = ((long) Float.floatToIntBits(Math.max(bounds[j], 0.0f)) << 32) | units[j];
+        }
+        Arrays.sort(order, 0, count);
+        for (int j = 0; j < count; j++) {
+            final long entry = order[count - 1 - j];
+            units[j] = (int) entry;
+            bounds[j] = Float.intBitsToFloat((int) (entry >>> 32));
+        }
+    }
+
+    /**
+     * Checks whether a unit with the given bound can still enter the list of the best units. Always true if the
+     * number of units is not limited.
+     */
+    private boolean canBeat(float bound) {
+        return top.length == 0 || topCount < top.length || bound > best[top[topCount - 1]];
+    }
+
+    /**
+     * Calculates the exact probabilities of the units for the ray distribution and keeps the best value per unit.
+     */
+    private void evaluate(UnitTable<SelectableObject> table, PointingRay3DFloatDistribution rayDistribution, int[] evaluatedUnits, int count) {
+        for (int j = 0; j < count; j++) {
+            accumulated[j] = 0.0f;
+        }
+        for (PointingRay3DFloat pointingRay : rayDistribution.getRayList()) {
+            table.probabilities(distance, pointingRay.getRay(), evaluatedUnits, count, scratch, probabilities);
+            accumulate(accumulated, probabilities, pointingRay.getCertainty(), count);
+        }
+        for (int j = 0; j < count; j++) {
+            final int i = evaluatedUnits[j];
+            if (!seen.get(i) || accumulated[j] > best[i]) {
+                best[i] = accumulated[j];
+                seen.set(i);
+                if (top.length > 0) {
+                    updateTop(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves a unit whose best probability increased to its position in the list of the best units.
+     */
+    private void updateTop(int unit) {
+        int position = 0;
+        while (position < topCount && top[position] != unit) {
+            position++;
+        }
+        if (position == topCount) {
+            if (topCount < top.length) {
+                topCount++;
+            } else if (best[unit] <= best[top[topCount - 1]]) {
+                return;
+            }
+            position = topCount - 1;
+        }
+        while (position > 0 && best[top[position - 1]] < best[unit]) {
+            top[position] = top[position - 1];
+            position--;
+        }
+        top[position] = unit;
+    }
+
+    private void ensureCapacity(final int size, final int k) {
+        if (top.length != k) {
+            top = new int[k];
+        }
+        if (units.length >= size) {
+            return;
+        }
+        units = new int[size];
+        block = new int[size];
+        order = new long[size];
+        scratch = new double[6 * size];
+        probabilities = new double[size];
+        bounds = new float[size];
+        accumulated = new float[size];
+        best = new float[size];
+    }
+
+    /**
+     * Collects the indices of all objects that can reach the threshold for the ray distribution using the spatial
+     * index. Candidates of rays that barely moved since the last frame are taken from the candidate cache.
+     *
+     * @param table the table the indices refer to.
+     * @param rayDistribution the ray distribution.
+     */
+    private void collectCandidates(UnitTable<SelectableObject> table, PointingRay3DFloatDistribution rayDistribution) {
+        if (threshold <= 0) {
+            if (rayDistribution.getRayCount() > 0) {
+                table.query(rayDistribution.getRay(0).getRay(), Math.PI, candidates);
+            }
+            return;
+        }
+        final int rayCount = rayDistribution.getRayCount();
+        if (halfAngles.length < rayCount) {
+            halfAngles = new double[rayCount];
+        }
+        for (int i = 0; i < rayCount; i++) {
+            final PointingRay3DFloat pointingRay = rayDistribution.getRay(i);
+            halfAngles[i] = getCullingAngle(pointingRay.getRay(), pointingRay.getCertainty(), rayCount);
+        }
+        candidateCache.collect(rayDistribution.getRayList(), halfAngles, candidates);
+    }
+
+    /**
+     * Combines the probabilities of a single ray with the values accumulated for the previous rays of the same
+     * distribution.
+     *
+     * @param accumulated the accumulated values, initially 0.
+     * @param probabilities the probabilities of the ray.
+     * @param certainty the certainty of the ray.
+     * @param count the number of valid values in both arrays.
+     */
+    protected abstract void accumulate(float[] accumulated, double[] probabilities, float certainty, int count);
+
+    /**
+     * Returns the half angle of a cone around a single ray of a distribution outside of which no object can reach the
+     * threshold because of this ray.
+     *
+     * @param ray the ray.
+     * @param certainty the certainty of the ray.
+     * @param rayCount the number of rays in the distribution.
+     * @return the half angle of the cone in radians.
+     */
+    protected abstract double getCullingAngle(Ray3DFloat ray, double certainty, int rayCount);
+
+    protected double getThreshold() {
+        return threshold;
+    }
+
+    protected AbstractDistanceMeasure getDistance() {
+        return distance;
+    }
 }
@@ -22,6 +22,7 @@ package org.openbase.bco.psc.identification.selection;
  * #L%
  */
 import javax.media.j3d.Transform3D;
+import javax.vecmath.Matrix4d;
 import javax.vecmath.Point3d;
 import javax.vecmath.Quat4d;
 import javax.vecmath.Vector3d;
@@ -46,6 +47,7 @@ public class BoundingBox {
     private Transform3D reverseTransform; //Transforms a point or vector in root coordinates to box coordinates.
     private Transform3D forwardCenterTransform; //Transforms a point or vector in box center coordinates (center is (0,0,0)) to root coordinates.
     private Transform3D reverseCenterTransform; //Transforms a point or vector in root coordinates to box center coordinates (center is (0,0,0)).
+    private double[] reverseCenterMatrix; //Row major 3x4 matrix of the reverseCenterTransform.
 
     public BoundingBox(Transform3D forwardTransform, float width, float depth, float height) {
         setForwardTransform(forwardTransform);
@@ -124,6 +126,13 @@ public class BoundingBox {
         forwardCenterTransform.mul(toTransform(new Vector3d(localCenter)));
         reverseCenterTransform = new Transform3D(forwardCenterTransform);
         reverseCenterTransform.invert();
+
+        Matrix4d matrix = new Matrix4d();
+        reverseCenterTransform.get(matrix);
+        reverseCenterMatrix = new double[]{
+            matrix.m00, matrix.m01, matrix.m02, matrix.m03,
+            matrix.m10, matrix.m11, matrix.m12, matrix.m13,
+            matrix.m20, matrix.m21, matrix.m22, matrix.m23};
     }
 
     private Vector3d toVector(final Translation translation) {
@@ -158,6 +167,16 @@ public class BoundingBox {
         return rootCenter;
     }
 
+    /**
+     * Returns the transformation from root coordinates to center coordinates of the box as row major 3x4 matrix. The
+     * returned array is shared and must not be modified.
+     *
+     * @return the matrix as array of length 12.
+     */
+    public double[] getReverseCenterMatrix() {
+        return reverseCenterMatrix;
+    }
+
     public Quat4d getOrientation() {
         //TODO: Get rid of this part!
         Quat4d orientation = new Quat4d();
@@ -0,0 +1,204 @@
+package org.openbase.bco.psc.identification.selection;
+
+/*-
+ * #%L
+ * BCO PSC Identification
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import org.openbase.type.geometry.Ray3DFloatType.Ray3DFloat;
+import org.openbase.type.math.Vec3DFloatType.Vec3DFloat;
+import org.openbase.type.tracking.PointingRay3DFloatType.PointingRay3DFloat;
+
+/**
+ * Temporal coherence cache for the candidates of the unit selection. Consecutive frames of the same pointing person
+ * differ only slightly, so instead of traversing the spatial index for every frame, the candidates of a ray
+ * distribution are queried once with a cone and bounding spheres enlarged by a margin. As long as the rays of a later
+ * distribution from the same source stay within these margins, their exact candidates are a subset of the cached ones
+ * and only the cached candidates are tested.
+ * <p>
+ * The pointing rays do not carry the id of the person, so sources are matched by the positions of the ray origins.
+ * A full query is performed if no cached source matches, if the rays moved beyond the margins or if the table changed
+ * because of a registry update. Sources that are not seen in a frame are removed.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class CandidateCache {
+
+    /**
+     * The angle in radians the rays of a source may turn before the candidates are queried again.
+     */
+    public static final double ANGLE_MARGIN = 0.1;
+    /**
+     * The distance in meters the origins of the rays of a source may move before the candidates are queried again.
+     */
+    public static final double ORIGIN_MARGIN = 0.1;
+
+    private UnitTable<?> table;
+    private List<Source> previous = new ArrayList<>();
+    private List<Source> current = new ArrayList<>();
+    private final BitSet superset = new BitSet();
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Starts a new frame. Sources that were not used in the last frame are removed, all sources are removed if the
+     * table changed.
+     *
+     * @param table the table of the frame.
+     */
+    public void beginFrame(final UnitTable<?> table) {
+        final List<Source> swap = previous;
+        previous = current;
+        current = swap;
+        current.clear();
+        if (this.table != table) {
+            previous.clear();
+            this.table = table;
+        }
+    }
+
+    /**
+     * Adds the indices of all objects whose bounding sphere intersects the cone around one of the rays to the
+     * candidates. The result is the same as querying the table for every ray.
+     *
+     * @param rays the rays of a distribution.
+     * @param halfAngles the half angles of the cones of the rays in radians.
+     * @param candidates the set the indices are added to.
+     */
+    public void collect(final List<PointingRay3DFloat> rays, final double[] halfAngles, final BitSet candidates) {
+        Source source = take(rays, halfAngles);
+        if (source == null) {
+            misses++;
+            superset.clear();
+            for (int i = 0; i < rays.size(); i++) {
+                table.query(rays.get(i).getRay(), halfAngles[i] + ANGLE_MARGIN, ORIGIN_MARGIN, superset);
+            }
+            source = new Source(rays, halfAngles, (BitSet) superset.clone());
+        } else {
+            hits++;
+        }
+        current.add(source);
+        for (int i = 0; i < rays.size(); i++) {
+            table.filter(rays.get(i).getRay(), halfAngles[i], source.candidates, candidates);
+        }
+    }
+
+    /**
+     * Removes and returns a source of the previous frame whose cached candidates are valid for the rays.
+     */
+    private Source take(final List<PointingRay3DFloat> rays, final double[] halfAngles) {
+        final Iterator<Source> iterator = previous.iterator();
+        while (iterator.hasNext()) {
+            final Source source = iterator.next();
+            if (source.covers(rays, halfAngles)) {
+                iterator.remove();
+                return source;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of distributions whose candidates were taken from the cache.
+     *
+     * @return the number of cache hits.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of distributions whose candidates had to be queried from the spatial index.
+     *
+     * @return the number of cache misses.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * The rays of a distribution at the time of the full query together with the candidates of the enlarged cones.
+     */
+    private static class Source {
+
+        private final double[] origins;
+        private final double[] directions;
+        private final double[] halfAngles;
+        private final BitSet candidates;
+
+        private Source(final List<PointingRay3DFloat> rays, final double[] halfAngles, final BitSet candidates) {
+            final int count = rays.size();
+            this.origins = new double[3 * count];
+            this.directions = new double[3 * count];
+            this.halfAngles = new double[count];
+            this.candidates = candidates;
+            for (int i = 0; i < count; i++) {
+                final Ray3DFloat ray = rays.get(i).getRay();
+                final Vec3DFloat origin = ray.getOrigin();
+                final Vec3DFloat direction = ray.getDirection();
+                final double length = Math.sqrt(direction.getX() * direction.getX() + direction.getY() * direction.getY() + direction.getZ() * direction.getZ());
+                origins[3 * i] = origin.getX();
+                origins[3 * i + 1] = origin.getY();
+                origins[3 * i + 2] = origin.getZ();
+                directions[3 * i] = direction.getX() / length;
+                directions[3 * i + 1] = direction.getY() / length;
+                directions[3 * i + 2] = direction.getZ() / length;
+                this.halfAngles[i] = halfAngles[i];
+            }
+        }
+
+        /**
+         * Checks whether every cone of the rays lies within the corresponding enlarged cone of this source. Moving the
+         * apex by at most the origin margin is covered by the enlarged spheres, turning the axis or widening the cone
+         * by at most the angle margin is covered by the enlarged cone.
+         */
+        private boolean covers(final List<PointingRay3DFloat> rays, final double[] halfAngles) {
+            if (rays.size() != this.halfAngles.length) {
+                return false;
+            }
+            for (int i = 0; i < rays.size(); i++) {
+                final Ray3DFloat ray = rays.get(i).getRay();
+                final Vec3DFloat origin = ray.getOrigin();
+                final double ox = origin.getX() - origins[3 * i];
+                final double oy = origin.getY() - origins[3 * i + 1];
+                final double oz = origin.getZ() - origins[3 * i + 2];
+                if (ox * ox + oy * oy + oz * oz > ORIGIN_MARGIN * ORIGIN_MARGIN) {
+                    return false;
+                }
+                final Vec3DFloat direction = ray.getDirection();
+                final double length = Math.sqrt(direction.getX() * direction.getX() + direction.getY() * direction.getY() + direction.getZ() * direction.getZ());
+                if (length == 0) {
+                    return false;
+                }
+                final double cosine = (direction.getX() * directions[3 * i] + direction.getY() * directions[3 * i + 1] + direction.getZ() * directions[3 * i + 2]) / length;
+                final double angle = Math.acos(Math.max(-1, Math.min(1, cosine)));
+                // negated to reject NaN values as well
+                if (!(angle + Math.max(0, halfAngles[i] - this.halfAngles[i]) <= ANGLE_MARGIN)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -23,7 +23,7 @@ package org.openbase.bco.psc.identification.selection;
  */
 import org.openbase.bco.psc.identification.selection.distance.AbstractDistanceMeasure;
 import org.openbase.jul.exception.InstantiationException;
-import org.openbase.type.tracking.PointingRay3DFloatDistributionType.PointingRay3DFloatDistribution;
+import org.openbase.type.geometry.Ray3DFloatType.Ray3DFloat;
 
 /**
  *
@@ -31,19 +31,27 @@ import org.openbase.type.tracking.PointingRay3DFloatDistributionType.PointingRay
  */
 public class MeanSelector extends AbstractUnitSelector {
 
-    private final AbstractDistanceMeasure distance;
-
     public MeanSelector(double threshold, AbstractDistanceMeasure distance) throws InstantiationException {
-        super(threshold);
-        this.distance = distance;
+        super(threshold, distance);
+    }
+
+    @Override
+    protected void accumulate(float[] accumulated, double[] probabilities, float certainty, int count) {
+        for (int i = 0; i < count; i++) {
+            accumulated[i] += (float) (probabilities[i] * certainty);
+        }
     }
 
+    /**
+     * {@inheritDoc} The probability of an object is the sum over all rays, so at least one of the rays has to contribute its share of the threshold.
+     *
+     * @param ray {@inheritDoc}
+     * @param certainty {@inheritDoc}
+     * @param rayCount {@inheritDoc}
+     * @return {@inheritDoc}
+     */
     @Override
-    protected float calculateProbability(BoundingBox boundingBox, PointingRay3DFloatDistribution pointingRays) {
-        float p = pointingRays.getRayList().stream()
-                .map((pointingRay) -> (float) (distance.probability(pointingRay.getRay(), boundingBox) * pointingRay.getCertainty()))
-                .reduce(0.0f, (accumulator, _item) -> accumulator + _item);
-//        System.out.println("mean prob: " + p);
-        return p;
+    protected double getCullingAngle(Ray3DFloat ray, double certainty, int rayCount) {
+        return getDistance().getCullingAngle(ray, getThreshold() / (certainty * rayCount));
     }
 }
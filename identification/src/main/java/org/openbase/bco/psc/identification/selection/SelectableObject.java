@@ -50,6 +50,18 @@ public class SelectableObject implements Configurable<String, UnitConfig>, Abstr
     private UnitConfig config;
     private BoundingBox boundingBox;
 
+    public SelectableObject() {
+    }
+
+    /**
+     * Creates an object with a fixed bounding box that is not connected to the registry.
+     *
+     * @param boundingBox the bounding box of the object.
+     */
+    SelectableObject(final BoundingBox boundingBox) {
+        this.boundingBox = boundingBox;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -0,0 +1,180 @@
+package org.openbase.bco.psc.identification.selection;
+
+/*-
+ * #%L
+ * BCO PSC Identification
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.type.geometry.Ray3DFloatType.Ray3DFloat;
+
+/**
+ * Bounding volume hierarchy over the bounding spheres of selectable objects in root coordinates. It is used to cull
+ * all objects that lie outside of a cone around a pointing ray before the exact distance measure is calculated.
+ * <p>
+ * The index is updated with the current entries of a registry. Only entries whose object or bounding box changed are
+ * recalculated, afterwards the hierarchy is rebuilt and published as an immutable {@link UnitTable}, so queries never
+ * block.
+ *
+ * @param <T> the type of the indexed objects.
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class SpatialIndex<T extends AbstractSelectable> {
+
+    /**
+     * The current entries by their key.
+     */
+    private final HashMap<String, Entry<T>> entries = new HashMap<>();
+    /**
+     * The current table containing the hierarchy.
+     */
+    private volatile UnitTable<T> table = new UnitTable<>(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+
+    /**
+     * Updates the index with the current entries of a registry.
+     *
+     * @param currentObjects the current objects by their key.
+     */
+    public synchronized void update(final Map<String, T> currentObjects) {
+        boolean changed = entries.keySet().retainAll(currentObjects.keySet());
+        for (final Map.Entry<String, T> mapEntry : currentObjects.entrySet()) {
+            final T object = mapEntry.getValue();
+            final BoundingBox boundingBox = getBoundingBox(object);
+            final Entry<T> entry = entries.get(mapEntry.getKey());
+            if (entry != null && entry.object == object && entry.boundingBox == boundingBox) {
+                continue;
+            }
+            if (boundingBox == null) {
+                changed |= entries.remove(mapEntry.getKey()) != null;
+            } else {
+                entries.put(mapEntry.getKey(), new Entry<>(object, boundingBox));
+                changed = true;
+            }
+        }
+        if (changed) {
+            rebuild();
+        }
+    }
+
+    private BoundingBox getBoundingBox(final T object) {
+        try {
+            return object == null ? null : object.getBoundingBox();
+        } catch (NotAvailableException ex) {
+            return null;
+        }
+    }
+
+    private void rebuild() {
+        final List<String> ids = new ArrayList<>(entries.size());
+        final List<T> objects = new ArrayList<>(entries.size());
+        final List<BoundingBox> boundingBoxes = new ArrayList<>(entries.size());
+        for (final Map.Entry<String, Entry<T>> mapEntry : entries.entrySet()) {
+            ids.add(mapEntry.getKey());
+            objects.add(mapEntry.getValue().object);
+            boundingBoxes.add(mapEntry.getValue().boundingBox);
+        }
+        table = new UnitTable<>(ids, objects, boundingBoxes);
+    }
+
+    /**
+     * Returns the current table. Indices returned by {@link UnitTable#query(Ray3DFloat, double, BitSet)} are only
+     * valid for the table they were queried from.
+     *
+     * @return the current table.
+     */
+    public UnitTable<T> getTable() {
+        return table;
+    }
+
+    /**
+     * Adds all objects whose bounding sphere intersects the cone around the ray with the given half angle to the
+     * result. If the half angle is at least pi, all objects are added, if it is negative, none are added.
+     *
+     * @param ray the ray defining the apex and the axis of the cone.
+     * @param halfAngle the half opening angle of the cone in radians.
+     * @param result the collection the objects are added to.
+     */
+    public void query(final Ray3DFloat ray, final double halfAngle, final Collection<? super T> result) {
+        final UnitTable<T> currentTable = table;
+        final BitSet indices = new BitSet(currentTable.size());
+        currentTable.query(ray, halfAngle, indices);
+        for (int i = indices.nextSetBit(0); i >= 0; i = indices.nextSetBit(i + 1)) {
+            result.add(currentTable.getObject(i));
+        }
+    }
+
+    /**
+     * Returns the number of indexed objects.
+     *
+     * @return the number of indexed objects.
+     */
+    public int size() {
+        return table.size();
+    }
+
+    /**
+     * Checks whether a sphere intersects a cone.
+     *
+     * @param ox x coordinate of the apex.
+     * @param oy y coordinate of the apex.
+     * @param oz z coordinate of the apex.
+     * @param dx x coordinate of the normalized axis.
+     * @param dy y coordinate of the normalized axis.
+     * @param dz z coordinate of the normalized axis.
+     * @param halfAngle the half opening angle of the cone in radians.
+     * @param x x coordinate of the sphere center.
+     * @param y y coordinate of the sphere center.
+     * @param z z coordinate of the sphere center.
+     * @param radius radius of the sphere.
+     * @return true, if the sphere intersects the cone.
+     */
+    static boolean intersectsCone(final double ox, final double oy, final double oz, final double dx, final double dy, final double dz, final double halfAngle,
+            final double x, final double y, final double z, final double radius) {
+        final double vx = x - ox;
+        final double vy = y - oy;
+        final double vz = z - oz;
+        final double distanceSquared = vx * vx + vy * vy + vz * vz;
+        if (distanceSquared <= radius * radius) {
+            return true;
+        }
+        final double distance = Math.sqrt(distanceSquared);
+        final double cosine = Math.max(-1, Math.min(1, (vx * dx + vy * dy + vz * dz) / distance));
+        return Math.acos(cosine) - Math.asin(radius / distance) <= halfAngle;
+    }
+
+    /**
+     * An indexed object with its bounding box.
+     */
+    private static class Entry<T> {
+
+        private final T object;
+        private final BoundingBox boundingBox;
+
+        private Entry(final T object, final BoundingBox boundingBox) {
+            this.object = object;
+            this.boundingBox = boundingBox;
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package org.openbase.bco.psc.identification.selection;
+
+/*-
+ * #%L
+ * BCO PSC Identification
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import javax.vecmath.Point3d;
+import org.openbase.bco.psc.identification.selection.distance.AbstractDistanceMeasure;
+import org.openbase.type.geometry.Ray3DFloatType.Ray3DFloat;
+import org.openbase.type.math.Vec3DFloatType.Vec3DFloat;
+
+/**
+ * Immutable structure-of-arrays snapshot of selectable objects. The geometry of every object is stored in parallel
+ * arrays (center in root coordinates, half extents, bounding sphere radius and the rows of the rotation from root to
+ * box coordinates), so that the probabilities of many objects can be calculated in tight loops over primitive arrays
+ * without touching the synchronized objects or their vecmath transformations.
+ * <p>
+ * The table also contains the bounding volume hierarchy over the bounding spheres of its objects, so that a query and
+ * the following probability calculation always refer to the same objects.
+ *
+ * @param <T> the type of the objects.
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class UnitTable<T extends AbstractSelectable> {
+
+    /**
+     * Maximal number of objects in a leaf of the hierarchy.
+     */
+    private static final int LEAF_SIZE = 4;
+
+    private final int size;
+    private final String[] ids;
+    private final Object[] objects;
+    private final double[] centerX, centerY, centerZ;
+    private final double[] halfWidth, halfDepth, halfHeight;
+    private final double[] radius;
+    private final double[] r00, r01, r02, r10, r11, r12, r20, r21, r22;
+    /**
+     * The root of the hierarchy, null if the table is empty.
+     */
+    private final Node root;
+
+    /**
+     * Constructor.
+     *
+     * @param ids the ids of the objects.
+     * @param objects the objects.
+     * @param boundingBoxes the bounding boxes of the objects.
+     */
+    UnitTable(final List<String> ids, final List<T> objects, final List<BoundingBox> boundingBoxes) {
+        size = ids.size();
+        this.ids = ids.toArray(new String[size]);
+        this.objects = objects.toArray();
+        centerX = new double[size];
+        centerY = new double[size];
+        centerZ = new double[size];
+        halfWidth = new double[size];
+        halfDepth = new double[size];
+        halfHeight = new double[size];
+        radius = new double[size];
+        r00 = new double[size];
+        r01 = new double[size];
+        r02 = new double[size];
+        r10 = new double[size];
+        r11 = new double[size];
+        r12 = new double[size];
+        r20 = new double[size];
+        r21 = new double[size];
+        r22 = new double[size];
+        for (int i = 0; i < size; i++) {
+            final BoundingBox boundingBox = boundingBoxes.get(i);
+            final Point3d center = boundingBox.getRootCenter();
+            centerX[i] = center.x;
+            centerY[i] = center.y;
+            centerZ[i] = center.z;
+            halfWidth[i] = boundingBox.getWidth() / 2.0;
+            halfDepth[i] = boundingBox.getDepth() / 2.0;
+            halfHeight[i] = boundingBox.getHeight() / 2.0;
+            radius[i] = boundingBox.getBoxVector().length() / 2;
+            final double[] m = boundingBox.getReverseCenterMatrix();
+            r00[i] = m[0];
+            r01[i] = m[1];
+            r02[i] = m[2];
+            r10[i] = m[4];
+            r11[i] = m[5];
+            r12[i] = m[6];
+            r20[i] = m[8];
+            r21[i] = m[9];
+            r22[i] = m[10];
+        }
+        if (size == 0) {
+            root = null;
+        } else {
+            final Integer[] indices = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                indices[i] = i;
+            }
+            root = build(indices, 0, size);
+        }
+    }
+
+    private Node build(final Integer[] indices, final int from, final int to) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (int k = from; k < to; k++) {
+            final int i = indices[k];
+            minX = Math.min(minX, centerX[i]);
+            minY = Math.min(minY, centerY[i]);
+            minZ = Math.min(minZ, centerZ[i]);
+            maxX = Math.max(maxX, centerX[i]);
+            maxY = Math.max(maxY, centerY[i]);
+            maxZ = Math.max(maxZ, centerZ[i]);
+        }
+        final double x = (minX + maxX) / 2;
+        final double y = (minY + maxY) / 2;
+        final double z = (minZ + maxZ) / 2;
+        double nodeRadius = 0;
+        for (int k = from; k < to; k++) {
+            final int i = indices[k];
+            final double dx = centerX[i] - x;
+            final double dy = centerY[i] - y;
+            final double dz = centerZ[i] - z;
+            nodeRadius = Math.max(nodeRadius, Math.sqrt(dx * dx + dy * dy + dz * dz) + radius[i]);
+        }
+        if (to - from <= LEAF_SIZE) {
+            final int[] leaf = new int[to - from];
+            for (int k = from; k < to; k++) {
+                leaf[k - from] = indices[k];
+            }
+            return new Node(x, y, z, nodeRadius, leaf, null, null);
+        }
+        final double extentX = maxX - minX;
+        final double extentY = maxY - minY;
+        final double extentZ = maxZ - minZ;
+        final double[] axis = extentX >= extentY && extentX >= extentZ ? centerX : extentY >= extentZ ? centerY : centerZ;
+        Arrays.sort(indices, from, to, Comparator.comparingDouble(i -> axis[i]));
+        final int middle = (from + to) >>> 1;
+        return new Node(x, y, z, nodeRadius, null, build(indices, from, middle), build(indices, middle, to));
+    }
+
+    /**
+     * Returns the number of objects.
+     *
+     * @return the number of objects.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the id of an object.
+     *
+     * @param index the index of the object.
+     * @return the id.
+     */
+    public String getId(final int index) {
+        return ids[index];
+    }
+
+    /**
+     * Returns an object.
+     *
+     * @param index the index of the object.
+     * @return the object.
+     */
+    @SuppressWarnings("unchecked")
+    public T getObject(final int index) {
+        return (T) objects[index];
+    }
+
+    /**
+     * Sets the indices of all objects whose bounding sphere intersects the cone around the ray with the given half
+     * angle in the result. If the half angle is at least pi, all objects are selected, if it is negative, none are
+     * selected.
+     *
+     * @param ray the ray defining the apex and the axis of the cone.
+     * @param halfAngle the half opening angle of the cone in radians.
+     * @param result the set of indices.
+     */
+    public void query(final Ray3DFloat ray, final double halfAngle, final BitSet result) {
+        query(ray, halfAngle, 0, result);
+    }
+
+    /**
+     * Sets the indices of all objects whose bounding sphere enlarged by a margin intersects the cone around the ray
+     * with the given half angle in the result. If the half angle is at least pi, all objects are selected, if it is
+     * negative, none are selected.
+     *
+     * @param ray the ray defining the apex and the axis of the cone.
+     * @param halfAngle the half opening angle of the cone in radians.
+     * @param margin the distance the bounding spheres are enlarged by.
+     * @param result the set of indices.
+     */
+    public void query(final Ray3DFloat ray, final double halfAngle, final double margin, final BitSet result) {
+        if (root == null || halfAngle < 0) {
+            return;
+        }
+        final Vec3DFloat direction = ray.getDirection();
+        final double length = Math.sqrt(direction.getX() * direction.getX() + direction.getY() * direction.getY() + direction.getZ() * direction.getZ());
+        if (halfAngle >= Math.PI || length == 0) {
+            result.set(0, size);
+            return;
+        }
+        final Vec3DFloat origin = ray.getOrigin();
+        query(root, origin.getX(), origin.getY(), origin.getZ(),
+                direction.getX() / length, direction.getY() / length, direction.getZ() / length, halfAngle, margin, result);
+    }
+
+    private void query(final Node node, final double ox, final double oy, final double oz, final double dx, final double dy, final double dz,
+            final double halfAngle, final double margin, final BitSet result) {
+        if (!SpatialIndex.intersectsCone(ox, oy, oz, dx, dy, dz, halfAngle, node.x, node.y, node.z, node.radius + margin)) {
+            return;
+        }
+        if (node.indices != null) {
+            for (final int i : node.indices) {
+                if (SpatialIndex.intersectsCone(ox, oy, oz, dx, dy, dz, halfAngle, centerX[i], centerY[i], centerZ[i], radius[i] + margin)) {
+                    result.set(i);
+                }
+            }
+            return;
+        }
+        query(node.left, ox, oy, oz, dx, dy, dz, halfAngle, margin, result);
+        query(node.right, ox, oy, oz, dx, dy, dz, halfAngle, margin, result);
+    }
+
+    /**
+     * Like {@link #query(Ray3DFloat, double, BitSet)}, but only tests the objects of a given set of indices instead of
+     * traversing the hierarchy.
+     *
+     * @param ray the ray defining the apex and the axis of the cone.
+     * @param halfAngle the half opening angle of the cone in radians.
+     * @param indices the indices of the objects to test.
+     * @param result the set of indices.
+     */
+    public void filter(final Ray3DFloat ray, final double halfAngle, final BitSet indices, final BitSet result) {
+        if (halfAngle < 0) {
+            return;
+        }
+        final Vec3DFloat direction = ray.getDirection();
+        final double length = Math.sqrt(direction.getX() * direction.getX() + direction.getY() * direction.getY() + direction.getZ() * direction.getZ());
+        if (halfAngle >= Math.PI || length == 0) {
+            result.or(indices);
+            return;
+        }
+        final Vec3DFloat origin = ray.getOrigin();
+        final double ox = origin.getX(), oy = origin.getY(), oz = origin.getZ();
+        final double dx = direction.getX() / length, dy = direction.getY() / length, dz = direction.getZ() / length;
+        for (int i = indices.nextSetBit(0); i >= 0; i = indices.nextSetBit(i + 1)) {
+            if (SpatialIndex.intersectsCone(ox, oy, oz, dx, dy, dz, halfAngle, centerX[i], centerY[i], centerZ[i], radius[i])) {
+                result.set(i);
+            }
+        }
+    }
+
+    /**
+     * Calculates upper bounds of the probabilities of a ray for the selected objects from the angle between the ray
+     * and the bounding spheres of the objects. This is much cheaper than the exact measure and can be used to skip
+     * objects that cannot be selected.
+     *
+     * @param measure the distance measure.
+     * @param ray the ray in root coordinates.
+     * @param units the indices of the objects.
+     * @param count the number of objects.
+     * @param result array the bounds are written to in the order of the indices.
+     */
+    public void probabilityBounds(final AbstractDistanceMeasure measure, final Ray3DFloat ray, final int[] units, final int count, final double[] result) {
+        final Vec3DFloat origin = ray.getOrigin();
+        final Vec3DFloat direction = ray.getDirection();
+        final double ox = origin.getX(), oy = origin.getY(), oz = origin.getZ();
+        final double length = Math.sqrt(direction.getX() * direction.getX() + direction.getY() * direction.getY() + direction.getZ() * direction.getZ());
+        if (AbstractDistanceMeasure.isAtRootOrigin(ox, oy, oz) || length == 0) {
+            for (int k = 0; k < count; k++) {
+                result[k] = 1;
+            }
+            return;
+        }
+        final double dx = direction.getX() / length, dy = direction.getY() / length, dz = direction.getZ() / length;
+        for (int k = 0; k < count; k++) {
+            final int i = units[k];
+            final double vx = centerX[i] - ox;
+            final double vy = centerY[i] - oy;
+            final double vz = centerZ[i] - oz;
+            final double distance = Math.sqrt(vx * vx + vy * vy + vz * vz);
+            if (distance <= radius[i]) {
+                result[k] = measure.getProbabilityBound(0);
+                continue;
+            }
+            final double cosine = Math.max(-1, Math.min(1, (vx * dx + vy * dy + vz * dz) / distance));
+            result[k] = measure.getProbabilityBound(Math.acos(cosine) - Math.asin(radius[i] / distance));
+        }
+    }
+
+    /**
+     * Calculates the probabilities of a ray for the selected objects. The ray is first transformed into the center
+     * coordinates of all objects in one loop over the arrays, afterwards the measure is evaluated for every object.
+     *
+     * @param measure the distance measure.
+     * @param ray the ray in root coordinates.
+     * @param units the indices of the objects.
+     * @param count the number of objects.
+     * @param scratch array of at least six times the number of objects used to store the transformed rays.
+     * @param result array the probabilities are written to in the order of the indices.
+     */
+    public void probabilities(final AbstractDistanceMeasure measure, final Ray3DFloat ray, final int[] units, final int count, final double[] scratch, final double[] result) {
+        final Vec3DFloat origin = ray.getOrigin();
+        final Vec3DFloat direction = ray.getDirection();
+        final double ox = origin.getX(), oy = origin.getY(), oz = origin.getZ();
+        final double dx = direction.getX(), dy = direction.getY(), dz = direction.getZ();
+        if (AbstractDistanceMeasure.isAtRootOrigin(ox, oy, oz)) {
+            for (int k = 0; k < count; k++) {
+                result[k] = 1;
+            }
+            return;
+        }
+        final int oyOffset = count, ozOffset = 2 * count, dxOffset = 3 * count, dyOffset = 4 * count, dzOffset = 5 * count;
+        for (int k = 0; k < count; k++) {
+            final int i = units[k];
+            final double vx = ox - centerX[i];
+            final double vy = oy - centerY[i];
+            final double vz = oz - centerZ[i];
+            scratch[k] = r00[i] * vx + r01[i] * vy + r02[i] * vz;
+            scratch[oyOffset + k] = r10[i] * vx + r11[i] * vy + r12[i] * vz;
+            scratch[ozOffset + k] = r20[i] * vx + r21[i] * vy + r22[i] * vz;
+            scratch[dxOffset + k] = r00[i] * dx + r01[i] * dy + r02[i] * dz;
+            scratch[dyOffset + k] = r10[i] * dx + r11[i] * dy + r12[i] * dz;
+            scratch[dzOffset + k] = r20[i] * dx + r21[i] * dy + r22[i] * dz;
+        }
+        for (int k = 0; k < count; k++) {
+            final int i = units[k];
+            result[k] = measure.centerProbability(scratch[k], scratch[oyOffset + k], scratch[ozOffset + k],
+                    scratch[dxOffset + k], scratch[dyOffset + k], scratch[dzOffset + k], halfWidth[i], halfDepth[i], halfHeight[i]);
+        }
+    }
+
+    /**
+     * A node of the hierarchy, either a leaf with object indices or an inner node with two children.
+     */
+    private static class Node {
+
+        private final double x, y, z;
+        private final double radius;
+        private final int[] indices;
+        private final Node left;
+        private final Node right;
+
+        private Node(final double x, final double y, final double z, final double radius, final int[] indices, final Node left, final Node right) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.radius = radius;
+            this.indices = indices;
+            this.left = left;
+            this.right = right;
+        }
+    }
+}
@@ -37,6 +37,15 @@ public abstract class AbstractDistanceMeasure {
     protected static final Vector3d Y_AXIS = new Vector3d(0, 1, 0);
     protected static final Vector3d Z_AXIS = new Vector3d(0, 0, 1);
     protected static final Point3d ZERO_POINT = new Point3d(0, 0, 0);
+    //TODO: How much is that?!
+    /**
+     * Rays whose origin is closer to the root origin than this have the probability 1 for every box.
+     */
+    private static final double MIN_ORIGIN_DISTANCE = 0.05;
+    /**
+     * Tolerance added to culling angles to compensate the rounding of the probabilities.
+     */
+    private static final double CULLING_TOLERANCE = 1e-6;
 
     protected static int argMin(double[] values) {
         if (values.length < 1) {
@@ -79,47 +88,122 @@ public abstract class AbstractDistanceMeasure {
     }
 
     protected static final Point3d getMaximalPointOnBox(final Point3d origin, final Vector3d direction, final float width, final float depth, final float height) {
-        Vector3d size = new Vector3d(width, depth, height);
-        Vector3d dims = new Vector3d(size);
-        dims.scale(0.5);
-        Vector3d originDir = new Vector3d(origin);
-        Vector3d toCenter = new Vector3d(originDir);
-        toCenter.scale(-1);
-        Vector3d planeNormal = new Vector3d(toCenter);
-        planeNormal.normalize();
-
-        double factor = planeNormal.dot(toCenter) / planeNormal.dot(direction);
-        Vector3d orthoDir = new Vector3d(direction);
-        orthoDir.scale(factor);
-        orthoDir.add(originDir);
-
-        double[] possibleFactors = new double[]{Math.abs(dims.x / orthoDir.x), Math.abs(dims.y / orthoDir.y), Math.abs(dims.z / orthoDir.z)};
-        int index = argMin(possibleFactors);
-        Vector3d indexVector = index == 0 ? X_AXIS : index == 1 ? Y_AXIS : Z_AXIS;
-        Vector3d facePoint = new Vector3d(orthoDir);
-        facePoint.scale(possibleFactors[index]);
-
-        Vector3d normalToPointingPlane = new Vector3d();
-        normalToPointingPlane.cross(direction, orthoDir);
-        Vector3d faceNormal = new Vector3d(indexVector);
-        faceNormal.scale(Math.signum(facePoint.dot(indexVector)));
-        Vector3d inFaceDir = new Vector3d();
-        inFaceDir.cross(faceNormal, normalToPointingPlane);
-
-        double sign = Math.signum(Math.abs(originDir.dot(indexVector)) - dims.dot(indexVector));
+        final double[] result = new double[3];
+        getMaximalPointOnBox(origin.x, origin.y, origin.z, direction.x, direction.y, direction.z, width / 2.0, depth / 2.0, height / 2.0, result);
+        return new Point3d(result);
+    }
+
+    /**
+     * Calculates the point on the surface of a box which has the maximal angle to the box center as seen from the ray
+     * origin within the plane spanned by the ray and the box center. All values are given in center coordinates of the
+     * box, no objects are allocated.
+     *
+     * @param ox x coordinate of the ray origin.
+     * @param oy y coordinate of the ray origin.
+     * @param oz z coordinate of the ray origin.
+     * @param dx x coordinate of the ray direction.
+     * @param dy y coordinate of the ray direction.
+     * @param dz z coordinate of the ray direction.
+     * @param halfWidth half of the box size in x direction.
+     * @param halfDepth half of the box size in y direction.
+     * @param halfHeight half of the box size in z direction.
+     * @param result array of length 3 the point is written to.
+     */
+    protected static final void getMaximalPointOnBox(final double ox, final double oy, final double oz, final double dx, final double dy, final double dz,
+            final double halfWidth, final double halfDepth, final double halfHeight, final double[] result) {
+        final double toCenterLength = Math.sqrt(ox * ox + oy * oy + oz * oz);
+        final double nx = -ox / toCenterLength;
+        final double ny = -oy / toCenterLength;
+        final double nz = -oz / toCenterLength;
+        final double factor = -(nx * ox + ny * oy + nz * oz) / (nx * dx + ny * dy + nz * dz);
+        // closest point of the plane orthogonal to the origin direction through the center
+        final double px = dx * factor + ox;
+        final double py = dy * factor + oy;
+        final double pz = dz * factor + oz;
+
+        final double factorX = Math.abs(halfWidth / px);
+        final double factorY = Math.abs(halfDepth / py);
+        final double factorZ = Math.abs(halfHeight / pz);
+        int index = 0;
+        double faceFactor = factorX;
+        if (factorY < faceFactor) {
+            index = 1;
+            faceFactor = factorY;
+        }
+        if (factorZ < faceFactor) {
+            index = 2;
+            faceFactor = factorZ;
+        }
+        final double fx = px * faceFactor;
+        final double fy = py * faceFactor;
+        final double fz = pz * faceFactor;
+
+        // normal of the plane spanned by the ray and the center
+        final double cx = dy * pz - dz * py;
+        final double cy = dz * px - dx * pz;
+        final double cz = dx * py - dy * px;
+        final double faceSign = Math.signum(index == 0 ? fx : index == 1 ? fy : fz);
+        final double fnx = index == 0 ? faceSign : 0;
+        final double fny = index == 1 ? faceSign : 0;
+        final double fnz = index == 2 ? faceSign : 0;
+        // direction within the hit face
+        final double ix = fny * cz - fnz * cy;
+        final double iy = fnz * cx - fnx * cz;
+        final double iz = fnx * cy - fny * cx;
+
+        final double originOnAxis = index == 0 ? ox : index == 1 ? oy : oz;
+        final double halfOnAxis = index == 0 ? halfWidth : index == 1 ? halfDepth : halfHeight;
+        double sign = Math.signum(Math.abs(originOnAxis) - halfOnAxis);
         sign = sign != 0 ? sign : -1;
 
-        double[] possibleScales = new double[3];
-        possibleScales[0] = Math.abs((dims.x - Math.signum(inFaceDir.x) * sign * facePoint.x) / inFaceDir.x);
-        possibleScales[1] = Math.abs((dims.y - Math.signum(inFaceDir.y) * sign * facePoint.y) / inFaceDir.y);
-        possibleScales[2] = Math.abs((dims.z - Math.signum(inFaceDir.z) * sign * facePoint.z) / inFaceDir.z);
-        possibleScales[index] = Double.MAX_VALUE;
-        double scale = min(possibleScales);
+        final double scaleX = index == 0 ? Double.MAX_VALUE : Math.abs((halfWidth - Math.signum(ix) * sign * fx) / ix);
+        final double scaleY = index == 1 ? Double.MAX_VALUE : Math.abs((halfDepth - Math.signum(iy) * sign * fy) / iy);
+        final double scaleZ = index == 2 ? Double.MAX_VALUE : Math.abs((halfHeight - Math.signum(iz) * sign * fz) / iz);
+        double scale = scaleX;
+        if (scaleY < scale) {
+            scale = scaleY;
+        }
+        if (scaleZ < scale) {
+            scale = scaleZ;
+        }
+        result[0] = ix * sign * scale + fx;
+        result[1] = iy * sign * scale + fy;
+        result[2] = iz * sign * scale + fz;
+    }
+
+    /**
+     * Calculates the squared distance between the center (0, 0, 0) and the ray without allocating any objects. This is
+     * the squared length of the point returned by {@link #getClosestPoint(Point3d, Vector3d)}.
+     *
+     * @param ox x coordinate of the ray origin.
+     * @param oy y coordinate of the ray origin.
+     * @param oz z coordinate of the ray origin.
+     * @param dx x coordinate of the ray direction.
+     * @param dy y coordinate of the ray direction.
+     * @param dz z coordinate of the ray direction.
+     * @return the squared distance, or a negative value if the ray points away from the center.
+     */
+    protected static final double getClosestDistanceSquared(final double ox, final double oy, final double oz, final double dx, final double dy, final double dz) {
+        final double toCenterOnDirection = -(dx * ox + dy * oy + dz * oz);
+        if (toCenterOnDirection < 0) {
+            return -1;
+        }
+        final double scale = toCenterOnDirection / (dx * dx + dy * dy + dz * dz);
+        final double px = ox + dx * scale;
+        final double py = oy + dy * scale;
+        final double pz = oz + dz * scale;
+        return px * px + py * py + pz * pz;
+    }
 
-        Point3d result = new Point3d(inFaceDir);
-        result.scale(sign * scale);
-        result.add(facePoint);
-        return result;
+    /**
+     * Maps the squared ratio between a distance and the reference size of a box to a probability. The probability is
+     * 1 at the center, 0.5 at the reference size and reaches 0 at sqrt(2) times the reference size.
+     *
+     * @param ratioSquared the squared ratio between the distance and the reference size.
+     * @return the probability.
+     */
+    protected static final double getRatioProbability(final double ratioSquared) {
+        return Math.max(1 - ratioSquared / 2, 0);
     }
 
     /**
@@ -155,18 +239,148 @@ public abstract class AbstractDistanceMeasure {
     }
 
     public final double probability(Ray3DFloat ray, BoundingBox box) {
-        Point3d origin = toPoint(ray.getOrigin());
-        Vector3d direction = toVector(ray.getDirection());
-        //Transform everything to center coordinates of bounding box.
-        Point3d transformedOrigin = box.toCenterCoordinates(origin);
-        Vector3d transformedDirection = box.toCenterCoordinates(direction);
-        double distance = new Vector3d(origin).length();
-        //TODO: How much is that?!
-        if (distance < 0.05) {
+        final Vec3DFloat origin = ray.getOrigin();
+        final Vec3DFloat direction = ray.getDirection();
+        return probability(origin.getX(), origin.getY(), origin.getZ(), direction.getX(), direction.getY(), direction.getZ(),
+                box.getReverseCenterMatrix(), box.getWidth() / 2.0, box.getDepth() / 2.0, box.getHeight() / 2.0);
+    }
+
+    /**
+     * Calculates the probability that a ray points at a box without allocating any objects.
+     *
+     * @param ox x coordinate of the ray origin in root coordinates.
+     * @param oy y coordinate of the ray origin in root coordinates.
+     * @param oz z coordinate of the ray origin in root coordinates.
+     * @param dx x coordinate of the ray direction in root coordinates.
+     * @param dy y coordinate of the ray direction in root coordinates.
+     * @param dz z coordinate of the ray direction in root coordinates.
+     * @param reverseCenterMatrix row major 3x4 matrix transforming root coordinates to center coordinates of the box.
+     * @param halfWidth half of the box size in x direction.
+     * @param halfDepth half of the box size in y direction.
+     * @param halfHeight half of the box size in z direction.
+     * @return the probability.
+     */
+    public final double probability(final double ox, final double oy, final double oz, final double dx, final double dy, final double dz,
+            final double[] reverseCenterMatrix, final double halfWidth, final double halfDepth, final double halfHeight) {
+        if (isAtRootOrigin(ox, oy, oz)) {
             return 1;
         }
-        return distanceProbability(transformedOrigin, transformedDirection, box.getWidth(), box.getDepth(), box.getHeight());
+        final double[] m = reverseCenterMatrix;
+        //Transform everything to center coordinates of bounding box.
+        return distanceProbability(
+                m[0] * ox + m[1] * oy + m[2] * oz + m[3],
+                m[4] * ox + m[5] * oy + m[6] * oz + m[7],
+                m[8] * ox + m[9] * oy + m[10] * oz + m[11],
+                m[0] * dx + m[1] * dy + m[2] * dz,
+                m[4] * dx + m[5] * dy + m[6] * dz,
+                m[8] * dx + m[9] * dy + m[10] * dz,
+                halfWidth, halfDepth, halfHeight);
+    }
+
+    /**
+     * Checks whether a ray origin is so close to the root origin that every box has the probability 1.
+     *
+     * @param ox x coordinate of the ray origin in root coordinates.
+     * @param oy y coordinate of the ray origin in root coordinates.
+     * @param oz z coordinate of the ray origin in root coordinates.
+     * @return true, if the origin is at the root origin.
+     */
+    public static boolean isAtRootOrigin(final double ox, final double oy, final double oz) {
+        return Math.sqrt(ox * ox + oy * oy + oz * oz) < MIN_ORIGIN_DISTANCE;
+    }
+
+    /**
+     * Calculates the probability for a ray that is already given in center coordinates of the box. The caller has to
+     * check {@link #isAtRootOrigin(double, double, double)} with the root coordinates of the ray beforehand.
+     *
+     * @param ox x coordinate of the ray origin.
+     * @param oy y coordinate of the ray origin.
+     * @param oz z coordinate of the ray origin.
+     * @param dx x coordinate of the ray direction.
+     * @param dy y coordinate of the ray direction.
+     * @param dz z coordinate of the ray direction.
+     * @param halfWidth half of the box size in x direction.
+     * @param halfDepth half of the box size in y direction.
+     * @param halfHeight half of the box size in z direction.
+     * @return the probability.
+     */
+    public final double centerProbability(final double ox, final double oy, final double oz, final double dx, final double dy, final double dz,
+            final double halfWidth, final double halfDepth, final double halfHeight) {
+        return distanceProbability(ox, oy, oz, dx, dy, dz, halfWidth, halfDepth, halfHeight);
     }
 
     protected abstract double distanceProbability(final Point3d origin, final Vector3d direction, final float width, final float depth, final float height);
+
+    /**
+     * Calculates the probability in center coordinates of the box. Measures should override this method with an
+     * implementation that does not allocate any objects, the default implementation delegates to the vecmath based
+     * version.
+     *
+     * @param ox x coordinate of the ray origin.
+     * @param oy y coordinate of the ray origin.
+     * @param oz z coordinate of the ray origin.
+     * @param dx x coordinate of the ray direction.
+     * @param dy y coordinate of the ray direction.
+     * @param dz z coordinate of the ray direction.
+     * @param halfWidth half of the box size in x direction.
+     * @param halfDepth half of the box size in y direction.
+     * @param halfHeight half of the box size in z direction.
+     * @return the probability.
+     */
+    protected double distanceProbability(final double ox, final double oy, final double oz, final double dx, final double dy, final double dz,
+            final double halfWidth, final double halfDepth, final double halfHeight) {
+        return distanceProbability(new Point3d(ox, oy, oz), new Vector3d(dx, dy, dz), (float) (halfWidth * 2), (float) (halfDepth * 2), (float) (halfHeight * 2));
+    }
+
+    /**
+     * Returns the half angle of a cone around the ray outside of which no box can reach the minimal probability. A
+     * box whose bounding sphere lies completely outside of the cone has a lower probability.
+     *
+     * @param ray the pointing ray.
+     * @param minimalProbability the minimal probability of interest.
+     * @return the half angle of the cone in radians, pi if no box can be excluded and a negative value if no box can
+     * reach the minimal probability.
+     */
+    public final double getCullingAngle(final Ray3DFloat ray, final double minimalProbability) {
+        final Vec3DFloat origin = ray.getOrigin();
+        if (isAtRootOrigin(origin.getX(), origin.getY(), origin.getZ())) {
+            return Math.PI;
+        }
+        return getMaximalAngle(minimalProbability) + CULLING_TOLERANCE;
+    }
+
+    /**
+     * Returns the maximal angle between the ray direction and the direction from the ray origin to a box at which the
+     * box can still reach the minimal probability. The default implementation does not exclude any box.
+     *
+     * @param minimalProbability the minimal probability of interest.
+     * @return the maximal angle in radians.
+     */
+    protected double getMaximalAngle(final double minimalProbability) {
+        return Math.PI;
+    }
+
+    /**
+     * Returns an upper bound of the probability of a box as seen from a ray origin outside of the root origin. The
+     * angle is measured between the ray direction and the closest direction from the ray origin to the bounding sphere
+     * of the box, so it is never larger than the angle to any point of the box.
+     *
+     * @param angle the angle between the ray and the bounding sphere of the box in radians.
+     * @return the upper bound of the probability.
+     */
+    public final double getProbabilityBound(final double angle) {
+        return getMaximalProbability(angle) + CULLING_TOLERANCE;
+    }
+
+    /**
+     * Returns the maximal probability a box can reach if the angle between the ray direction and the direction from
+     * the ray origin to the box is at least the given angle. This is the inverse of
+     * {@link #getMaximalAngle(double)}, the default implementation does not bound the probability.
+     *
+     * @param angle the minimal angle in radians.
+     * @return the maximal probability.
+     */
+    protected double getMaximalProbability(final double angle) {
+        return 1;
+    }
 }
@@ -42,14 +42,61 @@ public class AngleMeasure extends AbstractDistanceMeasure {
      */
     @Override
     public double distanceProbability(Point3d origin, Vector3d direction, float width, float depth, float height) {
-        Vector3d toCenter = new Vector3d(origin);
-        toCenter.scale(-1.0);
-        double angle = getAngle(toCenter, direction);
+        return distanceProbability(origin.x, origin.y, origin.z, direction.x, direction.y, direction.z, width / 2.0, depth / 2.0, height / 2.0);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param ox {@inheritDoc}
+     * @param oy {@inheritDoc}
+     * @param oz {@inheritDoc}
+     * @param dx {@inheritDoc}
+     * @param dy {@inheritDoc}
+     * @param dz {@inheritDoc}
+     * @param halfWidth {@inheritDoc}
+     * @param halfDepth {@inheritDoc}
+     * @param halfHeight {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    protected double distanceProbability(double ox, double oy, double oz, double dx, double dy, double dz, double halfWidth, double halfDepth, double halfHeight) {
+        // angle between the direction to the center (-origin) and the ray direction
+        double angle = Math.acos(-(ox * dx + oy * dy + oz * dz) / (Math.sqrt(ox * ox + oy * oy + oz * oz) * Math.sqrt(dx * dx + dy * dy + dz * dz)));
         if (angle > Math.PI / 2) {
             return 0;
         }
         //TODO: Check for better solutions?:
-        double prob = Math.pow(Math.max(1 - angle * 2 / Math.PI, 0), .5);
+        double prob = Math.sqrt(Math.max(1 - angle * 2 / Math.PI, 0));
         return prob;
     }
+
+    /**
+     * {@inheritDoc} The probability only depends on the angle to the box center and decreases monotonically with it.
+     *
+     * @param minimalProbability {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    protected double getMaximalAngle(final double minimalProbability) {
+        if (minimalProbability > 1) {
+            return -1;
+        }
+        final double probability = Math.max(minimalProbability, 0);
+        return Math.PI / 2 * (1 - probability * probability);
+    }
+
+    /**
+     * {@inheritDoc} The probability only depends on the angle to the box center and decreases monotonically with it.
+     *
+     * @param angle {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    protected double getMaximalProbability(final double angle) {
+        if (angle >= Math.PI / 2) {
+            return 0;
+        }
+        return Math.sqrt(1 - Math.max(angle, 0) * 2 / Math.PI);
+    }
 }
@@ -25,11 +25,19 @@ import javax.vecmath.Point3d;
 import javax.vecmath.Vector3d;
 
 /**
+ * Measures the angle between the ray and the direction to the box center relative to the angle between the direction
+ * to the box center and the direction to the point of the box that is furthest from the center in the plane of the ray
+ * and the center. Unlike the angle measure, the reference angle follows the apparent size of the box.
  *
  * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
  */
 public class AngleVsMaxMeasure extends AbstractDistanceMeasure {
 
+    /**
+     * Buffer for the maximal point on the box, one per thread as measures are shared.
+     */
+    private final ThreadLocal<double[]> maxPoint = ThreadLocal.withInitial(() -> new double[3]);
+
     /**
      * {@inheritDoc}
      *
@@ -42,18 +50,45 @@ public class AngleVsMaxMeasure extends AbstractDistanceMeasure {
      */
     @Override
     protected double distanceProbability(Point3d origin, Vector3d direction, float width, float depth, float height) {
-        Vector3d toCenter = new Vector3d(origin);
-        toCenter.scale(-1.0);
-        Vector3d maxPointDirection = new Vector3d(getMaximalPointOnBox(origin, direction, width, depth, height));
-        maxPointDirection.sub(origin);
-        double angle = getAngle(toCenter, direction);
-        if (angle > Math.PI / 2) {
+        return distanceProbability(origin.x, origin.y, origin.z, direction.x, direction.y, direction.z, width / 2.0, depth / 2.0, height / 2.0);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param ox {@inheritDoc}
+     * @param oy {@inheritDoc}
+     * @param oz {@inheritDoc}
+     * @param dx {@inheritDoc}
+     * @param dy {@inheritDoc}
+     * @param dz {@inheritDoc}
+     * @param halfWidth {@inheritDoc}
+     * @param halfDepth {@inheritDoc}
+     * @param halfHeight {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    protected double distanceProbability(double ox, double oy, double oz, double dx, double dy, double dz, double halfWidth, double halfDepth, double halfHeight) {
+        double originLength = Math.sqrt(ox * ox + oy * oy + oz * oz);
+        double cosine = -(ox * dx + oy * dy + oz * dz) / (originLength * Math.sqrt(dx * dx + dy * dy + dz * dz));
+        if (!(cosine >= 0)) {
             return 0;
         }
-        double maxAngle = getAngle(toCenter, maxPointDirection);
-        //TODO: Calculate probability:
-        double name = angle / Math.sqrt(maxAngle);
-
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        if (cosine >= 1) {
+            // the maximal point is not defined for rays through the center
+            return 1;
+        }
+        double angle = Math.acos(cosine);
+        double[] point = maxPoint.get();
+        getMaximalPointOnBox(ox, oy, oz, dx, dy, dz, halfWidth, halfDepth, halfHeight, point);
+        double mx = point[0] - ox;
+        double my = point[1] - oy;
+        double mz = point[2] - oz;
+        double maxAngle = Math.acos(Math.max(-1, Math.min(1, -(ox * mx + oy * my + oz * mz) / (originLength * Math.sqrt(mx * mx + my * my + mz * mz)))));
+        if (!(maxAngle > 0)) {
+            return 0;
+        }
+        double ratio = angle / maxAngle;
+        return getRatioProbability(ratio * ratio);
     }
 }
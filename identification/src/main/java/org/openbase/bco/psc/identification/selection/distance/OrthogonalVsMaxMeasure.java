@@ -25,11 +25,19 @@ import javax.vecmath.Point3d;
 import javax.vecmath.Vector3d;
 
 /**
+ * Measures the orthogonal distance between the ray and the box center relative to the orthogonal distance of the ray
+ * from the origin through the point of the box that is furthest from the center in the plane of the ray and the
+ * center. The reference size therefore follows the extent of the box in the pointing direction.
  *
  * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
  */
 public class OrthogonalVsMaxMeasure extends AbstractDistanceMeasure {
 
+    /**
+     * Buffer for the maximal point on the box, one per thread as measures are shared.
+     */
+    private final ThreadLocal<double[]> maxPoint = ThreadLocal.withInitial(() -> new double[3]);
+
     /**
      * {@inheritDoc}
      *
@@ -42,12 +50,39 @@ public class OrthogonalVsMaxMeasure extends AbstractDistanceMeasure {
      */
     @Override
     protected double distanceProbability(Point3d origin, Vector3d direction, float width, float depth, float height) {
-        double distance = getClosestPoint(origin, direction).distance(ZERO_POINT);
-        Vector3d maxDirection = new Vector3d(getMaximalPointOnBox(origin, direction, width, depth, height));
-        maxDirection.sub(origin);
-        double maxDistance = getClosestPoint(origin, maxDirection).distance(ZERO_POINT);
-        //TODO: Calculate probability:
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        return distanceProbability(origin.x, origin.y, origin.z, direction.x, direction.y, direction.z, width / 2.0, depth / 2.0, height / 2.0);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @param ox {@inheritDoc}
+     * @param oy {@inheritDoc}
+     * @param oz {@inheritDoc}
+     * @param dx {@inheritDoc}
+     * @param dy {@inheritDoc}
+     * @param dz {@inheritDoc}
+     * @param halfWidth {@inheritDoc}
+     * @param halfDepth {@inheritDoc}
+     * @param halfHeight {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    protected double distanceProbability(double ox, double oy, double oz, double dx, double dy, double dz, double halfWidth, double halfDepth, double halfHeight) {
+        double distanceSquared = getClosestDistanceSquared(ox, oy, oz, dx, dy, dz);
+        if (distanceSquared < 0) {
+            return 0;
+        }
+        if (distanceSquared == 0) {
+            // the maximal point is not defined for rays through the center
+            return 1;
+        }
+        double[] point = maxPoint.get();
+        getMaximalPointOnBox(ox, oy, oz, dx, dy, dz, halfWidth, halfDepth, halfHeight, point);
+        double maxDistanceSquared = getClosestDistanceSquared(ox, oy, oz, point[0] - ox, point[1] - oy, point[2] - oz);
+        if (!(maxDistanceSquared > 0)) {
+            return 0;
+        }
+        return getRatioProbability(distanceSquared / maxDistanceSquared);
+    }
 }
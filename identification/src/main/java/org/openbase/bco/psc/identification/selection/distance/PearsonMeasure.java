@@ -43,14 +43,35 @@ public class PearsonMeasure extends AbstractDistanceMeasure {
      */
     @Override
     protected double distanceProbability(Point3d origin, Vector3d direction, float width, float depth, float height) {
-        Point3d closestPoint = getClosestPoint(origin, direction);
-        if (closestPoint == null) {
+        return distanceProbability(origin.x, origin.y, origin.z, direction.x, direction.y, direction.z, width / 2.0, depth / 2.0, height / 2.0);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param ox {@inheritDoc}
+     * @param oy {@inheritDoc}
+     * @param oz {@inheritDoc}
+     * @param dx {@inheritDoc}
+     * @param dy {@inheritDoc}
+     * @param dz {@inheritDoc}
+     * @param halfWidth {@inheritDoc}
+     * @param halfDepth {@inheritDoc}
+     * @param halfHeight {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    protected double distanceProbability(double ox, double oy, double oz, double dx, double dy, double dz, double halfWidth, double halfDepth, double halfHeight) {
+        // closest point of the ray to the center, see getClosestPoint
+        double lengthSquared = dx * dx + dy * dy + dz * dz;
+        double scale = -(dx * ox + dy * oy + dz * oz) / lengthSquared;
+        if (scale * lengthSquared < 0) {
             return Double.MAX_VALUE;
         }
-        return pearsonLength(new Vector3d(closestPoint), new Vector3d(width, depth, height));
+        return pearsonLength(ox + dx * scale, oy + dy * scale, oz + dz * scale, halfWidth * 2, halfDepth * 2, halfHeight * 2);
     }
 
-    private double pearsonLength(final Vector3d vector, final Vector3d size) {
-        return Math.sqrt((vector.x * vector.x) / (size.x * size.x) + (vector.y * vector.y) / (size.y * size.y) + (vector.z * vector.z) / (size.z * size.z));
+    private double pearsonLength(final double x, final double y, final double z, final double sizeX, final double sizeY, final double sizeZ) {
+        return Math.sqrt((x * x) / (sizeX * sizeX) + (y * y) / (sizeY * sizeY) + (z * z) / (sizeZ * sizeZ));
     }
 }
@@ -21,9 +21,17 @@ package org.openbase.bco.psc.identification;
  * <http://www.gnu.org/licenses/gpl-3.0.html>.
  * #L%
  */
+import java.util.Map;
+import java.util.Random;
+import javax.media.j3d.Transform3D;
 import javax.vecmath.Point3d;
+import javax.vecmath.Quat4d;
 import javax.vecmath.Vector3d;
 import static org.junit.Assert.assertEquals;
+import org.openbase.bco.psc.identification.selection.AbstractSelectable;
+import org.openbase.bco.psc.identification.selection.BoundingBox;
+import org.openbase.type.geometry.Ray3DFloatType.Ray3DFloat;
+import org.openbase.type.tracking.PointingRay3DFloatType.PointingRay3DFloat;
 
 /**
  *
@@ -50,4 +58,73 @@ public class Testing {
     public static void assertAlmostEquals(Point3d point1, Point3d point2) {
         assertAlmostEquals(point1, point2, 0.00000000000001);
     }
+
+    public static Ray3DFloat ray(double ox, double oy, double oz, double dx, double dy, double dz) {
+        Ray3DFloat.Builder builder = Ray3DFloat.newBuilder();
+        builder.getOriginBuilder().setX((float) ox).setY((float) oy).setZ((float) oz);
+        builder.getDirectionBuilder().setX((float) dx).setY((float) dy).setZ((float) dz);
+        return builder.build();
+    }
+
+    public static PointingRay3DFloat pointingRay(double ox, double oy, double oz, double dx, double dy, double dz) {
+        return PointingRay3DFloat.newBuilder().setRay(ray(ox, oy, oz, dx, dy, dz)).setCertainty(1).build();
+    }
+
+    /**
+     * Creates an axis aligned cube.
+     *
+     * @param x x coordinate of the center.
+     * @param y y coordinate of the center.
+     * @param z z coordinate of the center.
+     * @param size the edge length.
+     * @return the selectable.
+     */
+    public static Selectable cube(double x, double y, double z, float size) {
+        Transform3D transform = new Transform3D(new Quat4d(0, 0, 0, 1), new Vector3d(x, y, z), 1);
+        return new Selectable(new BoundingBox(transform, size, size, size));
+    }
+
+    /**
+     * Adds axis aligned cubes at random positions of a 20m x 20m x 3m room.
+     *
+     * @param objects the map the cubes are added to with the ids "unit0", "unit1", ...
+     * @param random the random number generator.
+     * @param count the number of cubes.
+     * @param size the edge length of the cubes.
+     */
+    public static void addRandomCubes(Map<String, Selectable> objects, Random random, int count, float size) {
+        for (int i = 0; i < count; i++) {
+            objects.put("unit" + i, cube(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10, random.nextDouble() * 3, size));
+        }
+    }
+
+    /**
+     * Adds randomly rotated boxes of random sizes at random positions of a 20m x 20m x 3m room.
+     *
+     * @param objects the map the boxes are added to with the ids "unit0", "unit1", ...
+     * @param random the random number generator.
+     * @param count the number of boxes.
+     */
+    public static void addRandomBoxes(Map<String, Selectable> objects, Random random, int count) {
+        for (int i = 0; i < count; i++) {
+            Quat4d rotation = new Quat4d(random.nextGaussian(), random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+            rotation.normalize();
+            Transform3D transform = new Transform3D(rotation, new Vector3d(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10, random.nextDouble() * 3), 1);
+            objects.put("unit" + i, new Selectable(new BoundingBox(transform, 0.1f + random.nextFloat(), 0.1f + random.nextFloat(), 0.1f + random.nextFloat())));
+        }
+    }
+
+    public static class Selectable implements AbstractSelectable {
+
+        private final BoundingBox box;
+
+        public Selectable(BoundingBox box) {
+            this.box = box;
+        }
+
+        @Override
+        public BoundingBox getBoundingBox() {
+            return box;
+        }
+    }
 }
@@ -0,0 +1,112 @@
+package org.openbase.bco.psc.identification.selection;
+
+/*-
+ * #%L
+ * BCO PSC Identification
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import static org.openbase.bco.psc.identification.Testing.*;
+import org.openbase.type.tracking.PointingRay3DFloatType.PointingRay3DFloat;
+
+/**
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class CandidateCacheTest {
+
+    SpatialIndex<Selectable> index;
+    Map<String, Selectable> objects;
+    CandidateCache cache;
+
+    public CandidateCacheTest() {
+    }
+
+    @Before
+    public void setUp() {
+        index = new SpatialIndex<>();
+        objects = new HashMap<>();
+        cache = new CandidateCache();
+        addRandomCubes(objects, new Random(17), 300, 0.3f);
+        index.update(objects);
+    }
+
+    @Test
+    public void testMatchesQuery() {
+        System.out.println("testMatchesQuery");
+        Random random = new Random(19);
+        double x = 1, y = -1, dx = 1, dy = 0.5, dz = -0.2;
+        for (int frame = 0; frame < 300; frame++) {
+            x += random.nextGaussian() * 0.02;
+            y += random.nextGaussian() * 0.02;
+            dx += random.nextGaussian() * 0.02;
+            dy += random.nextGaussian() * 0.02;
+            dz += random.nextGaussian() * 0.02;
+            List<PointingRay3DFloat> rays = new ArrayList<>();
+            rays.add(pointingRay(x, y, 1.5, dx, dy, dz));
+            rays.add(pointingRay(x + 0.1, y, 1.2, dx, dy + 0.05, dz));
+            double[] halfAngles = {0.2 + random.nextDouble() * 0.01, 0.3};
+            UnitTable<Selectable> table = index.getTable();
+            cache.beginFrame(table);
+            BitSet result = new BitSet();
+            cache.collect(rays, halfAngles, result);
+
+            BitSet expected = new BitSet();
+            for (int i = 0; i < rays.size(); i++) {
+                table.query(rays.get(i).getRay(), halfAngles[i], expected);
+            }
+            assertEquals(expected, result);
+        }
+        assertTrue(cache.getHits() > cache.getMisses());
+    }
+
+    @Test
+    public void testRegistryChange() {
+        System.out.println("testRegistryChange");
+        List<PointingRay3DFloat> rays = new ArrayList<>();
+        rays.add(pointingRay(0, 0, 1.5, 1, 0, 0));
+        double[] halfAngles = {0.2};
+        cache.beginFrame(index.getTable());
+        cache.collect(rays, halfAngles, new BitSet());
+        cache.beginFrame(index.getTable());
+        cache.collect(rays, halfAngles, new BitSet());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        objects.put("new", cube(5, 0, 1.5, 0.3f));
+        index.update(objects);
+        UnitTable<Selectable> table = index.getTable();
+        cache.beginFrame(table);
+        BitSet result = new BitSet();
+        cache.collect(rays, halfAngles, result);
+        assertEquals(2, cache.getMisses());
+        BitSet expected = new BitSet();
+        table.query(rays.get(0).getRay(), halfAngles[0], expected);
+        assertEquals(expected, result);
+    }
+
+}
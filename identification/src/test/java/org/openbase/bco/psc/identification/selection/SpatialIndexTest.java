@@ -0,0 +1,210 @@
+package org.openbase.bco.psc.identification.selection;
+
+/*-
+ * #%L
+ * BCO PSC Identification
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import javax.vecmath.Point3d;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import static org.openbase.bco.psc.identification.Testing.*;
+import org.openbase.bco.psc.identification.selection.distance.AbstractDistanceMeasure;
+import org.openbase.bco.psc.identification.selection.distance.AngleMeasure;
+import org.openbase.bco.psc.identification.selection.distance.OrthogonalMeasure;
+import org.openbase.type.geometry.Ray3DFloatType.Ray3DFloat;
+
+/**
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class SpatialIndexTest {
+
+    SpatialIndex<Selectable> index;
+    Map<String, Selectable> objects;
+
+    public SpatialIndexTest() {
+    }
+
+    @Before
+    public void setUp() {
+        index = new SpatialIndex<>();
+        objects = new HashMap<>();
+    }
+
+    @Test
+    public void testQueryCone() {
+        System.out.println("testQueryCone");
+        Selectable front = put("front", 5, 0, 0);
+        Selectable back = put("back", -5, 0, 0);
+        Selectable side = put("side", 0, 5, 0);
+        index.update(objects);
+
+        List<Selectable> result = new ArrayList<>();
+        index.query(ray(0, 0, 0, 1, 0, 0), 0.1, result);
+        assertEquals(1, result.size());
+        assertTrue(result.contains(front));
+
+        result.clear();
+        index.query(ray(0, 0, 0, 1, 0, 0), Math.PI / 2 + 0.1, result);
+        assertEquals(2, result.size());
+        assertTrue(result.contains(side));
+        assertFalse(result.contains(back));
+
+        result.clear();
+        index.query(ray(0, 0, 0, 1, 0, 0), Math.PI, result);
+        assertEquals(3, result.size());
+
+        result.clear();
+        index.query(ray(0, 0, 0, 1, 0, 0), -1, result);
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void testUpdate() {
+        System.out.println("testUpdate");
+        put("a", 5, 0, 0);
+        put("b", 0, 5, 0);
+        index.update(objects);
+        assertEquals(2, index.size());
+
+        objects.remove("a");
+        Selectable moved = put("b", 5, 0, 0);
+        index.update(objects);
+        assertEquals(1, index.size());
+
+        List<Selectable> result = new ArrayList<>();
+        index.query(ray(0, 0, 0, 1, 0, 0), 0.1, result);
+        assertEquals(1, result.size());
+        assertTrue(result.contains(moved));
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        System.out.println("testMatchesBruteForce");
+        Random random = new Random(7);
+        addRandomCubes(objects, random, 300, 0.2f);
+        index.update(objects);
+        for (int i = 0; i < 200; i++) {
+            Ray3DFloat ray = ray(random.nextDouble() * 4 - 2, random.nextDouble() * 4 - 2, 1.5,
+                    random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+            double halfAngle = random.nextDouble() * Math.PI / 2;
+            HashSet<Selectable> result = new HashSet<>();
+            index.query(ray, halfAngle, result);
+
+            double length = Math.sqrt(ray.getDirection().getX() * ray.getDirection().getX()
+                    + ray.getDirection().getY() * ray.getDirection().getY()
+                    + ray.getDirection().getZ() * ray.getDirection().getZ());
+            HashSet<Selectable> expected = new HashSet<>();
+            for (Selectable object : objects.values()) {
+                Point3d center = object.getBoundingBox().getRootCenter();
+                if (SpatialIndex.intersectsCone(ray.getOrigin().getX(), ray.getOrigin().getY(), ray.getOrigin().getZ(),
+                        ray.getDirection().getX() / length, ray.getDirection().getY() / length, ray.getDirection().getZ() / length, halfAngle,
+                        center.x, center.y, center.z, object.getBoundingBox().getBoxVector().length() / 2)) {
+                    expected.add(object);
+                }
+            }
+            assertEquals(expected, result);
+        }
+    }
+
+    @Test
+    public void testTableProbabilities() {
+        System.out.println("testTableProbabilities");
+        Random random = new Random(11);
+        addRandomBoxes(objects, random, 50);
+        index.update(objects);
+        UnitTable<Selectable> table = index.getTable();
+        assertEquals(objects.size(), table.size());
+        int[] units = allUnits(table);
+        double[] scratch = new double[6 * units.length];
+        double[] result = new double[units.length];
+        AbstractDistanceMeasure measure = new AngleMeasure();
+        for (int i = 0; i < 20; i++) {
+            Ray3DFloat ray = ray(random.nextDouble() * 4 - 2, random.nextDouble() * 4 - 2, 1.5,
+                    random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+            table.probabilities(measure, ray, units, units.length, scratch, result);
+            for (int k = 0; k < units.length; k++) {
+                assertSame(objects.get(table.getId(k)), table.getObject(k));
+                assertEquals(measure.probability(ray, table.getObject(k).getBoundingBox()), result[k], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testTableProbabilityBounds() {
+        System.out.println("testTableProbabilityBounds");
+        Random random = new Random(13);
+        addRandomBoxes(objects, random, 50);
+        index.update(objects);
+        UnitTable<Selectable> table = index.getTable();
+        int[] units = allUnits(table);
+        double[] scratch = new double[6 * units.length];
+        double[] result = new double[units.length];
+        double[] bounds = new double[units.length];
+        for (AbstractDistanceMeasure measure : new AbstractDistanceMeasure[]{new AngleMeasure(), new OrthogonalMeasure()}) {
+            for (int i = 0; i < 100; i++) {
+                Ray3DFloat ray = ray(random.nextDouble() * 4 - 2, random.nextDouble() * 4 - 2, 1.5,
+                        random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+                table.probabilities(measure, ray, units, units.length, scratch, result);
+                table.probabilityBounds(measure, ray, units, units.length, bounds);
+                BitSet culled = new BitSet();
+                table.query(ray, measure.getCullingAngle(ray, 0.01), culled);
+                for (int k = 0; k < units.length; k++) {
+                    assertTrue(bounds[k] >= result[k]);
+                    assertTrue(result[k] < 0.01 || culled.get(k));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIntersectsCone() {
+        System.out.println("testIntersectsCone");
+        assertTrue(SpatialIndex.intersectsCone(0, 0, 0, 1, 0, 0, 0.01, 10, 0, 0, 0.1));
+        assertFalse(SpatialIndex.intersectsCone(0, 0, 0, 1, 0, 0, 0.01, 10, 1, 0, 0.1));
+        // sphere touches the cone because of its radius
+        assertTrue(SpatialIndex.intersectsCone(0, 0, 0, 1, 0, 0, 0.01, 10, 1, 0, 1));
+        // apex inside of the sphere
+        assertTrue(SpatialIndex.intersectsCone(0, 0, 0, 1, 0, 0, 0.01, -0.5, 0, 0, 1));
+        assertFalse(SpatialIndex.intersectsCone(0, 0, 0, 1, 0, 0, Math.PI / 4, -10, 0, 0, 1));
+    }
+
+    private Selectable put(String id, double x, double y, double z) {
+        Selectable selectable = cube(x, y, z, 0.2f);
+        objects.put(id, selectable);
+        return selectable;
+    }
+
+    private static int[] allUnits(UnitTable<?> table) {
+        int[] units = new int[table.size()];
+        for (int i = 0; i < units.length; i++) {
+            units[i] = i;
+        }
+        return units;
+    }
+}
@@ -0,0 +1,190 @@
+package org.openbase.bco.psc.identification.selection;
+
+/*-
+ * #%L
+ * BCO PSC Identification
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import static org.openbase.bco.psc.identification.Testing.*;
+import org.openbase.bco.psc.identification.selection.distance.AngleMeasure;
+import org.openbase.bco.psc.identification.selection.distance.OrthogonalMeasure;
+import org.openbase.type.domotic.unit.UnitProbabilityCollectionType.UnitProbabilityCollection;
+import org.openbase.type.domotic.unit.UnitProbabilityType.UnitProbability;
+import org.openbase.type.tracking.PointingRay3DFloatDistributionCollectionType.PointingRay3DFloatDistributionCollection;
+import org.openbase.type.tracking.PointingRay3DFloatDistributionType.PointingRay3DFloatDistribution;
+import org.openbase.type.tracking.PointingRay3DFloatType.PointingRay3DFloat;
+
+/**
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class UnitSelectorTest {
+
+    private static final double THRESHOLD = 0.1;
+
+    Map<String, SelectableObject> objects;
+
+    public UnitSelectorTest() {
+    }
+
+    @Before
+    public void setUp() {
+        Map<String, Selectable> boxes = new HashMap<>();
+        addRandomBoxes(boxes, new Random(17), 200);
+        objects = new HashMap<>();
+        for (Map.Entry<String, Selectable> entry : boxes.entrySet()) {
+            objects.put(entry.getKey(), new SelectableObject(entry.getValue().getBoundingBox()));
+        }
+    }
+
+    @Test
+    public void testTopUnits() throws Exception {
+        System.out.println("testTopUnits");
+        for (int k : new int[]{1, 3, 10}) {
+            AbstractUnitSelector[][] selectors = {
+                {createSelector(new MaxSelector(THRESHOLD, new AngleMeasure())), createSelector(new MaxSelector(THRESHOLD, new AngleMeasure()))},
+                {createSelector(new MeanSelector(THRESHOLD, new AngleMeasure())), createSelector(new MeanSelector(THRESHOLD, new AngleMeasure()))}
+            };
+            for (AbstractUnitSelector[] pair : selectors) {
+                pair[1].setMaxUnits(k);
+                Random random = new Random(19);
+                int selected = 0;
+                for (int i = 0; i < 50; i++) {
+                    PointingRay3DFloatDistributionCollection rays = randomRays(random, 2, 3);
+                    Map<String, Float> all = toMap(pair[0].getUnitProbabilities(rays));
+                    UnitProbabilityCollection limited = pair[1].getUnitProbabilities(rays);
+
+                    List<Float> expected = new ArrayList<>(all.values());
+                    expected.sort((a, b) -> Float.compare(b, a));
+                    expected = expected.subList(0, Math.min(k, expected.size()));
+                    List<Float> actual = new ArrayList<>();
+                    for (UnitProbability unitProbability : limited.getElementList()) {
+                        assertEquals(all.get(unitProbability.getId()), unitProbability.getProbability(), 1e-6);
+                        actual.add(unitProbability.getProbability());
+                    }
+                    assertEquals(expected, actual);
+                    selected += actual.size();
+                }
+                assertTrue(selected > 0);
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesBruteForce() throws Exception {
+        System.out.println("testMatchesBruteForce");
+        for (double threshold : new double[]{0.05, THRESHOLD}) {
+            for (AbstractUnitSelector selector : new AbstractUnitSelector[]{
+                createSelector(new MaxSelector(threshold, new AngleMeasure())),
+                createSelector(new MeanSelector(threshold, new AngleMeasure())),
+                createSelector(new MaxSelector(threshold, new OrthogonalMeasure())),
+                createSelector(new MeanSelector(threshold, new OrthogonalMeasure()))}) {
+                Random random = new Random(23);
+                int above = 0;
+                int below = 0;
+                for (int i = 0; i < 50; i++) {
+                    PointingRay3DFloatDistributionCollection rays = randomRays(random, 2, 3);
+                    Map<String, Float> expected = new HashMap<>();
+                    for (Map.Entry<String, Float> entry : bruteForce(selector, rays).entrySet()) {
+                        if (entry.getValue() >= threshold) {
+                            expected.put(entry.getKey(), entry.getValue());
+                        } else if (entry.getValue() > 0) {
+                            below++;
+                        }
+                    }
+                    Map<String, Float> actual = toMap(selector.getUnitProbabilities(rays));
+                    assertEquals(expected.keySet(), actual.keySet());
+                    for (Map.Entry<String, Float> entry : expected.entrySet()) {
+                        assertEquals(entry.getValue(), actual.get(entry.getKey()), 1e-6);
+                    }
+                    above += expected.size();
+                }
+                assertTrue(above > 0);
+                assertTrue(below > 0);
+            }
+        }
+    }
+
+    /**
+     * Calculates the best probability of every object over all ray distributions without any culling.
+     */
+    private Map<String, Float> bruteForce(AbstractUnitSelector selector, PointingRay3DFloatDistributionCollection rays) throws Exception {
+        List<String> ids = new ArrayList<>(objects.keySet());
+        double[] probabilities = new double[ids.size()];
+        float[] accumulated = new float[ids.size()];
+        Map<String, Float> result = new HashMap<>();
+        for (PointingRay3DFloatDistribution distribution : rays.getElementList()) {
+            Arrays.fill(accumulated, 0.0f);
+            for (PointingRay3DFloat pointingRay : distribution.getRayList()) {
+                for (int j = 0; j < ids.size(); j++) {
+                    probabilities[j] = selector.getDistance().probability(pointingRay.getRay(), objects.get(ids.get(j)).getBoundingBox());
+                }
+                selector.accumulate(accumulated, probabilities, pointingRay.getCertainty(), ids.size());
+            }
+            for (int j = 0; j < ids.size(); j++) {
+                result.merge(ids.get(j), accumulated[j], Math::max);
+            }
+        }
+        return result;
+    }
+
+    private AbstractUnitSelector createSelector(AbstractUnitSelector selector) {
+        selector.updateObjects(objects);
+        return selector;
+    }
+
+    /**
+     * Creates ray distributions of persons standing in the middle of the room. The rays of a distribution are
+     * scattered around a common direction and their certainties sum up to 1.
+     */
+    private static PointingRay3DFloatDistributionCollection randomRays(Random random, int distributionCount, int rayCount) {
+        PointingRay3DFloatDistributionCollection.Builder collection = PointingRay3DFloatDistributionCollection.newBuilder();
+        for (int i = 0; i < distributionCount; i++) {
+            double ox = random.nextDouble() * 4 - 2;
+            double oy = random.nextDouble() * 4 - 2;
+            double dx = random.nextGaussian();
+            double dy = random.nextGaussian();
+            double dz = random.nextGaussian() * 0.3;
+            PointingRay3DFloatDistribution.Builder distribution = PointingRay3DFloatDistribution.newBuilder();
+            for (int j = 0; j < rayCount; j++) {
+                distribution.addRay(pointingRay(ox, oy, 1.5, dx + random.nextGaussian() * 0.05, dy + random.nextGaussian() * 0.05, dz + random.nextGaussian() * 0.05)
+                        .toBuilder().setCertainty(1.0f / rayCount));
+            }
+            collection.addElement(distribution);
+        }
+        return collection.build();
+    }
+
+    private static Map<String, Float> toMap(UnitProbabilityCollection collection) {
+        Map<String, Float> result = new HashMap<>();
+        for (UnitProbability unitProbability : collection.getElementList()) {
+            result.put(unitProbability.getId(), unitProbability.getProbability());
+        }
+        return result;
+    }
+}
@@ -21,11 +21,15 @@ package org.openbase.bco.psc.identification.selection.distance;
  * <http://www.gnu.org/licenses/gpl-3.0.html>.
  * #L%
  */
+import java.util.Random;
+import javax.media.j3d.Transform3D;
 import javax.vecmath.Point3d;
 import javax.vecmath.Vector3d;
 import static org.junit.Assert.*;
 import org.junit.Test;
+import org.openbase.bco.psc.identification.selection.BoundingBox;
 import static org.openbase.bco.psc.identification.Testing.*;
+import org.openbase.type.geometry.Ray3DFloatType.Ray3DFloat;
 import org.openbase.type.math.Vec3DFloatType.Vec3DFloat;
 
 /**
@@ -34,6 +38,8 @@ import org.openbase.type.math.Vec3DFloatType.Vec3DFloat;
  */
 public class AbstractDistanceProbabilityMeasureTest {
 
+    private static final Point3d ZERO = new Point3d(0, 0, 0);
+
     /**
      * Test of toVector method, of class AbstractDistanceMeasure.
      */
@@ -150,4 +156,93 @@ public class AbstractDistanceProbabilityMeasureTest {
                 AbstractDistanceMeasure.getMaximalPointOnBox(new Point3d(2.000000, 0.600000, 1.600000),
                         new Vector3d(-1.500000, -0.300000, -0.700000), 1.000000f, 1.000000f, 1.000000f), delta);
     }
+
+    /**
+     * Test of the primitive probability kernels of AngleMeasure and PearsonMeasure against the vecmath based
+     * calculation.
+     */
+    @Test
+    public void testProbabilityKernel() {
+        System.out.println("probabilityKernel");
+        double delta = 0.0000001;
+        Transform3D forwardTransform = new Transform3D();
+        forwardTransform.setEuler(new Vector3d(0.3, -0.2, 1.1));
+        forwardTransform.setTranslation(new Vector3d(2, -1, 0.5));
+        BoundingBox box = new BoundingBox(forwardTransform, 0.4f, 0.6f, 1.2f);
+        AngleMeasure angleMeasure = new AngleMeasure();
+        PearsonMeasure pearsonMeasure = new PearsonMeasure();
+        Random random = new Random(3);
+        for (int i = 0; i < 100; i++) {
+            Ray3DFloat.Builder rayBuilder = Ray3DFloat.newBuilder();
+            rayBuilder.getOriginBuilder().setX((float) random.nextGaussian()).setY((float) random.nextGaussian()).setZ((float) random.nextGaussian());
+            rayBuilder.getDirectionBuilder().setX((float) random.nextGaussian()).setY((float) random.nextGaussian()).setZ((float) random.nextGaussian());
+            Ray3DFloat ray = rayBuilder.build();
+            if (AbstractDistanceMeasure.toVector(ray.getOrigin()).length() < 0.05) {
+                // every box has the probability 1 for rays starting at the root origin
+                continue;
+            }
+
+            Point3d origin = box.toCenterCoordinates(AbstractDistanceMeasure.toPoint(ray.getOrigin()));
+            Vector3d direction = box.toCenterCoordinates(AbstractDistanceMeasure.toVector(ray.getDirection()));
+            Vector3d toCenter = new Vector3d(origin);
+            toCenter.scale(-1.0);
+            double angle = AbstractDistanceMeasure.getAngle(toCenter, direction);
+            double expectedAngleProbability = angle > Math.PI / 2 ? 0 : Math.pow(Math.max(1 - angle * 2 / Math.PI, 0), .5);
+            assertEquals(expectedAngleProbability, angleMeasure.probability(ray, box), delta);
+
+            Point3d closestPoint = AbstractDistanceMeasure.getClosestPoint(origin, direction);
+            double expectedPearson = closestPoint == null ? Double.MAX_VALUE
+                    : Math.sqrt(closestPoint.x * closestPoint.x / (0.4f * 0.4f) + closestPoint.y * closestPoint.y / (0.6f * 0.6f) + closestPoint.z * closestPoint.z / (1.2f * 1.2f));
+            assertEquals(expectedPearson, pearsonMeasure.probability(ray, box), delta);
+        }
+    }
+
+    /**
+     * Test of the orthogonal and the maximal point based measures against a vecmath based calculation.
+     */
+    @Test
+    public void testOrthogonalAndMaxMeasures() {
+        System.out.println("orthogonalAndMaxMeasures");
+        double delta = 0.0000001;
+        OrthogonalMeasure orthogonalMeasure = new OrthogonalMeasure();
+        OrthogonalVsMaxMeasure orthogonalVsMaxMeasure = new OrthogonalVsMaxMeasure();
+        AngleVsMaxMeasure angleVsMaxMeasure = new AngleVsMaxMeasure();
+        // rays through the center
+        assertEquals(1.0, orthogonalMeasure.centerProbability(-2, 0, 0, 1, 0, 0, 0.5, 0.5, 0.5), delta);
+        assertEquals(1.0, orthogonalVsMaxMeasure.centerProbability(-2, 0, 0, 1, 0, 0, 0.5, 0.5, 0.5), delta);
+        assertEquals(1.0, angleVsMaxMeasure.centerProbability(-2, 0, 0, 1, 0, 0, 0.5, 0.5, 0.5), delta);
+        // rays pointing away
+        assertEquals(0.0, orthogonalMeasure.centerProbability(-2, 0, 0, -1, 0, 0, 0.5, 0.5, 0.5), delta);
+        assertEquals(0.0, orthogonalVsMaxMeasure.centerProbability(-2, 0, 0, -1, 0.1, 0, 0.5, 0.5, 0.5), delta);
+        assertEquals(0.0, angleVsMaxMeasure.centerProbability(-2, 0, 0, -1, 0.1, 0, 0.5, 0.5, 0.5), delta);
+        // distance 0.5 relative to half of the diagonal sqrt(0.75)
+        assertEquals(1 - (0.25 / 0.75) / 2, orthogonalMeasure.centerProbability(-2, 0.5, 0, 1, 0, 0, 0.5, 0.5, 0.5), delta);
+
+        Random random = new Random(5);
+        for (int i = 0; i < 100; i++) {
+            Point3d origin = new Point3d(random.nextGaussian() * 2, random.nextGaussian() * 2, random.nextGaussian() * 2);
+            Vector3d toCenter = new Vector3d(origin);
+            toCenter.scale(-1.0);
+            Vector3d direction = new Vector3d(toCenter.x + random.nextGaussian() * 0.5, toCenter.y + random.nextGaussian() * 0.5, toCenter.z + random.nextGaussian() * 0.5);
+            float width = 0.2f + random.nextFloat(), depth = 0.2f + random.nextFloat(), height = 0.2f + random.nextFloat();
+
+            Point3d closestPoint = AbstractDistanceMeasure.getClosestPoint(origin, direction);
+            double diagonalSquared = (width * width + depth * depth + height * height) / 4.0;
+            double expectedOrthogonal = closestPoint == null ? 0 : Math.max(1 - closestPoint.distanceSquared(ZERO) / diagonalSquared / 2, 0);
+            assertEquals(expectedOrthogonal, orthogonalMeasure.distanceProbability(origin, direction, width, depth, height), delta);
+
+            Vector3d maxDirection = new Vector3d(AbstractDistanceMeasure.getMaximalPointOnBox(origin, direction, width, depth, height));
+            maxDirection.sub(origin);
+            Point3d maxClosestPoint = AbstractDistanceMeasure.getClosestPoint(origin, maxDirection);
+            if (closestPoint != null && maxClosestPoint != null) {
+                double ratio = closestPoint.distance(ZERO) / maxClosestPoint.distance(ZERO);
+                assertEquals(Math.max(1 - ratio * ratio / 2, 0), orthogonalVsMaxMeasure.distanceProbability(origin, direction, width, depth, height), delta);
+            }
+            double angle = AbstractDistanceMeasure.getAngle(toCenter, direction);
+            if (angle < Math.PI / 2) {
+                double ratio = angle / AbstractDistanceMeasure.getAngle(toCenter, maxDirection);
+                assertEquals(Math.max(1 - ratio * ratio / 2, 0), angleVsMaxMeasure.distanceProbability(origin, direction, width, depth, height), delta);
+            }
+        }
+    }
 }
@@ -0,0 +1,161 @@
+package org.openbase.bco.psc.identification.selection.distance;
+
+/*-
+ * #%L
+ * BCO PSC Identification
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.Random;
+import javax.media.j3d.Transform3D;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+import org.openbase.bco.psc.identification.selection.BoundingBox;
+import org.openbase.type.geometry.Ray3DFloatType.Ray3DFloat;
+
+/**
+ * Compares the throughput and the selection accuracy of the distance measures. The scene contains small boxes like
+ * lamps as well as large boxes like walls and blinds. For every pointing ray a random point inside of a target box is
+ * chosen and the direction is disturbed by gaussian noise, a ray is selected correctly if the target box has the
+ * highest probability.
+ * <p>
+ * Usage: <code>DistanceMeasureBenchmark [boxes] [rays] [rounds]</code>
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class DistanceMeasureBenchmark {
+
+    private static final int WARMUP_ROUNDS = 20;
+    private static final double DIRECTION_NOISE = 0.05;
+
+    public static void main(final String[] args) {
+        final int boxCount = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        final int rayCount = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        final int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        final Random random = new Random(42);
+        final BoundingBox[] boxes = new BoundingBox[boxCount];
+        for (int i = 0; i < boxCount; i++) {
+            boxes[i] = createBox(random, i % 4 == 0);
+        }
+        final Ray3DFloat[] rays = new Ray3DFloat[rayCount];
+        final int[] targets = new int[rayCount];
+        for (int i = 0; i < rayCount; i++) {
+            targets[i] = random.nextInt(boxCount);
+            rays[i] = createRay(random, boxes[targets[i]]);
+        }
+
+        final DistanceType[] types = DistanceType.values();
+        final AbstractDistanceMeasure[] measures = new AbstractDistanceMeasure[types.length];
+        for (int i = 0; i < types.length; i++) {
+            measures[i] = create(types[i]);
+        }
+        final int[] angleSelection = select(measures[0], boxes, rays);
+        for (int i = 0; i < types.length; i++) {
+            final int[] selection = select(measures[i], boxes, rays);
+            int correct = 0;
+            int agreeing = 0;
+            for (int j = 0; j < rayCount; j++) {
+                correct += selection[j] == targets[j] ? 1 : 0;
+                agreeing += selection[j] == angleSelection[j] ? 1 : 0;
+            }
+            run(measures[i], boxes, rays, WARMUP_ROUNDS);
+            final double nanos = run(measures[i], boxes, rays, rounds);
+            System.out.println(types[i].name() + ": " + String.format("%.1f", nanos) + "ns/op, accuracy "
+                    + String.format("%.3f", (double) correct / rayCount) + ", agreement with ANGLE "
+                    + String.format("%.3f", (double) agreeing / rayCount));
+        }
+    }
+
+    private static AbstractDistanceMeasure create(final DistanceType type) {
+        switch (type) {
+            case ORTHOGONAL:
+                return new OrthogonalMeasure();
+            case ANGLE_MAX:
+                return new AngleVsMaxMeasure();
+            case ORTHOGONAL_MAX:
+                return new OrthogonalVsMaxMeasure();
+            case ANGLE:
+            default:
+                return new AngleMeasure();
+        }
+    }
+
+    private static double run(final AbstractDistanceMeasure measure, final BoundingBox[] boxes, final Ray3DFloat[] rays, final int rounds) {
+        double sum = 0;
+        final long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (final Ray3DFloat ray : rays) {
+                for (final BoundingBox box : boxes) {
+                    sum += measure.probability(ray, box);
+                }
+            }
+        }
+        final long duration = System.nanoTime() - start;
+        if (sum < 0) {
+            System.out.println(sum);
+        }
+        return (double) duration / ((long) rounds * rays.length * boxes.length);
+    }
+
+    private static int[] select(final AbstractDistanceMeasure measure, final BoundingBox[] boxes, final Ray3DFloat[] rays) {
+        final int[] selection = new int[rays.length];
+        for (int i = 0; i < rays.length; i++) {
+            double best = Double.NEGATIVE_INFINITY;
+            selection[i] = -1;
+            for (int j = 0; j < boxes.length; j++) {
+                final double probability = measure.probability(rays[i], boxes[j]);
+                if (probability > best) {
+                    best = probability;
+                    selection[i] = j;
+                }
+            }
+        }
+        return selection;
+    }
+
+    private static BoundingBox createBox(final Random random, final boolean large) {
+        final Transform3D transform = new Transform3D();
+        transform.rotZ(random.nextDouble() * 2 * Math.PI);
+        transform.setTranslation(new Vector3d(random.nextDouble() * 16 - 8, random.nextDouble() * 16 - 8, random.nextDouble() * 2));
+        if (large) {
+            // walls and blinds
+            return new BoundingBox(transform, 1.5f + 3 * random.nextFloat(), 0.05f + 0.1f * random.nextFloat(), 1 + 1.5f * random.nextFloat());
+        }
+        return new BoundingBox(transform, 0.1f + 0.4f * random.nextFloat(), 0.1f + 0.4f * random.nextFloat(), 0.1f + 0.4f * random.nextFloat());
+    }
+
+    private static Ray3DFloat createRay(final Random random, final BoundingBox target) {
+        final Point3d origin = new Point3d(random.nextDouble() * 4 - 2, random.nextDouble() * 4 - 2, 1.2 + 0.4 * random.nextDouble());
+        final Point3d point = new Point3d(target.getRootCenter());
+        final Vector3d offset = new Vector3d((random.nextDouble() - 0.5) * target.getWidth(),
+                (random.nextDouble() - 0.5) * target.getDepth(), (random.nextDouble() - 0.5) * target.getHeight());
+        final Transform3D rotation = new Transform3D();
+        rotation.setRotation(target.getOrientation());
+        rotation.transform(offset);
+        point.add(offset);
+        final Vector3d direction = new Vector3d(point);
+        direction.sub(origin);
+        direction.normalize();
+        direction.add(new Vector3d(random.nextGaussian() * DIRECTION_NOISE, random.nextGaussian() * DIRECTION_NOISE, random.nextGaussian() * DIRECTION_NOISE));
+        final Ray3DFloat.Builder builder = Ray3DFloat.newBuilder();
+        builder.getOriginBuilder().setX((float) origin.x).setY((float) origin.y).setZ((float) origin.z);
+        builder.getDirectionBuilder().setX((float) direction.x).setY((float) direction.y).setZ((float) direction.z);
+        return builder.build();
+    }
+}
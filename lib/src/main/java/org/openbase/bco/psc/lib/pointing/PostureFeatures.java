@@ -0,0 +1,250 @@
+package org.openbase.bco.psc.lib.pointing;
+
+/*
+ * #%L
+ * BCO PSC Library
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+import org.openbase.type.geometry.TranslationType.Translation;
+import org.openbase.type.kinematics.Posture3DFloatType.Posture3DFloat;
+import org.openbase.type.tracking.TrackedPosture3DFloatType.TrackedPosture3DFloat;
+
+/**
+ * Geometric features of a single posture, computed once and shared by the ray extractors and selectors. The joint
+ * positions and confidences are read from the protobuf message once, derived angles are computed on first use.
+ * An instance can be reused for several postures by calling <code>set</code>.
+ * The angles are given in degrees and equal those of the corresponding functions in <code>PostureFunctions</code>.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class PostureFeatures {
+
+    /**
+     * Number of joints that are read from a posture.
+     */
+    public static final int JOINT_COUNT = Joints.values().length;
+    private static final int RIGHT = 0;
+    private static final int LEFT = 1;
+
+    private final double[] positions = new double[JOINT_COUNT * 3];
+    private final double[] confidences = new double[JOINT_COUNT];
+    /**
+     * Lazily computed values per side, NaN if not computed yet.
+     */
+    private final double[] elbowAngles = new double[2];
+    private final double[] handHeightAngles = new double[2];
+    private final double[] relativeHandHeightAngles = new double[2];
+    private final double[] postureConfidences = new double[2];
+    private TrackedPosture3DFloat posture;
+    private boolean valid;
+
+    /**
+     * Creates empty features, <code>set</code> has to be called before use.
+     */
+    public PostureFeatures() {
+    }
+
+    /**
+     * Creates the features of the given posture.
+     *
+     * @param posture the posture.
+     */
+    public PostureFeatures(final TrackedPosture3DFloat posture) {
+        set(posture);
+    }
+
+    /**
+     * Reads the given posture and resets all derived values.
+     *
+     * @param posture the posture.
+     * @return this instance.
+     */
+    public PostureFeatures set(final TrackedPosture3DFloat posture) {
+        this.posture = posture;
+        this.valid = PostureFunctions.checkPosture(posture);
+        Arrays.fill(positions, 0.0);
+        Arrays.fill(confidences, 0.0);
+        if (posture.hasPosture()) {
+            final Posture3DFloat joints = posture.getPosture();
+            final int jointCount = Math.min(JOINT_COUNT, joints.getPositionCount());
+            for (int i = 0; i < jointCount; i++) {
+                final Translation position = joints.getPosition(i);
+                positions[i * 3] = position.getX();
+                positions[i * 3 + 1] = position.getY();
+                positions[i * 3 + 2] = position.getZ();
+            }
+            final int confidenceCount = Math.min(JOINT_COUNT, posture.getConfidenceCount());
+            for (int i = 0; i < confidenceCount; i++) {
+                confidences[i] = posture.getConfidence(i);
+            }
+        }
+        resetDerived();
+        return this;
+    }
+
+    /**
+     * Copies the given features.
+     *
+     * @param other the features to copy.
+     * @return this instance.
+     */
+    public PostureFeatures set(final PostureFeatures other) {
+        this.posture = other.posture;
+        this.valid = other.valid;
+        System.arraycopy(other.positions, 0, positions, 0, positions.length);
+        System.arraycopy(other.confidences, 0, confidences, 0, confidences.length);
+        System.arraycopy(other.elbowAngles, 0, elbowAngles, 0, 2);
+        System.arraycopy(other.handHeightAngles, 0, handHeightAngles, 0, 2);
+        System.arraycopy(other.relativeHandHeightAngles, 0, relativeHandHeightAngles, 0, 2);
+        System.arraycopy(other.postureConfidences, 0, postureConfidences, 0, 2);
+        return this;
+    }
+
+    private void resetDerived() {
+        Arrays.fill(elbowAngles, Double.NaN);
+        Arrays.fill(handHeightAngles, Double.NaN);
+        Arrays.fill(relativeHandHeightAngles, Double.NaN);
+        Arrays.fill(postureConfidences, Double.NaN);
+    }
+
+    /**
+     * Gets the posture the features were computed from.
+     *
+     * @return the posture.
+     */
+    public TrackedPosture3DFloat getPosture() {
+        return posture;
+    }
+
+    /**
+     * Returns whether the posture passes <code>PostureFunctions.checkPosture</code>.
+     *
+     * @return true, if the posture contains positions and confidences for its joints.
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    public double getX(final Joints joint) {
+        return positions[joint.getValue() * 3];
+    }
+
+    public double getY(final Joints joint) {
+        return positions[joint.getValue() * 3 + 1];
+    }
+
+    public double getZ(final Joints joint) {
+        return positions[joint.getValue() * 3 + 2];
+    }
+
+    public double getConfidence(final Joints joint) {
+        return confidences[joint.getValue()];
+    }
+
+    /**
+     * Gets the angle at the elbow between upper arm and forearm.
+     *
+     * @param right if true, the right arm is used.
+     * @return the elbow angle in degrees.
+     */
+    public double getElbowAngle(final boolean right) {
+        final int side = right ? RIGHT : LEFT;
+        if (Double.isNaN(elbowAngles[side])) {
+            final int elbow = (right ? Joints.ElbowRight : Joints.ElbowLeft).getValue() * 3;
+            final int shoulder = (right ? Joints.ShoulderRight : Joints.ShoulderLeft).getValue() * 3;
+            final int hand = (right ? Joints.HandRight : Joints.HandLeft).getValue() * 3;
+            elbowAngles[side] = angle(
+                    positions[shoulder] - positions[elbow], positions[shoulder + 1] - positions[elbow + 1], positions[shoulder + 2] - positions[elbow + 2],
+                    positions[hand] - positions[elbow], positions[hand + 1] - positions[elbow + 1], positions[hand + 2] - positions[elbow + 2]);
+        }
+        return elbowAngles[side];
+    }
+
+    /**
+     * Gets the angle between the up direction and the shoulder-hand direction.
+     *
+     * @param right if true, the right arm is used.
+     * @param relative if true, the up direction of the posture is used, else the global up direction.
+     * @return the hand height angle in degrees.
+     */
+    public double getHandHeightAngle(final boolean right, final boolean relative) {
+        final int side = right ? RIGHT : LEFT;
+        final double[] angles = relative ? relativeHandHeightAngles : handHeightAngles;
+        if (Double.isNaN(angles[side])) {
+            final int shoulder = (right ? Joints.ShoulderRight : Joints.ShoulderLeft).getValue() * 3;
+            final int hand = (right ? Joints.HandRight : Joints.HandLeft).getValue() * 3;
+            final double x = positions[hand] - positions[shoulder];
+            final double y = positions[hand + 1] - positions[shoulder + 1];
+            final double z = positions[hand + 2] - positions[shoulder + 2];
+            if (relative) {
+                final int base = Joints.SpineBase.getValue() * 3;
+                final int neck = Joints.Neck.getValue() * 3;
+                angles[side] = angle(positions[neck] - positions[base], positions[neck + 1] - positions[base + 1], positions[neck + 2] - positions[base + 2], x, y, z);
+            } else {
+                angles[side] = angle(PostureFunctions.UP.getX(), PostureFunctions.UP.getY(), PostureFunctions.UP.getZ(), x, y, z);
+            }
+        }
+        return angles[side];
+    }
+
+    /**
+     * Gets the product of the confidences of the head and the joints of the given arm.
+     *
+     * @param right if true, the right arm is used.
+     * @return the posture confidence.
+     * @see PostureFunctions#postureConfidence(TrackedPosture3DFloat, boolean)
+     */
+    public double getPostureConfidence(final boolean right) {
+        final int side = right ? RIGHT : LEFT;
+        if (Double.isNaN(postureConfidences[side])) {
+            double confidence = confidences[Joints.Head.getValue()];
+            if (right) {
+                confidence *= confidences[Joints.ShoulderRight.getValue()];
+                confidence *= confidences[Joints.ElbowRight.getValue()];
+                confidence *= confidences[Joints.WristRight.getValue()];
+                confidence *= confidences[Joints.HandRight.getValue()];
+            } else {
+                confidence *= confidences[Joints.ShoulderLeft.getValue()];
+                confidence *= confidences[Joints.ElbowLeft.getValue()];
+                confidence *= confidences[Joints.WristLeft.getValue()];
+                confidence *= confidences[Joints.HandLeft.getValue()];
+            }
+            postureConfidences[side] = confidence;
+        }
+        return postureConfidences[side];
+    }
+
+    /**
+     * Calculates the angle between two vectors like <code>Point3D.angle</code>.
+     *
+     * @return the angle in degrees.
+     */
+    private static double angle(final double ax, final double ay, final double az, final double bx, final double by, final double bz) {
+        final double delta = (ax * bx + ay * by + az * bz) / Math.sqrt((ax * ax + ay * ay + az * az) * (bx * bx + by * by + bz * bz));
+        if (delta > 1.0) {
+            return 0.0;
+        }
+        if (delta < -1.0) {
+            return 180.0;
+        }
+        return Math.toDegrees(Math.acos(delta));
+    }
+}
@@ -0,0 +1,239 @@
+package org.openbase.bco.psc.lib.rsb;
+
+/*-
+ * #%L
+ * BCO PSC Library
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.protobuf.Message;
+import com.google.protobuf.MessageOrBuilder;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.printer.ExceptionPrinter;
+import org.openbase.jul.exception.printer.LogLevel;
+import org.openbase.jul.iface.Launchable;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decouples the publishing of data from the thread producing it. The data is handed over through a single slot, so
+ * that only the latest data is published: data that is replaced before the publisher thread picks it up is dropped,
+ * and data that is older than the maximal age when it is picked up is discarded as stale. The producer never blocks,
+ * even if the informer is slow.
+ *
+ * @param <T> the type of the published data.
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class CoalescingPublisher<T extends Message & MessageOrBuilder> implements Launchable<Void> {
+
+    /**
+     * Logger instance.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(CoalescingPublisher.class);
+
+    /**
+     * The connection used to publish the data.
+     */
+    private final AbstractRSBDualConnection<T> connection;
+    /**
+     * Maximal age of data in nanoseconds when it is picked up by the publisher thread, values smaller than 1 disable
+     * the check.
+     */
+    private final long maxAgeNanos;
+    /**
+     * The single slot holding the latest data that has not been published yet.
+     */
+    private final AtomicReference<Pending<T>> slot = new AtomicReference<>();
+    /**
+     * Number of frames replaced by newer data before they were published.
+     */
+    private final AtomicLong droppedFrames = new AtomicLong();
+    /**
+     * Number of frames discarded because they exceeded the maximal age.
+     */
+    private final AtomicLong staleFrames = new AtomicLong();
+    /**
+     * Number of published frames.
+     */
+    private final AtomicLong publishedFrames = new AtomicLong();
+    /**
+     * The publisher thread, only available while the publisher is active.
+     */
+    private volatile Thread publisherThread;
+
+    /**
+     * Constructor.
+     *
+     * @param connection the connection used to publish the data.
+     * @param maxAge maximal age of data in milliseconds when it is picked up by the publisher thread, values smaller
+     * than 1 disable the check.
+     */
+    public CoalescingPublisher(final AbstractRSBDualConnection<T> connection, final long maxAge) {
+        this.connection = connection;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAge);
+    }
+
+    /**
+     * Offers data for publishing. If the previous data has not been published yet, it is dropped. Data offered while
+     * the publisher is not active is dropped as well.
+     *
+     * @param data the data to be published.
+     */
+    public void offer(final T data) {
+        final Thread thread = publisherThread;
+        if (thread == null) {
+            droppedFrames.incrementAndGet();
+            return;
+        }
+        if (slot.getAndSet(new Pending<>(data, System.nanoTime())) != null) {
+            droppedFrames.incrementAndGet();
+            LOGGER.trace("Dropped a frame that was replaced before it was published.");
+        }
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Gets the number of frames that were replaced by newer data before they were published.
+     *
+     * @return the number of dropped frames.
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * Gets the number of frames that were discarded because they exceeded the maximal age before they were published.
+     *
+     * @return the number of stale frames.
+     */
+    public long getStaleFrames() {
+        return staleFrames.get();
+    }
+
+    /**
+     * Gets the number of published frames.
+     *
+     * @return the number of published frames.
+     */
+    public long getPublishedFrames() {
+        return publishedFrames.get();
+    }
+
+    /**
+     * Publishes the data handed over through the slot until the publisher is deactivated.
+     */
+    private void publishLoop() {
+        final Thread currentThread = Thread.currentThread();
+        while (publisherThread == currentThread) {
+            final Pending<T> pending = slot.getAndSet(null);
+            if (pending == null) {
+                LockSupport.park(this);
+                // Only deactivate interrupts this thread, a pending interrupt would otherwise make park return at once.
+                Thread.interrupted();
+                continue;
+            }
+            if (maxAgeNanos > 0 && System.nanoTime() - pending.created > maxAgeNanos) {
+                staleFrames.incrementAndGet();
+                LOGGER.trace("Discarded a stale frame.");
+                continue;
+            }
+            try {
+                connection.publishData(pending.data);
+                publishedFrames.incrementAndGet();
+            } catch (CouldNotPerformException ex) {
+                ExceptionPrinter.printHistory(new CouldNotPerformException("Could not publish the data.", ex), LOGGER);
+            } catch (InterruptedException ex) {
+                if (publisherThread != currentThread) {
+                    currentThread.interrupt();
+                    return;
+                }
+                ExceptionPrinter.printHistory(new CouldNotPerformException("Publishing was interrupted, continuing with the next frame.", ex), LOGGER, LogLevel.WARN);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws CouldNotPerformException {@inheritDoc}
+     * @throws InterruptedException {@inheritDoc}
+     */
+    @Override
+    public synchronized void activate() throws CouldNotPerformException, InterruptedException {
+        if (publisherThread != null) {
+            return;
+        }
+        LOGGER.info("Activating coalescing publisher.");
+        final Thread thread = new Thread(this::publishLoop, "CoalescingPublisher");
+        thread.setDaemon(true);
+        publisherThread = thread;
+        thread.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws CouldNotPerformException {@inheritDoc}
+     * @throws InterruptedException {@inheritDoc}
+     */
+    @Override
+    public synchronized void deactivate() throws CouldNotPerformException, InterruptedException {
+        final Thread thread = publisherThread;
+        if (thread == null) {
+            return;
+        }
+        LOGGER.info("Deactivating coalescing publisher. Published: " + publishedFrames.get() + ", dropped: " + droppedFrames.get() + ", stale: " + staleFrames.get());
+        publisherThread = null;
+        LockSupport.unpark(thread);
+        thread.join(1000);
+        if (thread.isAlive()) {
+            thread.interrupt();
+        }
+        slot.set(null);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public boolean isActive() {
+        return publisherThread != null;
+    }
+
+    /**
+     * Data waiting to be published together with its creation time.
+     *
+     * @param <T> the type of the data.
+     */
+    private static class Pending<T> {
+
+        private final T data;
+        private final long created;
+
+        private Pending(final T data, final long created) {
+            this.data = data;
+            this.created = created;
+        }
+    }
+}
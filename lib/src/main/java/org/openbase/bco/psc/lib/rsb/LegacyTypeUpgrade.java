@@ -0,0 +1,58 @@
+package org.openbase.bco.psc.lib.rsb;
+
+/*-
+ * #%L
+ * BCO PSC Library
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import org.openbase.jul.exception.CouldNotPerformException;
+
+/**
+ * Upgrades messages of outdated rst types into the corresponding openbase types. The openbase types share the field
+ * layout of the rst types, so the wire bytes of the outdated message can be parsed directly into the new type.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public final class LegacyTypeUpgrade {
+
+    private LegacyTypeUpgrade() {
+    }
+
+    /**
+     * Parses the wire bytes of an outdated message into the given type.
+     *
+     * @param <T> the new type.
+     * @param legacyMessage the message of the outdated type.
+     * @param defaultInstance the default instance of the new type.
+     * @return the upgraded message.
+     * @throws CouldNotPerformException is thrown, if the bytes can not be parsed into the new type.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Message> T upgrade(final Message legacyMessage, final T defaultInstance) throws CouldNotPerformException {
+        try {
+            return (T) defaultInstance.getParserForType().parseFrom(legacyMessage.toByteString());
+        } catch (InvalidProtocolBufferException ex) {
+            throw new CouldNotPerformException("Could not upgrade message of type " + legacyMessage.getDescriptorForType().getFullName()
+                    + " to " + defaultInstance.getDescriptorForType().getFullName() + ".", ex);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.openbase.bco.psc.lib.rsb;
+
+/*-
+ * #%L
+ * BCO PSC Library
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+import rsb.MetaData;
+
+/**
+ * Helper for the track information that is attached as user infos to the meta data of merged posture events.
+ * The track ids are listed in the order of the postures, an id of -1 marks an empty posture.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public final class TrackMetaData {
+
+    /**
+     * User info key of the track ids of all postures of an event.
+     */
+    public static final String TRACK_IDS = "track-ids";
+    /**
+     * User info key of the track ids that were created in the merging cycle of an event.
+     */
+    public static final String NEW_TRACKS = "new-tracks";
+    /**
+     * User info key of the track ids that were retired in the merging cycle of an event.
+     */
+    public static final String LOST_TRACKS = "lost-tracks";
+
+    private TrackMetaData() {
+    }
+
+    /**
+     * Writes the given track ids as a comma separated list into the meta data.
+     *
+     * @param metaData the meta data that is modified.
+     * @param key the user info key.
+     * @param trackIds the track ids.
+     */
+    public static void setTrackIds(final MetaData metaData, final String key, final long[] trackIds) {
+        final StringBuilder builder = new StringBuilder(trackIds.length * 4);
+        for (int i = 0; i < trackIds.length; i++) {
+            if (i != 0) {
+                builder.append(',');
+            }
+            builder.append(trackIds[i]);
+        }
+        metaData.setUserInfo(key, builder.toString());
+    }
+
+    /**
+     * Reads the track ids stored under the given key.
+     *
+     * @param metaData the meta data of the event.
+     * @param key the user info key.
+     * @return the track ids or null, if the meta data does not contain the key or the value can not be parsed.
+     */
+    public static long[] getTrackIds(final MetaData metaData, final String key) {
+        if (!metaData.hasUserInfo(key)) {
+            return null;
+        }
+        final String value = metaData.getUserInfo(key);
+        if (value.isEmpty()) {
+            return new long[0];
+        }
+        final String[] parts = value.split(",");
+        final long[] trackIds = new long[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                trackIds[i] = Long.parseLong(parts[i]);
+            }
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+        return trackIds;
+    }
+}
@@ -24,10 +24,15 @@ package org.openbase.bco.psc.re;
  */
 
 import java.util.Arrays;
-import java.util.stream.Collectors;
 
 import com.google.protobuf.Message;
+import org.openbase.bco.psc.lib.rsb.CoalescingPublisher;
+import org.openbase.bco.psc.lib.rsb.LegacyTypeUpgrade;
+import org.openbase.bco.psc.lib.rsb.TrackMetaData;
+import org.openbase.bco.psc.re.jp.JPRayExtractorParallelThreshold;
+import org.openbase.bco.psc.re.jp.JPRayExtractorPublishMaxAge;
 import org.openbase.bco.psc.re.jp.JPRayExtractorThreshold;
+import org.openbase.bco.psc.re.jp.JPProbabilityModel;
 import org.openbase.bco.psc.re.jp.JPRayExtractorType;
 import org.openbase.bco.psc.re.jp.JPRaySelectorType;
 import org.openbase.bco.psc.re.pointing.AbstractRayExtractor;
@@ -37,6 +42,8 @@ import org.openbase.bco.psc.re.pointing.ExtractorType;
 import static org.openbase.bco.psc.re.pointing.ExtractorType.*;
 
 import org.openbase.bco.psc.re.pointing.PostureHistoryExtractor;
+import org.openbase.bco.psc.re.pointing.ProbabilityModel;
+import org.openbase.bco.psc.re.pointing.RayBatch;
 import org.openbase.bco.psc.re.pointing.SimpleExtractor;
 import org.openbase.bco.psc.re.pointing.selectors.ChoiceSelector;
 import org.openbase.bco.psc.re.pointing.selectors.DistributedSelector;
@@ -54,8 +61,6 @@ import org.openbase.jps.exception.JPNotAvailableException;
 import org.openbase.jul.exception.CouldNotPerformException;
 import org.openbase.jul.exception.InitializationException;
 import org.openbase.jul.exception.printer.ExceptionPrinter;
-import org.openbase.jul.exception.printer.LogLevel;
-import org.openbase.jul.extension.protobuf.processing.ProtoBufJSonProcessor;
 import org.openbase.jul.iface.Launchable;
 import org.openbase.jul.iface.VoidInitializable;
 import org.slf4j.LoggerFactory;
@@ -73,20 +78,20 @@ public class RayExtractorController extends AbstractEventHandler implements RayE
     private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(RayExtractorLauncher.class);
     private double threshold;
     private RSBConnection rsbConnection;
+    private CoalescingPublisher<PointingRay3DFloatDistributionCollection> publisher;
     private AbstractRayExtractor pointingExtractor;
+    private final RayBatch rayBatch = new RayBatch();
 
     private boolean initialized;
     private boolean active;
 
-    private ProtoBufJSonProcessor processor = new ProtoBufJSonProcessor();
-
     @Override
     public void handleEvent(final Event event) {
 
-        // apply workaround to transform outdated rst TrackedPostures3DFloatType into new openbase type by just serializing the type.
+        // upgrade outdated rst TrackedPostures3DFloatType into the new openbase type by parsing its wire bytes.
         if ((event.getData() instanceof rst.tracking.TrackedPostures3DFloatType.TrackedPostures3DFloat)) {
             try {
-                event.setData(processor.deserialize(processor.serialize((Message) event.getData()), TrackedPostures3DFloat.class));
+                event.setData(LegacyTypeUpgrade.upgrade((Message) event.getData(), TrackedPostures3DFloat.getDefaultInstance()));
             } catch (CouldNotPerformException ex) {
                 ExceptionPrinter.printHistory("Could not upgrade outdated rst type[" + rst.tracking.TrackedPostures3DFloatType.TrackedPostures3DFloat.class.getName() + "]!", ex, LOGGER);
             }
@@ -98,26 +103,19 @@ public class RayExtractorController extends AbstractEventHandler implements RayE
 
         LOGGER.trace("New TrackedPostures3DFloat event received.");
         TrackedPostures3DFloat postures = (TrackedPostures3DFloat) event.getData();
-        pointingExtractor.updatePostures(postures);
-        try {
-            LOGGER.trace("Getting pointing rays.");
-            //TODO: Include the quality of the skeletons into the calculation of probabilities!!!
-
-            //TODO add either posture id to pointingRays or make a PointingRayCollectionList possible!
-            // Maybe even PointingRays3DFloat + Collection including ID?!aswell!!
-            rsbConnection.publishData(PointingRay3DFloatDistributionCollection.newBuilder()
-                    .addAllElement(pointingExtractor.getPointingRays().stream()
-                            .filter(rd -> rd.getRayList().stream()
-                                    .map(r -> r.getCertainty())
-                                    .reduce(0.0f, Float::sum) >= threshold)
-                            .collect(Collectors.toList()))
-                    .build());
-        } catch (CouldNotPerformException ex) {
-            ExceptionPrinter.printHistory(new CouldNotPerformException("Could not send the pointing rays.", ex), LOGGER);
-        } catch (InterruptedException ex) {
-            Thread.currentThread().interrupt();
-            ExceptionPrinter.printHistory(new CouldNotPerformException("Sending the rays failed.", ex), LOGGER, LogLevel.ERROR);
+        LOGGER.trace("Getting pointing rays.");
+        //TODO: Include the quality of the skeletons into the calculation of probabilities!!!
+
+        //TODO add either posture id to pointingRays or make a PointingRayCollectionList possible!
+        // Maybe even PointingRays3DFloat + Collection including ID?!aswell!!
+        final PointingRay3DFloatDistributionCollection.Builder collectionBuilder = PointingRay3DFloatDistributionCollection.newBuilder();
+        synchronized (rayBatch) {
+            pointingExtractor.extractPointingRays(postures, TrackMetaData.getTrackIds(event.getMetaData(), TrackMetaData.TRACK_IDS), threshold, rayBatch);
+            for (int i = 0; i < rayBatch.size(); i++) {
+                collectionBuilder.addElement(rayBatch.get(i));
+            }
         }
+        publisher.offer(collectionBuilder.build());
     }
 
     @Override
@@ -128,6 +126,7 @@ public class RayExtractorController extends AbstractEventHandler implements RayE
                 initExtractor();
                 rsbConnection = new RSBConnection(this);
                 rsbConnection.init();
+                publisher = new CoalescingPublisher<>(rsbConnection, JPService.getProperty(JPRayExtractorPublishMaxAge.class).getValue());
                 initialized = true;
             } catch (JPNotAvailableException | CouldNotPerformException ex) {
                 throw new InitializationException(RayExtractorController.class, ex);
@@ -140,6 +139,8 @@ public class RayExtractorController extends AbstractEventHandler implements RayE
         LOGGER.info("Selected Extractor implementation: " + extractorType.name());
         SelectorType selectorType = JPService.getProperty(JPRaySelectorType.class).getValue();
         LOGGER.info("Selected Selector implementation: " + selectorType.name());
+        ProbabilityModel probabilityModel = JPService.getProperty(JPProbabilityModel.class).getValue();
+        LOGGER.info("Selected probability model: " + probabilityModel.name());
         threshold = JPService.getProperty(JPRayExtractorThreshold.class).getValue();
         LOGGER.info("Selected threshold: " + threshold);
         RaySelectorInterface raySelector;
@@ -163,20 +164,23 @@ public class RayExtractorController extends AbstractEventHandler implements RayE
                 raySelector = new ChoiceSelector(Arrays.asList(PointingType.HEAD_HAND, PointingType.SHOULDER_HAND));
                 break;
         }
+        final int parallelThreshold = JPService.getProperty(JPRayExtractorParallelThreshold.class).getValue();
+        LOGGER.info("Selected parallel threshold: " + parallelThreshold);
         switch (extractorType) {
             case SIMPLE:
                 pointingExtractor = new SimpleExtractor(raySelector);
                 break;
             case ARM_POSTURE:
-                pointingExtractor = new ArmPostureExtractor(raySelector);
+                pointingExtractor = new ArmPostureExtractor(raySelector, probabilityModel);
                 break;
             case POSTURE_DURATION:
-                pointingExtractor = new PostureHistoryExtractor(raySelector);
+                pointingExtractor = new PostureHistoryExtractor(raySelector, probabilityModel);
                 break;
             default:
                 pointingExtractor = new SimpleExtractor(raySelector);
                 break;
         }
+        pointingExtractor.setParallelThreshold(parallelThreshold);
     }
 
     @Override
@@ -187,6 +191,7 @@ public class RayExtractorController extends AbstractEventHandler implements RayE
         }
         if (!active) {
             active = true;
+            publisher.activate();
             rsbConnection.activate();
         }
     }
@@ -197,6 +202,7 @@ public class RayExtractorController extends AbstractEventHandler implements RayE
         if (active) {
             active = false;
             rsbConnection.deactivate();
+            publisher.deactivate();
         }
     }
 
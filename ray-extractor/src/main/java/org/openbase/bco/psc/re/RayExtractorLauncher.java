@@ -7,7 +7,10 @@ import org.openbase.bco.psc.re.jp.JPDurationLookback;
 import org.openbase.bco.psc.re.jp.JPDurationMaximalAngle;
 import org.openbase.bco.psc.re.jp.JPDurationProbabilityThreshold;
 import org.openbase.bco.psc.re.jp.JPDurationReductionFactor;
+import org.openbase.bco.psc.re.jp.JPRayExtractorParallelThreshold;
+import org.openbase.bco.psc.re.jp.JPRayExtractorPublishMaxAge;
 import org.openbase.bco.psc.re.jp.JPRayExtractorThreshold;
+import org.openbase.bco.psc.re.jp.JPProbabilityModel;
 import org.openbase.bco.psc.re.jp.JPRayExtractorType;
 import org.openbase.bco.psc.re.jp.JPRaySelectorType;
 import org.openbase.bco.authentication.lib.BCO;
@@ -59,10 +62,13 @@ public class RayExtractorLauncher extends AbstractLauncher<RayExtractorControlle
 
         // Threshold
         JPService.registerProperty(JPRayExtractorThreshold.class);
+        JPService.registerProperty(JPRayExtractorParallelThreshold.class);
+        JPService.registerProperty(JPRayExtractorPublishMaxAge.class);
 
         // Component specific
         JPService.registerProperty(JPRayExtractorType.class);
         JPService.registerProperty(JPRaySelectorType.class);
+        JPService.registerProperty(JPProbabilityModel.class);
 
         // PostureHistoryExtractor stuff
         JPService.registerProperty(JPDurationLookback.class);
@@ -23,6 +23,9 @@ package org.openbase.bco.psc.re.pointing;
  */
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.openbase.bco.psc.lib.pointing.PostureFeatures;
 import org.openbase.bco.psc.re.pointing.selectors.RaySelectorInterface;
 import org.openbase.jul.exception.NotAvailableException;
 import org.openbase.type.tracking.PointingRay3DFloatDistributionType.PointingRay3DFloatDistribution;
@@ -40,6 +43,15 @@ public abstract class AbstractRayExtractor {
      * The ray selector that is used to select the correct rays.
      */
     private final RaySelectorInterface raySelector;
+    /**
+     * Number of extraction items above which a batched extraction is split across the ForkJoin pool. Values smaller
+     * than 1 disable the parallel extraction.
+     */
+    private volatile int parallelThreshold;
+    /**
+     * Features used as scratch space by the batched extraction, one instance per extracting thread.
+     */
+    private final ThreadLocal<PostureFeatures> scratchFeatures = ThreadLocal.withInitial(PostureFeatures::new);
 
     /**
      * Constructor.
@@ -62,6 +74,17 @@ public abstract class AbstractRayExtractor {
      */
     public abstract void updatePostures(final TrackedPostures3DFloat postures);
 
+    /**
+     * Update the internal posture data of postures with known track ids. Extractors that keep a state per person
+     * should override this method, the default implementation ignores the track ids.
+     *
+     * @param postures new posture data.
+     * @param trackIds the track id of every posture in the order of the postures or null, if the ids are unknown.
+     */
+    public void updatePostures(final TrackedPostures3DFloat postures, final long[] trackIds) {
+        updatePostures(postures);
+    }
+
     /**
      * Returns the current pointing rays based on the posture data provided in the updatePostures method.
      *
@@ -70,6 +93,113 @@ public abstract class AbstractRayExtractor {
      */
     public abstract List<PointingRay3DFloatDistribution> getPointingRays() throws NotAvailableException;
 
+    /**
+     * Extracts the rays of a single item of the batch prepared in <code>prepareBatch</code> and stores them in the
+     * slots of the item using <code>addRays</code>. This method may be called concurrently for different items,
+     * scratch features of the calling thread are available via <code>getScratchFeatures</code>.
+     *
+     * @param item the index of the item.
+     * @param threshold the minimal summed certainty of a ray distribution to be included.
+     * @param batch the output of the extraction.
+     */
+    protected abstract void extractRays(final int item, final double threshold, final RayBatch batch);
+
+    //================================================================================
+    // Batched extraction
+    //================================================================================
+    /**
+     * Sets the number of extraction items above which a batched extraction is split across the common ForkJoin pool.
+     *
+     * @param parallelThreshold the number of items, values smaller than 1 disable the parallel extraction.
+     */
+    public void setParallelThreshold(final int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Gets features that may be used as scratch space by the calling thread during <code>extractRays</code>.
+     *
+     * @return the scratch features of the calling thread.
+     */
+    protected PostureFeatures getScratchFeatures() {
+        return scratchFeatures.get();
+    }
+
+    /**
+     * Updates the internal posture data and extracts the pointing rays of all postures of a frame into the given
+     * batch. In contrast to <code>getPointingRays</code>, ray distributions whose summed certainty is below the
+     * threshold are dropped during the extraction.
+     *
+     * @param postures new posture data.
+     * @param trackIds the track id of every posture in the order of the postures or null, if the ids are unknown.
+     * @param threshold the minimal summed certainty of a ray distribution to be included.
+     * @param batch the batch the rays are written to, its previous content is replaced.
+     * @return the given batch.
+     */
+    public synchronized RayBatch extractPointingRays(final TrackedPostures3DFloat postures, final long[] trackIds, final double threshold, final RayBatch batch) {
+        final int itemCount = prepareBatch(postures, trackIds);
+        batch.reset(itemCount);
+        final int minSplit = parallelThreshold;
+        if (minSplit > 0 && itemCount > minSplit) {
+            ForkJoinPool.commonPool().invoke(new ExtractionTask(0, itemCount, minSplit, threshold, batch));
+        } else {
+            for (int item = 0; item < itemCount; item++) {
+                extractRays(item, threshold, batch);
+            }
+        }
+        batch.compact();
+        return batch;
+    }
+
+    /**
+     * Updates the internal posture data before a batched extraction. The default implementation updates the postures
+     * and uses every posture as an extraction item.
+     *
+     * @param postures new posture data.
+     * @param trackIds the track id of every posture in the order of the postures or null, if the ids are unknown.
+     * @return the number of extraction items.
+     */
+    protected int prepareBatch(final TrackedPostures3DFloat postures, final long[] trackIds) {
+        updatePostures(postures, trackIds);
+        return postures.getPostureCount();
+    }
+
+    /**
+     * Adds the pointing rays for both arms of a single posture to the slots of the given item, if their summed
+     * certainty reaches the threshold.
+     *
+     * @param item the index of the item.
+     * @param features the features of the posture to get the pointing rays for.
+     * @param probabilityLeft current probability of a pointing gesture with the left arm.
+     * @param probabilityRight current probability of a pointing gesture with the right arm.
+     * @param threshold the minimal summed certainty of a ray distribution to be included.
+     * @param batch the output of the extraction.
+     */
+    protected void addRays(final int item, final PostureFeatures features, final double probabilityLeft, final double probabilityRight, final double threshold, final RayBatch batch) {
+        final PointingRay3DFloatDistribution rightRays = raySelector.getRays(features, true, probabilityRight);
+        if (rightRays.getRayCount() > 0 && getCertainty(rightRays) >= threshold) {
+            batch.set(item, true, rightRays);
+        }
+        final PointingRay3DFloatDistribution leftRays = raySelector.getRays(features, false, probabilityLeft);
+        if (leftRays.getRayCount() > 0 && getCertainty(leftRays) >= threshold) {
+            batch.set(item, false, leftRays);
+        }
+    }
+
+    /**
+     * Sums up the certainties of all rays of a distribution.
+     *
+     * @param distribution the ray distribution.
+     * @return the summed certainty.
+     */
+    private static float getCertainty(final PointingRay3DFloatDistribution distribution) {
+        float certainty = 0;
+        for (int i = 0; i < distribution.getRayCount(); i++) {
+            certainty += distribution.getRay(i).getCertainty();
+        }
+        return certainty;
+    }
+
     /**
      * Gets the pointing rays for both arms of a single posture with cummulated probabilities specified in the parameters.
      *
@@ -79,15 +209,59 @@ public abstract class AbstractRayExtractor {
      * @return Pointing rays of the tracked person.
      */
     protected List<PointingRay3DFloatDistribution> getRays(final TrackedPosture3DFloat posture, final double probabilityLeft, final double probabilityRight) {
+        return getRays(new PostureFeatures(posture), probabilityLeft, probabilityRight);
+    }
+
+    /**
+     * Gets the pointing rays for both arms of a single posture with cummulated probabilities specified in the parameters.
+     *
+     * @param features the features of the posture to get the pointing rays for.
+     * @param probabilityLeft current probability of a pointing gesture with the left arm.
+     * @param probabilityRight current probability of a pointing gesture with the right arm.
+     * @return Pointing rays of the tracked person.
+     */
+    protected List<PointingRay3DFloatDistribution> getRays(final PostureFeatures features, final double probabilityLeft, final double probabilityRight) {
         final List<PointingRay3DFloatDistribution> tempList = new ArrayList<>();
-        final PointingRay3DFloatDistribution rightRays = raySelector.getRays(posture, true, probabilityRight);
+        final PointingRay3DFloatDistribution rightRays = raySelector.getRays(features, true, probabilityRight);
         if (rightRays.getRayCount() > 0) {
             tempList.add(rightRays);
         }
-        final PointingRay3DFloatDistribution leftRays = raySelector.getRays(posture, false, probabilityLeft);
+        final PointingRay3DFloatDistribution leftRays = raySelector.getRays(features, false, probabilityLeft);
         if (leftRays.getRayCount() > 0) {
             tempList.add(leftRays);
         }
         return tempList;
     }
+
+    /**
+     * Task extracting a range of items, which is split in halves as long as it exceeds the parallel threshold.
+     */
+    private class ExtractionTask extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+        private final int minSplit;
+        private final double threshold;
+        private final RayBatch batch;
+
+        ExtractionTask(final int from, final int to, final int minSplit, final double threshold, final RayBatch batch) {
+            this.from = from;
+            this.to = to;
+            this.minSplit = minSplit;
+            this.threshold = threshold;
+            this.batch = batch;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= minSplit) {
+                for (int item = from; item < to; item++) {
+                    extractRays(item, threshold, batch);
+                }
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new ExtractionTask(from, middle, minSplit, threshold, batch), new ExtractionTask(middle, to, minSplit, threshold, batch));
+        }
+    }
 }
@@ -22,12 +22,10 @@ package org.openbase.bco.psc.re.pointing;
  * <http://www.gnu.org/licenses/gpl-3.0.html>.
  * #L%
  */
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
-import org.apache.commons.math3.distribution.NormalDistribution;
+import org.openbase.bco.psc.lib.pointing.PostureFeatures;
 import org.openbase.bco.psc.re.pointing.selectors.RaySelectorInterface;
-import org.openbase.bco.psc.lib.pointing.PostureFunctions;
-import static org.openbase.bco.psc.lib.pointing.PostureFunctions.*;
 import org.openbase.jul.exception.NotAvailableException;
 import org.openbase.type.tracking.PointingRay3DFloatDistributionType.PointingRay3DFloatDistribution;
 import org.openbase.type.tracking.TrackedPosture3DFloatType.TrackedPosture3DFloat;
@@ -40,10 +38,31 @@ import org.openbase.type.tracking.TrackedPostures3DFloatType.TrackedPostures3DFl
  */
 public class ArmPostureExtractor extends AbstractRayExtractor {
 
+    /**
+     * Standard deviation of the elbow angle around the expected elbow angle.
+     */
+    private static final double ELBOW_ANGLE_DEVIATION = 40;
+    /**
+     * Normalization of the elbow angle density multiplied by 100.
+     */
+    private static final double EXTENSION_SCALE = 100 / (ELBOW_ANGLE_DEVIATION * Math.sqrt(2 * Math.PI));
+    /**
+     * Factor of the squared elbow angle deviation in the exponent of the elbow angle density.
+     */
+    private static final double EXTENSION_EXPONENT_FACTOR = 1 / (2 * ELBOW_ANGLE_DEVIATION * ELBOW_ANGLE_DEVIATION);
+
     /**
      * The last postures provided in the updatePostures method.
      */
     private TrackedPostures3DFloat lastPostures;
+    /**
+     * Features reused for every posture.
+     */
+    private final PostureFeatures features = new PostureFeatures();
+    /**
+     * The model used to calculate the pointing probabilities.
+     */
+    private final ProbabilityModel probabilityModel;
 
     /**
      * Constructor.
@@ -51,7 +70,18 @@ public class ArmPostureExtractor extends AbstractRayExtractor {
      * @param raySelector The ray selector that is used to select the correct rays.
      */
     public ArmPostureExtractor(RaySelectorInterface raySelector) {
+        this(raySelector, ProbabilityModel.DEFAULT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param raySelector The ray selector that is used to select the correct rays.
+     * @param probabilityModel The model used to calculate the pointing probabilities.
+     */
+    public ArmPostureExtractor(RaySelectorInterface raySelector, ProbabilityModel probabilityModel) {
         super(raySelector);
+        this.probabilityModel = probabilityModel;
     }
 
     /**
@@ -75,11 +105,30 @@ public class ArmPostureExtractor extends AbstractRayExtractor {
         if (lastPostures == null) {
             throw new NotAvailableException("Pointing Rays");
         }
-        return lastPostures.getPostureList().stream()
-                .filter(posture -> checkPosture(posture))
-                .map(posture -> getRays(posture, pointingProbability(posture, false), pointingProbability(posture, true)))
-                .flatMap(List::stream)
-                .collect(Collectors.toList());
+        final List<PointingRay3DFloatDistribution> pointingRays = new ArrayList<>();
+        for (final TrackedPosture3DFloat posture : lastPostures.getPostureList()) {
+            features.set(posture);
+            if (features.isValid()) {
+                pointingRays.addAll(getRays(features, probabilityModel.pointingProbability(features, false), probabilityModel.pointingProbability(features, true)));
+            }
+        }
+        return pointingRays;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param item {@inheritDoc}
+     * @param threshold {@inheritDoc}
+     * @param batch {@inheritDoc}
+     */
+    @Override
+    protected void extractRays(final int item, final double threshold, final RayBatch batch) {
+        final PostureFeatures features = getScratchFeatures();
+        features.set(lastPostures.getPosture(item));
+        if (features.isValid()) {
+            addRays(item, features, probabilityModel.pointingProbability(features, false), probabilityModel.pointingProbability(features, true), threshold, batch);
+        }
     }
 
     /**
@@ -90,29 +139,52 @@ public class ArmPostureExtractor extends AbstractRayExtractor {
      * @return The probability of the tracked person pointing with the specified arm calculated based on empirical data.
      */
     public static double pointingProbability(final TrackedPosture3DFloat posture, final boolean right) {
+        return pointingProbability(new PostureFeatures(posture), right);
+    }
+
+    /**
+     * Returns the overall probability that the observed posture is performing a pointing the gesture on the specified side.
+     *
+     * @param features the features of the observed posture.
+     * @param right true, if the arm for which the probability is calculated is the right (not left) one.
+     * @return The probability of the tracked person pointing with the specified arm calculated based on empirical data.
+     */
+    public static double pointingProbability(final PostureFeatures features, final boolean right) {
         //Recommended threshold: 0.3/0.4
-        final double elbowAngle = getElbowAngle(posture, right);
-        final double handHeightAngle = getHandHeightAngle(posture, right, false);
-        final double heightFactor = 0.5 + 0.5 * Math.tanh((140 - handHeightAngle) / 20);
+        final double elbowAngle = features.getElbowAngle(right);
+        final double handHeightAngle = features.getHandHeightAngle(right, false);
+        // 0.5 + 0.5 * tanh((140 - handHeightAngle) / 20)
+        final double heightFactor = 1.0 / (1.0 + Math.exp((handHeightAngle - 140) / 10));
         final double expectedElbowAngle = handHeightAngle >= 60 ? 180 : (handHeightAngle - 20) * 0.75 + 150;
-        final double extension_factor = (new NormalDistribution(expectedElbowAngle, 40)).density(elbowAngle) * 100;
-        return Math.min(heightFactor * extension_factor, 1.0) * PostureFunctions.postureConfidence(posture, right);
+        return Math.min(heightFactor * extensionFactor(elbowAngle, expectedElbowAngle), 1.0) * features.getPostureConfidence(right);
     }
 
     // Higher AUC (0.945 instead of 0.928), but only works well for very low thresholds.
     /**
      * Does the same as pointingProbability except using a different model that lead to a higher AUC for the training data, but does not offer thresholds of a similar feasability.
      *
-     * @param posture the observed posture.
+     * @param features the features of the observed posture.
      * @param right true, if the arm for which the probability is calculated is the right (not left) one.
      * @return The probability of the tracked person pointing with the specified arm calculated based on empirical data.
      */
-    private double pointingProbabilityHigherAUC(final TrackedPosture3DFloat posture, final boolean right) {
-        final double elbowAngle = getElbowAngle(posture, right);
-        final double handHeightAngle = getHandHeightAngle(posture, right, true);
-        final double heightFactor = 0.5 + 0.5 * Math.tanh((107 - handHeightAngle) / 18);
+    public static double pointingProbabilityHigherAUC(final PostureFeatures features, final boolean right) {
+        final double elbowAngle = features.getElbowAngle(right);
+        final double handHeightAngle = features.getHandHeightAngle(right, true);
+        // 0.5 + 0.5 * tanh((107 - handHeightAngle) / 18)
+        final double heightFactor = 1.0 / (1.0 + Math.exp((handHeightAngle - 107) / 9));
         final double expectedElbowAngle = handHeightAngle >= 80 ? 180 : (handHeightAngle - 4) * 30 / 76 + 150;
-        final double extension_factor = (new NormalDistribution(expectedElbowAngle, 40)).density(elbowAngle) * 100;
-        return Math.min(heightFactor * extension_factor, 1.0) * PostureFunctions.postureConfidence(posture, right);
+        return Math.min(heightFactor * extensionFactor(elbowAngle, expectedElbowAngle), 1.0) * features.getPostureConfidence(right);
+    }
+
+    /**
+     * Scaled density of the normal distribution around the expected elbow angle, i.e. <code>100 * N(expected, 40).density(elbowAngle)</code>.
+     *
+     * @param elbowAngle the observed elbow angle.
+     * @param expectedElbowAngle the elbow angle expected for the observed hand height.
+     * @return the extension factor of the arm.
+     */
+    private static double extensionFactor(final double elbowAngle, final double expectedElbowAngle) {
+        final double deviation = elbowAngle - expectedElbowAngle;
+        return EXTENSION_SCALE * Math.exp(-deviation * deviation * EXTENSION_EXPONENT_FACTOR);
     }
 }
@@ -22,71 +22,175 @@ package org.openbase.bco.psc.re.pointing;
  * <http://www.gnu.org/licenses/gpl-3.0.html>.
  * #L%
  */
-import java.util.LinkedList;
-import java.util.ListIterator;
+import java.util.Arrays;
+import org.openbase.bco.psc.lib.pointing.Joints;
+import org.openbase.bco.psc.lib.pointing.PostureFeatures;
 import org.openbase.jul.exception.CouldNotPerformException;
 import org.openbase.jul.exception.NotAvailableException;
 import org.openbase.type.tracking.TrackedPosture3DFloatType.TrackedPosture3DFloat;
 
 /**
  * This class handles the history of a single posture up to a certain duration.
+ * The history is kept in primitive ring buffers that only grow until they cover the lookback duration. For both arms
+ * the start of the current run of observations reaching the probability threshold is maintained on every update, so
+ * that the duration only needs to check the directions within this run.
  *
  * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
  */
 public class PostureHistory {
 
+    /**
+     * Initial number of observations that can be kept.
+     */
+    private static final int INITIAL_CAPACITY = 32;
+
     /**
      * Duration that is kept for future evaluation in milliseconds.
      */
     private final long lookback;
     /**
-     * The internal history of postures.
+     * Minimal probability of the observations of a pointing run.
+     */
+    private final double probabilityThreshold;
+    /**
+     * Minimal cosine between the direction of an observation of a pointing run and the last direction.
+     */
+    private final double minCosine;
+
+    /**
+     * Timestamps of the observations by sequence number modulo capacity.
+     */
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    /**
+     * Base probabilities of the observations, right arm at even and left arm at odd indices.
+     */
+    private double[] probabilities = new double[INITIAL_CAPACITY * 2];
+    /**
+     * Normalized shoulder-hand directions of the observations, three values for the right arm followed by three for
+     * the left arm.
+     */
+    private double[] directions = new double[INITIAL_CAPACITY * 6];
+    /**
+     * Sequence number of the oldest observation that is kept.
+     */
+    private long first;
+    /**
+     * Sequence number of the next observation.
+     */
+    private long next;
+    /**
+     * Sequence number of the oldest observation of the current probability run for the right and the left arm.
+     */
+    private final long[] runStart = new long[2];
+    /**
+     * Cached durations for the right and the left arm, -1 if they have to be calculated.
      */
-    private final LinkedList<PostureHistoryEntry> history = new LinkedList<>();
+    private final long[] durations = {-1, -1};
     /**
      * The last tracked instance of the posture.
      */
     private TrackedPosture3DFloat lastPosture;
+    /**
+     * The features of the last tracked instance of the posture.
+     */
+    private final PostureFeatures lastFeatures = new PostureFeatures();
 
     /**
      * Constructor.
      *
      * @param lookback duration of posture history that is kept for future evaluation in milliseconds.
+     * @param probabilityThreshold minimal probability that should occur during a pointing duration.
+     * @param maxAngle maximal divergence in degrees of the direction compared to the last posture during a pointing
+     * duration.
      */
-    public PostureHistory(final long lookback) {
+    public PostureHistory(final long lookback, final double probabilityThreshold, final double maxAngle) {
         this.lookback = lookback;
+        this.probabilityThreshold = probabilityThreshold;
+        this.minCosine = Math.cos(Math.toRadians(maxAngle));
     }
 
     /**
-     * Adds the entry to the internal posture history.
+     * Updates the history with new posture data.
      *
-     * @param entry entry to be added.
+     * @param timestamp the time of the current observation of the posture.
+     * @param features the features of the current instance of the posture.
+     * @param pointingProbabilityRight the base probability of a pointing gesture using the right arm.
+     * @param pointingProbabilityLeft the base probability of a pointing gesture using the left arm.
      */
-    private void add(final PostureHistoryEntry entry) {
-        history.addFirst(entry);
-        while (history.size() > 1 && history.getFirst().getTimestamp() - history.get(history.size() - 1).getTimestamp() > lookback) {
-            history.removeLast();
+    public void update(final long timestamp, final PostureFeatures features, final double pointingProbabilityRight, final double pointingProbabilityLeft) {
+        this.lastPosture = features.getPosture();
+        this.lastFeatures.set(features);
+        // Drop the observations that are outside the lookback duration.
+        while (next > first && timestamp - timestamps[index(first)] > lookback) {
+            first++;
+        }
+        if (next - first == timestamps.length) {
+            grow();
+        }
+        final int index = index(next);
+        timestamps[index] = timestamp;
+        probabilities[index * 2] = pointingProbabilityRight;
+        probabilities[index * 2 + 1] = pointingProbabilityLeft;
+        setDirection(index * 6, features, Joints.ShoulderRight, Joints.HandRight);
+        setDirection(index * 6 + 3, features, Joints.ShoulderLeft, Joints.HandLeft);
+        updateRun(0, pointingProbabilityRight);
+        updateRun(1, pointingProbabilityLeft);
+        next++;
+        durations[0] = -1;
+        durations[1] = -1;
+    }
+
+    private void updateRun(final int arm, final double probability) {
+        if (probability < probabilityThreshold) {
+            runStart[arm] = next + 1;
+        } else {
+            runStart[arm] = Math.max(runStart[arm], first);
         }
     }
 
+    private void setDirection(final int offset, final PostureFeatures features, final Joints start, final Joints end) {
+        final double x = features.getX(end) - features.getX(start);
+        final double y = features.getY(end) - features.getY(start);
+        final double z = features.getZ(end) - features.getZ(start);
+        // A zero length direction results in NaN values, which never violate the angle threshold.
+        final double length = Math.sqrt(x * x + y * y + z * z);
+        directions[offset] = x / length;
+        directions[offset + 1] = y / length;
+        directions[offset + 2] = z / length;
+    }
+
+    private int index(final long sequence) {
+        return (int) (sequence % timestamps.length);
+    }
+
     /**
-     * Updates the history with new posture data.
-     *
-     * @param timestamp the time of the current observation of the posture.
-     * @param posture the current instance of the posture.
-     * @param pointingProbabilityRight the base probability of a pointing gesture using the right arm.
-     * @param pointingProbabilityLeft the base probability of a pointing gesture using the left arm.
+     * Doubles the capacity of the ring buffers while keeping the sequence numbers valid.
      */
-    public void update(final long timestamp, final TrackedPosture3DFloat posture, final double pointingProbabilityRight, final double pointingProbabilityLeft) {
-        this.lastPosture = posture;
-        add(new PostureHistoryEntry(timestamp, posture, pointingProbabilityRight, pointingProbabilityLeft));
+    private void grow() {
+        final int oldCapacity = timestamps.length;
+        final long[] newTimestamps = new long[oldCapacity * 2];
+        final double[] newProbabilities = new double[oldCapacity * 4];
+        final double[] newDirections = new double[oldCapacity * 12];
+        for (long sequence = first; sequence < next; sequence++) {
+            final int oldIndex = (int) (sequence % oldCapacity);
+            final int newIndex = (int) (sequence % (oldCapacity * 2));
+            newTimestamps[newIndex] = timestamps[oldIndex];
+            System.arraycopy(probabilities, oldIndex * 2, newProbabilities, newIndex * 2, 2);
+            System.arraycopy(directions, oldIndex * 6, newDirections, newIndex * 6, 6);
+        }
+        timestamps = newTimestamps;
+        probabilities = newProbabilities;
+        directions = newDirections;
     }
 
     /**
      * Clears all the history data including the last posture.
      */
     public void clear() {
-        history.clear();
+        first = next;
+        runStart[0] = next;
+        runStart[1] = next;
+        Arrays.fill(durations, -1);
         lastPosture = null;
     }
 
@@ -98,10 +202,10 @@ public class PostureHistory {
      * @throws NotAvailableException is thrown, if the history has not been updated since the last call of <code>clear()</code>.
      */
     public double getLastProbability(final boolean right) throws NotAvailableException {
-        if (history.isEmpty()) {
+        if (isEmpty()) {
             throw new NotAvailableException("Last probability");
         }
-        return history.getFirst().getProbability(right);
+        return probabilities[index(next - 1) * 2 + (right ? 0 : 1)];
     }
 
     /**
@@ -118,28 +222,57 @@ public class PostureHistory {
     }
 
     /**
-     * Gets the maximal duration in the lookback period during which the given thresholds hold for the given arm.
+     * Gets the features of the last instance of the tracked posture.
+     *
+     * @return the features of the last observed instance of the posture.
+     * @throws NotAvailableException is thrown, if the history has not been updated since the last call of <code>clear()</code>.
+     */
+    public PostureFeatures getLastFeatures() throws NotAvailableException {
+        if (lastPosture == null) {
+            throw new NotAvailableException("Last features");
+        }
+        return lastFeatures;
+    }
+
+    /**
+     * Gets the maximal duration in the lookback period during which the probability threshold and the maximal angle
+     * hold for the given arm.
      *
-     * @param probabilityThreshold minimal probability that should occur during the duration.
-     * @param maxAngle maximal divergence in the direction angle, that can occur compared to the last posture.
      * @param right if true, the right arm is used, else the left one.
-     * @return The maximal duration in the lookback period during which the given thresholds hold for the given arm.
+     * @return The maximal duration in the lookback period during which the thresholds hold for the given arm.
      * @throws NotAvailableException is thrown, if the history has not been updated since the last call of <code>clear()</code>.
      */
-    public long getDuration(final double probabilityThreshold, final double maxAngle, final boolean right) throws NotAvailableException {
-        if (history.isEmpty()) {
+    public long getDuration(final boolean right) throws NotAvailableException {
+        if (isEmpty()) {
             throw new NotAvailableException("Duration", new CouldNotPerformException("getDuration called on empty history."));
         }
-        long currentTs = history.getFirst().getTimestamp();
-        final ListIterator<PostureHistoryEntry> it = history.listIterator();
-        while (it.hasNext()) {
-            PostureHistoryEntry entry = it.next();
-            if (entry.getProbability(right) < probabilityThreshold || entry.directionAngle(history.getFirst(), right) > maxAngle) {
+        final int arm = right ? 0 : 1;
+        if (durations[arm] < 0) {
+            durations[arm] = calculateDuration(arm);
+        }
+        return durations[arm];
+    }
+
+    private long calculateDuration(final int arm) {
+        final long last = next - 1;
+        final long lastTimestamp = timestamps[index(last)];
+        final long start = Math.max(runStart[arm], first);
+        if (start > last) {
+            return 0;
+        }
+        final int lastOffset = index(last) * 6 + arm * 3;
+        final double x = directions[lastOffset];
+        final double y = directions[lastOffset + 1];
+        final double z = directions[lastOffset + 2];
+        long sequence = last;
+        while (sequence > start) {
+            final int offset = index(sequence - 1) * 6 + arm * 3;
+            if (x * directions[offset] + y * directions[offset + 1] + z * directions[offset + 2] < minCosine) {
                 break;
             }
-            currentTs = entry.getTimestamp();
+            sequence--;
         }
-        return history.getFirst().getTimestamp() - currentTs;
+        return lastTimestamp - timestamps[index(sequence)];
     }
 
     /**
@@ -148,6 +281,6 @@ public class PostureHistory {
      * @return true, if the internal history is empty.
      */
     public boolean isEmpty() {
-        return history.isEmpty();
+        return next == first;
     }
 }
@@ -23,22 +23,20 @@ package org.openbase.bco.psc.re.pointing;
  * #L%
  */
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ListIterator;
-import static org.openbase.bco.psc.lib.pointing.PostureFunctions.*;
+import org.openbase.bco.psc.lib.pointing.PostureFeatures;
 import org.openbase.bco.psc.re.jp.JPDurationLookback;
 import org.openbase.bco.psc.re.jp.JPDurationMaximalAngle;
 import org.openbase.bco.psc.re.jp.JPDurationProbabilityThreshold;
 import org.openbase.bco.psc.re.jp.JPDurationReductionFactor;
-import static org.openbase.bco.psc.re.pointing.ArmPostureExtractor.pointingProbability;
 import org.openbase.bco.psc.re.pointing.selectors.RaySelectorInterface;
 import org.openbase.jps.core.JPService;
 import org.openbase.jps.exception.JPNotAvailableException;
 import org.openbase.jul.exception.NotAvailableException;
 import org.slf4j.LoggerFactory;
 import org.openbase.type.tracking.PointingRay3DFloatDistributionType.PointingRay3DFloatDistribution;
-import org.openbase.type.tracking.TrackedPosture3DFloatType.TrackedPosture3DFloat;
 import org.openbase.type.tracking.TrackedPostures3DFloatType.TrackedPostures3DFloat;
 
 /**
@@ -75,9 +73,25 @@ public class PostureHistoryExtractor extends AbstractRayExtractor {
     private final double reductionRange;
 
     /**
-     * History of important stats on the past tracked postures.
+     * History of important stats on the past tracked postures by track id.
      */
-    private final LinkedList<PostureHistory> postureHistory = new LinkedList<>();
+    private final LinkedHashMap<Long, PostureHistory> postureHistory = new LinkedHashMap<>();
+    /**
+     * Track ids present in the current update, reused for every update.
+     */
+    private final HashSet<Long> presentIds = new HashSet<>();
+    /**
+     * Features reused for every incoming posture.
+     */
+    private final PostureFeatures features = new PostureFeatures();
+    /**
+     * The model used to calculate the pointing probabilities.
+     */
+    private final ProbabilityModel probabilityModel;
+    /**
+     * The histories of the current batched extraction in the order of the history map.
+     */
+    private PostureHistory[] batchHistories = new PostureHistory[0];
 
     /**
      * Constructor.
@@ -86,7 +100,19 @@ public class PostureHistoryExtractor extends AbstractRayExtractor {
      * @throws JPNotAvailableException is thrown, if the necessary JavaProperties are not available.
      */
     public PostureHistoryExtractor(final RaySelectorInterface raySelector) throws JPNotAvailableException {
+        this(raySelector, ProbabilityModel.DEFAULT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param raySelector The ray selector that is used to select the correct rays.
+     * @param probabilityModel The model used to calculate the pointing probabilities.
+     * @throws JPNotAvailableException is thrown, if the necessary JavaProperties are not available.
+     */
+    public PostureHistoryExtractor(final RaySelectorInterface raySelector, final ProbabilityModel probabilityModel) throws JPNotAvailableException {
         super(raySelector);
+        this.probabilityModel = probabilityModel;
         this.lookback = JPService.getProperty(JPDurationLookback.class).getValue();
         LOGGER.info("Selected lookback time: " + lookback + " ms");
         this.probabilityThreshold = JPService.getProperty(JPDurationProbabilityThreshold.class).getValue();
@@ -104,24 +130,38 @@ public class PostureHistoryExtractor extends AbstractRayExtractor {
      * @param postures {@inheritDoc}
      */
     @Override
-    public synchronized void updatePostures(final TrackedPostures3DFloat postures) {
+    public void updatePostures(final TrackedPostures3DFloat postures) {
+        updatePostures(postures, null);
+    }
+
+    /**
+     * {@inheritDoc} The history of a person is kept as long as its track id is present. If no track ids are given,
+     * the position of a posture in the list is used instead.
+     *
+     * @param postures {@inheritDoc}
+     * @param trackIds {@inheritDoc}
+     */
+    @Override
+    public synchronized void updatePostures(final TrackedPostures3DFloat postures, final long[] trackIds) {
         final int postureCount = postures.getPostureCount();
-        while (postureCount > postureHistory.size()) {
-            postureHistory.addLast(new PostureHistory(lookback));
-        }
-        while (postureHistory.size() > postureCount) {
-            postureHistory.removeLast();
-        }
+        final boolean tracked = trackIds != null && trackIds.length == postureCount;
         final long timestamp = System.currentTimeMillis();
-        ListIterator<PostureHistory> it = postureHistory.listIterator();
-        while (it.hasNext()) {
-            final TrackedPosture3DFloat posture = postures.getPosture(it.nextIndex());
-            if (checkPosture(posture)) {
-                it.next().update(timestamp, posture, pointingProbability(posture, true), pointingProbability(posture, false));
+        presentIds.clear();
+        for (int i = 0; i < postureCount; i++) {
+            final long id = tracked ? trackIds[i] : i;
+            if (id < 0) {
+                continue;
+            }
+            presentIds.add(id);
+            final PostureHistory history = postureHistory.computeIfAbsent(id, k -> new PostureHistory(lookback, probabilityThreshold, maxAngle));
+            features.set(postures.getPosture(i));
+            if (features.isValid()) {
+                history.update(timestamp, features, probabilityModel.pointingProbability(features, true), probabilityModel.pointingProbability(features, false));
             } else {
-                it.next().clear();
+                history.clear();
             }
         }
+        postureHistory.keySet().retainAll(presentIds);
     }
 
     /**
@@ -133,13 +173,50 @@ public class PostureHistoryExtractor extends AbstractRayExtractor {
     @Override
     public synchronized List<PointingRay3DFloatDistribution> getPointingRays() throws NotAvailableException {
         List<PointingRay3DFloatDistribution> pointingRays = new ArrayList<>();
-        for (PostureHistory postureHistoryList : postureHistory) {
+        for (PostureHistory postureHistoryList : postureHistory.values()) {
             if (!postureHistoryList.isEmpty()) {
-                final double durationFactorRight = ((double) Long.min(lookback, postureHistoryList.getDuration(probabilityThreshold, maxAngle, true))) / lookback * reductionRange + reductionFactor;
-                final double durationFactorLeft = ((double) Long.min(lookback, postureHistoryList.getDuration(probabilityThreshold, maxAngle, false))) / lookback * reductionRange + reductionFactor;
-                pointingRays.addAll(getRays(postureHistoryList.getLastPosture(), durationFactorLeft * postureHistoryList.getLastProbability(false), durationFactorRight * postureHistoryList.getLastProbability(true)));
+                final double durationFactorRight = ((double) Long.min(lookback, postureHistoryList.getDuration(true))) / lookback * reductionRange + reductionFactor;
+                final double durationFactorLeft = ((double) Long.min(lookback, postureHistoryList.getDuration(false))) / lookback * reductionRange + reductionFactor;
+                pointingRays.addAll(getRays(postureHistoryList.getLastFeatures(), durationFactorLeft * postureHistoryList.getLastProbability(false), durationFactorRight * postureHistoryList.getLastProbability(true)));
             }
         }
         return pointingRays;
     }
+
+    /**
+     * {@inheritDoc} Every history of a present person is used as an extraction item.
+     *
+     * @param postures {@inheritDoc}
+     * @param trackIds {@inheritDoc}
+     * @return {@inheritDoc}
+     */
+    @Override
+    protected int prepareBatch(final TrackedPostures3DFloat postures, final long[] trackIds) {
+        updatePostures(postures, trackIds);
+        batchHistories = postureHistory.values().toArray(batchHistories);
+        return postureHistory.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param item {@inheritDoc}
+     * @param threshold {@inheritDoc}
+     * @param batch {@inheritDoc}
+     */
+    @Override
+    protected void extractRays(final int item, final double threshold, final RayBatch batch) {
+        final PostureHistory history = batchHistories[item];
+        if (history.isEmpty()) {
+            return;
+        }
+        try {
+            final double durationFactorRight = ((double) Long.min(lookback, history.getDuration(true))) / lookback * reductionRange + reductionFactor;
+            final double durationFactorLeft = ((double) Long.min(lookback, history.getDuration(false))) / lookback * reductionRange + reductionFactor;
+            addRays(item, history.getLastFeatures(), durationFactorLeft * history.getLastProbability(false), durationFactorRight * history.getLastProbability(true), threshold, batch);
+        } catch (NotAvailableException ex) {
+            // the history is not empty, so its last entry should always be available.
+            LOGGER.trace("Could not extract the rays of a posture history.", ex);
+        }
+    }
 }
@@ -0,0 +1,60 @@
+package org.openbase.bco.psc.re.pointing;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Ray Extractor
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import org.openbase.bco.psc.lib.pointing.PostureFeatures;
+
+/**
+ * An enum of the different models used to calculate the probability of a pointing gesture from the arm posture.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public enum ProbabilityModel {
+    /**
+     * Represents the model of <code>ArmPostureExtractor.pointingProbability</code> with a recommended threshold of 0.3 to 0.4.
+     */
+    DEFAULT {
+        @Override
+        public double pointingProbability(final PostureFeatures features, final boolean right) {
+            return ArmPostureExtractor.pointingProbability(features, right);
+        }
+    },
+    /**
+     * Represents the model of <code>ArmPostureExtractor.pointingProbabilityHigherAUC</code> which has a higher AUC, but only works well for very low thresholds.
+     */
+    HIGHER_AUC {
+        @Override
+        public double pointingProbability(final PostureFeatures features, final boolean right) {
+            return ArmPostureExtractor.pointingProbabilityHigherAUC(features, right);
+        }
+    };
+
+    /**
+     * Returns the probability that the observed posture is performing a pointing gesture on the specified side.
+     *
+     * @param features the features of the observed posture.
+     * @param right true, if the arm for which the probability is calculated is the right (not left) one.
+     * @return The probability of the tracked person pointing with the specified arm.
+     */
+    public abstract double pointingProbability(final PostureFeatures features, final boolean right);
+}
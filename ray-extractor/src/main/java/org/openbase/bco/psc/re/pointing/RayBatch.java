@@ -0,0 +1,113 @@
+package org.openbase.bco.psc.re.pointing;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Ray Extractor
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.Arrays;
+import org.openbase.type.tracking.PointingRay3DFloatDistributionType.PointingRay3DFloatDistribution;
+
+/**
+ * Preallocated output of a batched ray extraction. Every extraction item (usually a posture) owns two slots, the first
+ * one for the right and the second one for the left arm, so that items can be extracted in parallel without
+ * synchronization. After the extraction the batch is compacted and keeps the order of the items.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class RayBatch {
+
+    /**
+     * The number of slots per extraction item.
+     */
+    public static final int SLOTS_PER_ITEM = 2;
+
+    /**
+     * The extracted ray distributions.
+     */
+    private PointingRay3DFloatDistribution[] rays = new PointingRay3DFloatDistribution[16];
+    /**
+     * The number of valid entries, or the number of slots while the batch is being filled.
+     */
+    private int size;
+
+    /**
+     * Prepares the batch for the extraction of the given number of items. The array is only reallocated, if it is too
+     * small.
+     *
+     * @param itemCount the number of items that are going to be extracted.
+     */
+    void reset(final int itemCount) {
+        final int slots = itemCount * SLOTS_PER_ITEM;
+        if (rays.length < slots) {
+            rays = new PointingRay3DFloatDistribution[Math.max(slots, rays.length * 2)];
+        } else {
+            Arrays.fill(rays, 0, Math.max(size, slots), null);
+        }
+        size = slots;
+    }
+
+    /**
+     * Sets the rays of one arm of an item.
+     *
+     * @param item the index of the item.
+     * @param right true, if the rays belong to the right arm.
+     * @param distribution the ray distribution.
+     */
+    void set(final int item, final boolean right, final PointingRay3DFloatDistribution distribution) {
+        rays[item * SLOTS_PER_ITEM + (right ? 0 : 1)] = distribution;
+    }
+
+    /**
+     * Removes the empty slots while keeping the order of the remaining distributions.
+     */
+    void compact() {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (rays[i] != null) {
+                rays[count++] = rays[i];
+            }
+        }
+        Arrays.fill(rays, count, size, null);
+        size = count;
+    }
+
+    /**
+     * Returns the number of extracted ray distributions.
+     *
+     * @return the number of extracted ray distributions.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns an extracted ray distribution.
+     *
+     * @param index the index of the distribution, has to be smaller than <code>size()</code>.
+     * @return the ray distribution.
+     */
+    public PointingRay3DFloatDistribution get(final int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return rays[index];
+    }
+}
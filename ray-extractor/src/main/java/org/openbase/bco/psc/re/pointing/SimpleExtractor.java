@@ -23,6 +23,7 @@ package org.openbase.bco.psc.re.pointing;
  */
 import java.util.List;
 import java.util.stream.Collectors;
+import org.openbase.bco.psc.lib.pointing.PostureFeatures;
 import org.openbase.bco.psc.re.pointing.selectors.RaySelectorInterface;
 import static org.openbase.bco.psc.lib.pointing.PostureFunctions.*;
 import org.openbase.jul.exception.NotAvailableException;
@@ -78,4 +79,20 @@ public class SimpleExtractor extends AbstractRayExtractor {
                 .flatMap(List::stream)
                 .collect(Collectors.toList());
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param item {@inheritDoc}
+     * @param threshold {@inheritDoc}
+     * @param batch {@inheritDoc}
+     */
+    @Override
+    protected void extractRays(final int item, final double threshold, final RayBatch batch) {
+        final PostureFeatures features = getScratchFeatures();
+        features.set(lastPostures.getPosture(item));
+        if (features.isValid()) {
+            addRays(item, features, 1, 1, threshold, batch);
+        }
+    }
 }
@@ -22,10 +22,10 @@ package org.openbase.bco.psc.re.pointing.selectors;
  * <http://www.gnu.org/licenses/gpl-3.0.html>.
  * #L%
  */
-import javafx.geometry.Point3D;
 import org.openbase.bco.psc.lib.pointing.Joints;
-import static org.openbase.bco.psc.lib.pointing.PostureFunctions.*;
+import org.openbase.bco.psc.lib.pointing.PostureFeatures;
 import org.openbase.type.geometry.Ray3DFloatType;
+import org.openbase.type.math.Vec3DFloatType.Vec3DFloat;
 import org.openbase.type.tracking.PointingRay3DFloatDistributionType.PointingRay3DFloatDistribution;
 import org.openbase.type.tracking.PointingRay3DFloatType.PointingRay3DFloat;
 import org.openbase.type.tracking.PointingRay3DFloatType.PointingRay3DFloat.PointingType;
@@ -39,23 +39,36 @@ public abstract class AbstractPolynomialSelector implements RaySelectorInterface
 
     @Override
     public PointingRay3DFloatDistribution getRays(TrackedPosture3DFloat posture, boolean right, double pointingProbability) {
-        double handHeightAngle = getHandHeightAngle(posture, right, false);
-        Point3D hand = getPoint3D(posture, right ? Joints.HandRight : Joints.HandLeft);
-        Point3D spineShoulder = getPoint3D(posture, Joints.SpineShoulder);
-        Point3D spineHeadDirection = getPoint3D(posture, Joints.Head).subtract(spineShoulder);
+        return getRays(new PostureFeatures(posture), right, pointingProbability);
+    }
+
+    @Override
+    public PointingRay3DFloatDistribution getRays(PostureFeatures features, boolean right, double pointingProbability) {
+        final double handHeightAngle = features.getHandHeightAngle(right, false);
+        final Joints handJoint = right ? Joints.HandRight : Joints.HandLeft;
+        final double handX = features.getX(handJoint);
+        final double handY = features.getY(handJoint);
+        final double handZ = features.getZ(handJoint);
+        final double spineX = features.getX(Joints.SpineShoulder);
+        final double spineY = features.getY(Joints.SpineShoulder);
+        final double spineZ = features.getZ(Joints.SpineShoulder);
         double factor = 0;
         final double[] parameters = getParameters();
         for (int i = 0; i < parameters.length; i++) {
-            factor += Math.pow(handHeightAngle, parameters.length - i - 1) * parameters[i];
+            factor = factor * handHeightAngle + parameters[i];
         }
-        Point3D start = spineShoulder.add(spineHeadDirection.multiply(factor));
+        // The start lies on the line from the spine shoulder towards the head.
+        final double directionX = handX - (spineX + (features.getX(Joints.Head) - spineX) * factor);
+        final double directionY = handY - (spineY + (features.getY(Joints.Head) - spineY) * factor);
+        final double directionZ = handZ - (spineZ + (features.getZ(Joints.Head) - spineZ) * factor);
+        final double length = Math.sqrt(directionX * directionX + directionY * directionY + directionZ * directionZ);
         return PointingRay3DFloatDistribution.newBuilder().addRay(PointingRay3DFloat.newBuilder()
                 .setType(PointingType.OTHER)
                 .setRightHandPointing(right)
                 .setCertainty((float) pointingProbability)
                 .setRay(Ray3DFloatType.Ray3DFloat.newBuilder()
-                        .setOrigin(toVec3DFloat(hand))
-                        .setDirection(toVec3DFloat(hand.subtract(start).normalize()))
+                        .setOrigin(Vec3DFloat.newBuilder().setX((float) handX).setY((float) handY).setZ((float) handZ))
+                        .setDirection(Vec3DFloat.newBuilder().setX((float) (directionX / length)).setY((float) (directionY / length)).setZ((float) (directionZ / length)))
                 )
         ).build();
     }
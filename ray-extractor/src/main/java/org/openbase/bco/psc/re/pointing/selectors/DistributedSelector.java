@@ -23,6 +23,7 @@ package org.openbase.bco.psc.re.pointing.selectors;
  */
 
 import static org.openbase.bco.psc.lib.pointing.PostureFunctions.*;
+import org.openbase.bco.psc.lib.pointing.PostureFeatures;
 import org.openbase.type.tracking.PointingRay3DFloatDistributionType.PointingRay3DFloatDistribution;
 import org.openbase.type.tracking.PointingRay3DFloatType.PointingRay3DFloat.PointingType;
 import org.openbase.type.tracking.TrackedPosture3DFloatType.TrackedPosture3DFloat;
@@ -34,7 +35,13 @@ import org.openbase.type.tracking.TrackedPosture3DFloatType.TrackedPosture3DFloa
 public class DistributedSelector implements RaySelectorInterface {
     @Override
     public PointingRay3DFloatDistribution getRays(TrackedPosture3DFloat posture, boolean right, double pointingProbability) {
-        double handHeightAngle = getHandHeightAngle(posture, right, false);
+        return getRays(new PostureFeatures(posture), right, pointingProbability);
+    }
+
+    @Override
+    public PointingRay3DFloatDistribution getRays(PostureFeatures features, boolean right, double pointingProbability) {
+        final TrackedPosture3DFloat posture = features.getPosture();
+        double handHeightAngle = features.getHandHeightAngle(right, false);
         return PointingRay3DFloatDistribution.newBuilder()
                 .addRay(getPointingRay(posture, right, pointingProbability*getShoulderHandProb(handHeightAngle), PointingType.SHOULDER_HAND))
                 .addRay(getPointingRay(posture, right, pointingProbability*getHeadHandProb(handHeightAngle), PointingType.HEAD_HAND))
@@ -25,6 +25,7 @@ package org.openbase.bco.psc.re.pointing.selectors;
 import static org.openbase.bco.psc.lib.pointing.PostureFunctions.*;
 import org.openbase.bco.psc.lib.pointing.JointPair;
 import org.openbase.bco.psc.lib.pointing.Joints;
+import org.openbase.bco.psc.lib.pointing.PostureFeatures;
 import org.openbase.type.tracking.PointingRay3DFloatDistributionType;
 import org.openbase.type.tracking.PointingRay3DFloatDistributionType.PointingRay3DFloatDistribution;
 import org.openbase.type.tracking.PointingRay3DFloatType.PointingRay3DFloat;
@@ -42,7 +43,13 @@ public class PolynomialOrNeckSelector5 implements RaySelectorInterface {
 
     @Override
     public PointingRay3DFloatDistributionType.PointingRay3DFloatDistribution getRays(TrackedPosture3DFloat posture, boolean right, double pointingProbability) {
-        double handHeightAngle = getHandHeightAngle(posture, right, false);
+        return getRays(new PostureFeatures(posture), right, pointingProbability);
+    }
+
+    @Override
+    public PointingRay3DFloatDistribution getRays(PostureFeatures features, boolean right, double pointingProbability) {
+        final TrackedPosture3DFloat posture = features.getPosture();
+        double handHeightAngle = features.getHandHeightAngle(right, false);
         if(MIN_NECK_ANGLE < handHeightAngle && handHeightAngle < MAX_NECK_ANGLE){
             JointPair jointPair = new JointPair(Joints.Neck, right ? Joints.HandRight: Joints.HandLeft);
             return PointingRay3DFloatDistribution.newBuilder().addRay(PointingRay3DFloat.newBuilder()
@@ -52,6 +59,6 @@ public class PolynomialOrNeckSelector5 implements RaySelectorInterface {
                     .setRay(getRay(posture, jointPair))
             ).build();
         }
-        return polySelector.getRays(posture, right, pointingProbability);
+        return polySelector.getRays(features, right, pointingProbability);
     }
 }
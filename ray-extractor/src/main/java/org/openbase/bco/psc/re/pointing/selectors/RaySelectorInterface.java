@@ -22,6 +22,7 @@ package org.openbase.bco.psc.re.pointing.selectors;
  * #L%
  */
 
+import org.openbase.bco.psc.lib.pointing.PostureFeatures;
 import org.openbase.type.tracking.PointingRay3DFloatDistributionType.PointingRay3DFloatDistribution;
 import org.openbase.type.tracking.TrackedPosture3DFloatType.TrackedPosture3DFloat;
 
@@ -31,4 +32,17 @@ import org.openbase.type.tracking.TrackedPosture3DFloatType.TrackedPosture3DFloa
  */
 public interface RaySelectorInterface {
     PointingRay3DFloatDistribution getRays(TrackedPosture3DFloat posture, boolean right, double pointingProbability);
+
+    /**
+     * Gets the rays of the posture described by the features. Selectors using derived values of the posture should
+     * override this method to read them from the shared features.
+     *
+     * @param features the features of the posture.
+     * @param right if true, the rays of the right arm are returned.
+     * @param pointingProbability the probability of a pointing gesture with the given arm.
+     * @return the selected rays.
+     */
+    default PointingRay3DFloatDistribution getRays(PostureFeatures features, boolean right, double pointingProbability) {
+        return getRays(features.getPosture(), right, pointingProbability);
+    }
 }
@@ -0,0 +1,125 @@
+package org.openbase.bco.psc.re.pointing;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Ray Extractor
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.Random;
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.openbase.bco.psc.lib.pointing.PostureFeatures;
+import org.openbase.type.kinematics.Posture3DFloatType.Posture3DFloat;
+import org.openbase.type.tracking.TrackedPosture3DFloatType.TrackedPosture3DFloat;
+
+/**
+ * Compares the pointing probability models of the <code>ArmPostureExtractor</code> with their previous implementation
+ * which created a commons-math <code>NormalDistribution</code> for every call. Both arms of every posture are evaluated
+ * per round, as done for every frame by the extractors.
+ * <p>
+ * Usage: <code>PointingProbabilityBenchmark [postures] [rounds]</code>
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class PointingProbabilityBenchmark {
+
+    private static final int WARMUP_ROUNDS = 200;
+
+    public static void main(final String[] args) {
+        final int postureCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        final Random random = new Random(42);
+        final PostureFeatures[] features = new PostureFeatures[postureCount];
+        for (int i = 0; i < postureCount; i++) {
+            features[i] = new PostureFeatures(createPosture(random));
+            // angles are cached by the features, so the benchmark only measures the probability models.
+            features[i].getElbowAngle(true);
+            features[i].getElbowAngle(false);
+        }
+
+        for (final boolean higherAUC : new boolean[]{false, true}) {
+            double maxDifference = 0;
+            for (final PostureFeatures feature : features) {
+                for (final boolean right : new boolean[]{true, false}) {
+                    maxDifference = Math.max(maxDifference, Math.abs(reference(feature, right, higherAUC) - fast(feature, right, higherAUC)));
+                }
+            }
+            run(features, WARMUP_ROUNDS, higherAUC, true);
+            run(features, WARMUP_ROUNDS, higherAUC, false);
+            final double referenceNanos = run(features, rounds, higherAUC, true);
+            final double fastNanos = run(features, rounds, higherAUC, false);
+            System.out.println((higherAUC ? "HIGHER_AUC" : "DEFAULT") + ": NormalDistribution " + String.format("%.1f", referenceNanos)
+                    + "ns/op, closed form " + String.format("%.1f", fastNanos) + "ns/op, speedup "
+                    + String.format("%.2f", referenceNanos / fastNanos) + ", max difference " + maxDifference);
+        }
+    }
+
+    private static double run(final PostureFeatures[] features, final int rounds, final boolean higherAUC, final boolean reference) {
+        double sum = 0;
+        final long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (final PostureFeatures feature : features) {
+                if (reference) {
+                    sum += reference(feature, true, higherAUC) + reference(feature, false, higherAUC);
+                } else {
+                    sum += fast(feature, true, higherAUC) + fast(feature, false, higherAUC);
+                }
+            }
+        }
+        final long duration = System.nanoTime() - start;
+        if (sum < 0) {
+            System.out.println(sum);
+        }
+        return (double) duration / ((long) rounds * features.length * 2);
+    }
+
+    private static double fast(final PostureFeatures features, final boolean right, final boolean higherAUC) {
+        return higherAUC ? ArmPostureExtractor.pointingProbabilityHigherAUC(features, right) : ArmPostureExtractor.pointingProbability(features, right);
+    }
+
+    private static double reference(final PostureFeatures features, final boolean right, final boolean higherAUC) {
+        final double elbowAngle = features.getElbowAngle(right);
+        final double handHeightAngle = features.getHandHeightAngle(right, higherAUC);
+        final double heightFactor;
+        final double expectedElbowAngle;
+        if (higherAUC) {
+            heightFactor = 0.5 + 0.5 * Math.tanh((107 - handHeightAngle) / 18);
+            expectedElbowAngle = handHeightAngle >= 80 ? 180 : (handHeightAngle - 4) * 30 / 76 + 150;
+        } else {
+            heightFactor = 0.5 + 0.5 * Math.tanh((140 - handHeightAngle) / 20);
+            expectedElbowAngle = handHeightAngle >= 60 ? 180 : (handHeightAngle - 20) * 0.75 + 150;
+        }
+        final double extension_factor = (new NormalDistribution(expectedElbowAngle, 40)).density(elbowAngle) * 100;
+        return Math.min(heightFactor * extension_factor, 1.0) * features.getPostureConfidence(right);
+    }
+
+    private static TrackedPosture3DFloat createPosture(final Random random) {
+        final TrackedPosture3DFloat.Builder postureBuilder = TrackedPosture3DFloat.newBuilder();
+        final Posture3DFloat.Builder positionBuilder = postureBuilder.getPostureBuilder();
+        for (int joint = 0; joint < PostureFeatures.JOINT_COUNT; joint++) {
+            positionBuilder.addPositionBuilder()
+                    .setX(random.nextGaussian() * 0.3)
+                    .setY(random.nextGaussian() * 0.3)
+                    .setZ(random.nextGaussian() * 0.3);
+            postureBuilder.addConfidence(0.5f + 0.5f * random.nextFloat());
+        }
+        return postureBuilder.build();
+    }
+}
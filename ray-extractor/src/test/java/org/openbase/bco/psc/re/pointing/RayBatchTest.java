@@ -0,0 +1,199 @@
+package org.openbase.bco.psc.re.pointing;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Ray Extractor
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.openbase.bco.psc.lib.pointing.PostureFeatures;
+import org.openbase.type.geometry.Ray3DFloatType.Ray3DFloat;
+import org.openbase.type.tracking.PointingRay3DFloatDistributionType.PointingRay3DFloatDistribution;
+import org.openbase.type.tracking.PointingRay3DFloatType.PointingRay3DFloat;
+import org.openbase.type.tracking.TrackedPosture3DFloatType.TrackedPosture3DFloat;
+import org.openbase.type.tracking.TrackedPostures3DFloatType.TrackedPostures3DFloat;
+
+/**
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class RayBatchTest {
+
+    private static PointingRay3DFloatDistribution distribution(final double certainty) {
+        final Ray3DFloat.Builder ray = Ray3DFloat.newBuilder();
+        ray.getOriginBuilder().setX(0).setY(0).setZ(0);
+        ray.getDirectionBuilder().setX(1).setY(0).setZ(0);
+        return PointingRay3DFloatDistribution.newBuilder()
+                .addRay(PointingRay3DFloat.newBuilder().setRay(ray).setCertainty((float) certainty))
+                .build();
+    }
+
+    /**
+     * Test of reset, set and compact methods, of class RayBatch.
+     */
+    @Test
+    public void testCompact() {
+        System.out.println("compact");
+        final RayBatch batch = new RayBatch();
+        final PointingRay3DFloatDistribution first = distribution(0.1);
+        final PointingRay3DFloatDistribution second = distribution(0.2);
+        final PointingRay3DFloatDistribution third = distribution(0.3);
+        batch.reset(3);
+        batch.set(2, false, third);
+        batch.set(0, false, second);
+        batch.set(0, true, first);
+        batch.compact();
+        assertEquals(3, batch.size());
+        assertSame(first, batch.get(0));
+        assertSame(second, batch.get(1));
+        assertSame(third, batch.get(2));
+        try {
+            batch.get(3);
+            fail("Index beyond the size must not be accessible.");
+        } catch (IndexOutOfBoundsException ex) {
+            // expected
+        }
+
+        // Slots of the previous extraction are cleared, also if the batch has to grow.
+        batch.reset(2);
+        batch.compact();
+        assertEquals(0, batch.size());
+        batch.reset(20);
+        batch.set(19, false, third);
+        batch.compact();
+        assertEquals(1, batch.size());
+        assertSame(third, batch.get(0));
+    }
+
+    /**
+     * Test of extractPointingRays method, of class AbstractRayExtractor. Distributions below the threshold are dropped.
+     */
+    @Test
+    public void testThreshold() {
+        System.out.println("threshold");
+        final TestExtractor extractor = new TestExtractor(new double[]{0.6, 0.4, 0.3, 0.5});
+        final RayBatch batch = extractor.extractPointingRays(TrackedPostures3DFloat.getDefaultInstance(), null, 0.5, new RayBatch());
+        assertEquals(2, batch.size());
+        // Item 0 has a left probability of 0.6, item 1 a right probability of 0.5.
+        assertEquals(0.6f, batch.get(0).getRay(0).getCertainty(), 0.0f);
+        assertEquals(0.5f, batch.get(1).getRay(0).getCertainty(), 0.0f);
+
+        extractor.extractPointingRays(TrackedPostures3DFloat.getDefaultInstance(), null, 0.0, batch);
+        assertEquals(4, batch.size());
+        extractor.extractPointingRays(TrackedPostures3DFloat.getDefaultInstance(), null, 0.7, batch);
+        assertEquals(0, batch.size());
+    }
+
+    /**
+     * Test of extractPointingRays method, of class AbstractRayExtractor. The parallel extraction above the parallel
+     * threshold extracts every item exactly once and keeps the order of the sequential extraction.
+     */
+    @Test
+    public void testParallelExtraction() {
+        System.out.println("parallelExtraction");
+        final double[] probabilities = new double[2 * 257];
+        for (int i = 0; i < probabilities.length; i++) {
+            probabilities[i] = (i % 7) / 7.0;
+        }
+        final TestExtractor extractor = new TestExtractor(probabilities);
+        final RayBatch sequential = extractor.extractPointingRays(TrackedPostures3DFloat.getDefaultInstance(), null, 0.3, new RayBatch());
+        for (int i = 0; i < extractor.extractions.length(); i++) {
+            assertEquals(1, extractor.extractions.getAndSet(i, 0));
+        }
+
+        extractor.setParallelThreshold(8);
+        final RayBatch parallel = extractor.extractPointingRays(TrackedPostures3DFloat.getDefaultInstance(), null, 0.3, new RayBatch());
+        for (int i = 0; i < extractor.extractions.length(); i++) {
+            assertEquals(1, extractor.extractions.get(i));
+        }
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            assertSame(sequential.get(i), parallel.get(i));
+        }
+    }
+
+    /**
+     * Extractor using fixed probabilities per item, every second value belongs to the left arm.
+     */
+    private static class TestExtractor extends AbstractRayExtractor {
+
+        private final double[] probabilities;
+        private final AtomicIntegerArray extractions;
+
+        TestExtractor(final double[] probabilities) {
+            super(new TestSelector());
+            this.probabilities = probabilities;
+            this.extractions = new AtomicIntegerArray(probabilities.length / 2);
+        }
+
+        @Override
+        public void updatePostures(final TrackedPostures3DFloat postures) {
+        }
+
+        @Override
+        public List<PointingRay3DFloatDistribution> getPointingRays() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        protected int prepareBatch(final TrackedPostures3DFloat postures, final long[] trackIds) {
+            return probabilities.length / 2;
+        }
+
+        @Override
+        protected void extractRays(final int item, final double threshold, final RayBatch batch) {
+            extractions.incrementAndGet(item);
+            addRays(item, getScratchFeatures(), probabilities[2 * item], probabilities[2 * item + 1], threshold, batch);
+        }
+    }
+
+    /**
+     * Selector returning a single ray with the pointing probability as certainty. The distributions are cached, so
+     * that the results of different extractions can be compared by identity.
+     */
+    private static class TestSelector implements RaySelectorInterface {
+
+        private final PointingRay3DFloatDistribution[] distributions = new PointingRay3DFloatDistribution[8];
+
+        TestSelector() {
+            for (int i = 0; i < distributions.length; i++) {
+                distributions[i] = distribution(i / 7.0);
+            }
+        }
+
+        @Override
+        public PointingRay3DFloatDistribution getRays(final TrackedPosture3DFloat posture, final boolean right, final double pointingProbability) {
+            throw new UnsupportedOperationException("Only the features are used.");
+        }
+
+        @Override
+        public PointingRay3DFloatDistribution getRays(final PostureFeatures features, final boolean right, final double pointingProbability) {
+            final long index = Math.round(pointingProbability * 7.0);
+            if (index >= 0 && index < distributions.length && Math.abs(index / 7.0 - pointingProbability) < 1e-12) {
+                return distributions[(int) index];
+            }
+            return distribution(pointingProbability);
+        }
+    }
+}
@@ -27,16 +27,22 @@ import com.google.protobuf.Message;
 import org.openbase.bco.psc.lib.jp.JPPSCBaseScope;
 import org.openbase.bco.psc.lib.jp.JPPostureScope;
 import org.openbase.bco.psc.lib.registry.PointingUnitChecker;
+import org.openbase.bco.psc.lib.rsb.LegacyTypeUpgrade;
 import org.openbase.bco.psc.sm.jp.*;
 import org.openbase.bco.psc.sm.merging.MergingScheduler;
-import org.openbase.bco.psc.sm.merging.PostureFrame;
 import org.openbase.bco.psc.sm.merging.SkeletonMerger;
 import org.openbase.bco.psc.sm.merging.SkeletonMergerInterface;
+import org.openbase.bco.psc.sm.merging.TrackManager;
+import org.openbase.bco.psc.sm.merging.stabilizing.OneEuroStabilizer;
+import org.openbase.bco.psc.sm.merging.stabilizing.Stabilizer;
 import org.openbase.bco.psc.sm.merging.stabilizing.StabilizerImpl;
 import org.openbase.bco.psc.sm.rsb.RSBConnection;
+import org.openbase.bco.psc.sm.rsb.SensorEventPipeline;
 import org.openbase.bco.psc.sm.transformation.FileTransformer;
 import org.openbase.bco.psc.sm.transformation.RegistryTransformer;
 import org.openbase.bco.psc.sm.transformation.RegistryTransformerFactory;
+import org.openbase.bco.psc.sm.transformation.ScopeRouter;
+import org.openbase.bco.psc.sm.transformation.TransformFileWatcher;
 import org.openbase.bco.psc.sm.transformation.Transformer;
 import org.openbase.bco.registry.remote.Registries;
 import org.openbase.jps.core.JPService;
@@ -47,7 +53,6 @@ import org.openbase.jul.exception.InitializationException;
 import org.openbase.jul.exception.NotAvailableException;
 import org.openbase.jul.exception.printer.ExceptionPrinter;
 import org.openbase.jul.exception.printer.LogLevel;
-import org.openbase.jul.extension.protobuf.processing.ProtoBufJSonProcessor;
 import org.openbase.jul.iface.Launchable;
 import org.openbase.jul.iface.VoidInitializable;
 import org.openbase.jul.pattern.Observer;
@@ -67,6 +72,7 @@ import org.openbase.type.tracking.TrackedPostures3DFloatType.TrackedPostures3DFl
 import java.io.File;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import static org.openbase.bco.registry.remote.Registries.getUnitRegistry;
@@ -77,79 +83,109 @@ import static org.openbase.bco.registry.remote.Registries.getUnitRegistry;
 public class SkeletonMergingController extends AbstractEventHandler implements SkeletonMerging, Launchable<Void>, VoidInitializable, Observer<DataProvider<Map<String, RegistryTransformer>>, Map<String, RegistryTransformer>> {
 
     private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(SkeletonMergingController.class);
+    /**
+     * Time in milliseconds after which a sensor that did not send any postures is not considered live anymore.
+     */
+    private static final long SENSOR_TIMEOUT = 1000;
 
     private final List<String> idRestriction = new ArrayList<>();
     private final List<String> deviceClassList = new ArrayList<>();
-    private final Map<Scope, String> scopeIdMap = new HashMap<>();
+    private volatile Map<Scope, String> scopeIdMap = new HashMap<>();
     private final Map<Scope, FileTransformer> scopeFileTransformerMap = new HashMap<>();
+    /**
+     * Routes the events to the transformers, replaced as a whole whenever the transformers change.
+     */
+    private volatile ScopeRouter router = ScopeRouter.EMPTY;
+    private TransformFileWatcher transformFileWatcher;
     private RegistrySynchronizer<String, RegistryTransformer, UnitConfig, UnitConfig.Builder> registryTransformerRegistrySynchronizer;
     private SynchronizableRegistryImpl<String, RegistryTransformer> registryTransformerRegistry;
 
     // Merging stuff:
     private MergingScheduler mergingScheduler;
     private SkeletonMergerInterface merger;
-    private boolean mergingEnabled = false;
+    private volatile boolean mergingEnabled = false;
+    private final Object mergingLock = new Object();
+    /**
+     * The local receive time of the last event of every sensor.
+     */
+    private final Map<Scope, Long> lastReceiveTimes = new ConcurrentHashMap<>();
+    /**
+     * The time at which the number of live sensors is re-evaluated next.
+     */
+    private volatile long nextLiveCheck;
+    private boolean temporalAlignment = false;
 
     private RSBConnection rsbConnection;
+    /**
+     * Processes the events of the sensors in parallel, null if they are processed in the listener thread.
+     */
+    private SensorEventPipeline pipeline;
 
     private boolean initialized;
-    private boolean active;
-
-    private ProtoBufJSonProcessor processor = new ProtoBufJSonProcessor();
+    private volatile boolean active;
 
     @Override
-    public synchronized void handleEvent(Event event) {
+    public void handleEvent(Event event) {
 
         if (rsbConnection.getOutScope().equals(event.getScope())) {
             return;
         }
 
-        // apply workaround to transform outdated rst TrackedPostures3DFloatType into new openbase type by just serializing the type.
-        if ((event.getData() instanceof rst.tracking.TrackedPostures3DFloatType.TrackedPostures3DFloat)) {
-            try {
-                event.setData(processor.deserialize(processor.serialize((Message) event.getData()), TrackedPostures3DFloat.class));
-            } catch (CouldNotPerformException ex) {
-                ExceptionPrinter.printHistory("Could not upgrade outdated rst type["+rst.tracking.TrackedPostures3DFloatType.TrackedPostures3DFloat.class.getName()+"]!", ex, LOGGER);
-            }
-        }
-
-        if (!(event.getData() instanceof TrackedPostures3DFloat)) {
+        if (!(event.getData() instanceof TrackedPostures3DFloat) && !(event.getData() instanceof rst.tracking.TrackedPostures3DFloatType.TrackedPostures3DFloat)) {
             return;
         }
 
         LOGGER.trace("New TrackedPostures3DFloat event received on scope " + event.getScope().toString());
-        Optional<Scope> bestScope = event.getScope().superScopes(true).stream()
-                .filter(s -> scopeIdMap.containsKey(s) || scopeFileTransformerMap.containsKey(s))
-                .sorted((o1, o2) -> o2.toString().length() - o1.toString().length())
-                .findFirst();
-        if (!bestScope.isPresent()) {
+        final Scope scope = router.resolve(event.getScope());
+        if (scope == null) {
             ExceptionPrinter.printHistory(new CouldNotPerformException("No Transformer registered for the event's scope " + event.getScope().toString()),
                     LOGGER, LogLevel.DEBUG);
             return;
         }
+        if (pipeline != null) {
+            pipeline.submit(scope, event);
+        } else {
+            processEvent(scope, event);
+        }
+    }
+
+    /**
+     * Upgrades, transforms and passes on the postures of a single event.
+     *
+     * @param scope the scope of the transformer that is used for the event.
+     * @param event the event containing the postures.
+     */
+    private void processEvent(final Scope scope, final Event event) {
+        // upgrade outdated rst TrackedPostures3DFloatType into the new openbase type by parsing its wire bytes.
+        if ((event.getData() instanceof rst.tracking.TrackedPostures3DFloatType.TrackedPostures3DFloat)) {
+            try {
+                event.setData(LegacyTypeUpgrade.upgrade((Message) event.getData(), TrackedPostures3DFloat.getDefaultInstance()));
+            } catch (CouldNotPerformException ex) {
+                ExceptionPrinter.printHistory("Could not upgrade outdated rst type["+rst.tracking.TrackedPostures3DFloatType.TrackedPostures3DFloat.class.getName()+"]!", ex, LOGGER);
+                return;
+            }
+        }
+
         try {
-            Transformer currentTransformer;
-            final Scope scope = bestScope.get();
-            if (scopeIdMap.containsKey(scope)) {
-                LOGGER.trace("Using transformation for scope " + scope.toString() + " unit " + scopeIdMap.get(scope));
-                currentTransformer = registryTransformerRegistry.get(scopeIdMap.get(scope));
-            } else {
-                LOGGER.trace("Using transformation for scope " + scope.toString() + " from file.");
-                currentTransformer = scopeFileTransformerMap.get(scope);
+            LOGGER.trace("Using transformation for scope " + scope.toString());
+            final Transformer currentTransformer = router.getTransformer(scope);
+            if (currentTransformer == null) {
+                throw new CouldNotPerformException("Transformer for scope " + scope.toString() + " was removed.");
             }
 
+            updateLiveSensors(scope);
             final TrackedPostures3DFloat postures = (TrackedPostures3DFloat) event.getData();
-            final TrackedPostures3DFloat transformedPostures = currentTransformer.transform(postures);
 
             if (mergingEnabled) {
                 LOGGER.trace("Passing the transformed postures to the merger.");
-                merger.postureUpdate(new PostureFrame(System.currentTimeMillis(), scope, transformedPostures));
-                //TODO merge the data here!
-//                return;
+                // The create time of rsb events is given in microseconds. It is only used for the alignment, the age of
+                // the frames is based on the local receive time.
+                final long timestamp = temporalAlignment ? event.getMetaData().getCreateTime() / 1000 : System.currentTimeMillis();
+                merger.postureUpdate(currentTransformer.transformToFrame(timestamp, scope, postures));
             } else {
                 LOGGER.trace("Creating and sending transformed event.");
                 final Event transformedEvent = copyEventMetaData(event);
-                transformedEvent.setData(transformedPostures);
+                transformedEvent.setData(currentTransformer.transform(postures));
 
                 rsbConnection.publishEvent(transformedEvent);
             }
@@ -161,6 +197,40 @@ public class SkeletonMergingController extends AbstractEventHandler implements S
         }
     }
 
+    /**
+     * Records the receive time of an event of the sensor and re-evaluates the merging state if the sensor was not live
+     * before or if the last evaluation is older than the sensor timeout.
+     *
+     * @param scope the scope of the transformer of the sensor.
+     * @throws CouldNotPerformException is thrown, if the merging scheduler can not be started or stopped.
+     * @throws InterruptedException is thrown in case of an external interruption.
+     */
+    private void updateLiveSensors(final Scope scope) throws CouldNotPerformException, InterruptedException {
+        final long now = System.currentTimeMillis();
+        final Long last = lastReceiveTimes.put(scope, now);
+        if (last == null || now - last > SENSOR_TIMEOUT || now >= nextLiveCheck) {
+            nextLiveCheck = now + SENSOR_TIMEOUT;
+            updateMergingState();
+        }
+    }
+
+    /**
+     * Counts the sensors with a registered transformer that sent postures within the sensor timeout.
+     *
+     * @return the number of live sensors.
+     */
+    private int countLiveSensors() {
+        final long now = System.currentTimeMillis();
+        final ScopeRouter currentRouter = router;
+        int count = 0;
+        for (final Entry<Scope, Long> entry : lastReceiveTimes.entrySet()) {
+            if (now - entry.getValue() <= SENSOR_TIMEOUT && currentRouter.getTransformer(entry.getKey()) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     private Event copyEventMetaData(Event event) {
         Event copy = new Event(event.getData().getClass());
         MetaData meta = event.getMetaData();
@@ -194,13 +264,6 @@ public class SkeletonMergingController extends AbstractEventHandler implements S
     }
 
     private void handleJPArguments() throws JPValidationException, JPNotAvailableException, CouldNotPerformException, InterruptedException {
-        //TODO: remove this as soon as merging is enabled!
-        if (JPService.getProperty(JPFileTransformers.class).isParsed() && JPService.getProperty(JPRegistryTransformers.class).isParsed()
-                || JPService.getProperty(JPFileTransformers.class).isParsed() && JPService.getProperty(JPFileTransformers.class).getValue().size() > 1
-                || JPService.getProperty(JPRegistryTransformers.class).isParsed() && JPService.getProperty(JPRegistryTransformers.class).getValue().size() > 1) {
-            throw new JPValidationException("So far, only one transformer can be specified via -r or -f, as merging is not yet implemented.");
-        }
-
         Scope rawBaseScope = JPService.getProperty(JPRawPostureBaseScope.class).getValue();
         Scope pscBaseScope = JPService.getProperty(JPPSCBaseScope.class).getValue();
         Scope outScope = pscBaseScope.concat(JPService.getProperty(JPPostureScope.class).getValue());
@@ -216,31 +279,77 @@ public class SkeletonMergingController extends AbstractEventHandler implements S
         idRestriction.addAll(JPService.getProperty(JPRegistryTransformers.class).getValue());
         deviceClassList.addAll(JPService.getProperty(JPDeviceClassList.class).getValue());
 
-        checkScopeMaps();
+        router = new ScopeRouter(scopeFileTransformerMap);
+        transformFileWatcher = new TransformFileWatcher(scopeFileTransformerMap.values());
         if (!JPService.getProperty(JPDisableRegistry.class).getValue()) {
             initializeRegistryConnection();
         }
 
         rsbConnection = new RSBConnection(this, rawBaseScope, outScope);
+        final int pipelineWorkers = JPService.getProperty(JPPipelineWorkers.class).getValue();
+        if (pipelineWorkers > 0) {
+            pipeline = new SensorEventPipeline(pipelineWorkers, SensorEventPipeline.DEFAULT_QUEUE_CAPACITY, this::processEvent);
+        }
 
-        //TODO: merging should always be on after it is finalized (remove mergingEnabled variable)
-        if (scopeIdMap.size() + scopeFileTransformerMap.size() > 1) {
-            mergingEnabled = true;
-            merger = new SkeletonMerger(new StabilizerImpl(JPService.getProperty(JPStabilizationFactor.class).getValue()));
-            final int frameRate = JPService.getProperty(JPFrameRate.class).getValue();
-            mergingScheduler = new MergingScheduler(frameRate, rsbConnection, merger);
+        // The merging is started and stopped in updateMergingState depending on the number of live sensors.
+        temporalAlignment = JPService.getProperty(JPTemporalAlignment.class).getValue();
+        final Stabilizer stabilizer;
+        switch (JPService.getProperty(JPStabilizerType.class).getValue()) {
+            case ONE_EURO:
+                stabilizer = new OneEuroStabilizer();
+                break;
+            case EXPONENTIAL:
+            default:
+                stabilizer = new StabilizerImpl(JPService.getProperty(JPStabilizationFactor.class).getValue());
+                break;
         }
+        final TrackManager trackManager = new TrackManager(JPService.getProperty(JPTrackTimeout.class).getValue(), TrackManager.DEFAULT_MAX_DISTANCE);
+        merger = new SkeletonMerger(stabilizer, JPService.getProperty(JPAssociationType.class).getValue(), temporalAlignment, trackManager);
+        final int frameRate = JPService.getProperty(JPFrameRate.class).getValue();
+        mergingScheduler = new MergingScheduler(frameRate, JPService.getProperty(JPSchedulingMode.class).getValue(), rsbConnection, merger);
     }
 
-    private void checkScopeMaps() throws JPValidationException {
-        if (scopeFileTransformerMap.keySet().stream().anyMatch(k -> scopeFileTransformerMap.containsKey(k))) {
-            throw new JPValidationException("The same scope occurs multiple times in the file transformers.");
+    /**
+     * Starts the merging if the component is active and more than one sensor is live and stops it otherwise. A sensor is
+     * live if it has a registered transformer and sent postures within the last <code>SENSOR_TIMEOUT</code>
+     * milliseconds. With a single live sensor the transformed postures are passed through without merging.
+     *
+     * @throws CouldNotPerformException is thrown, if the merging scheduler can not be started or stopped.
+     * @throws InterruptedException is thrown in case of an external interruption.
+     */
+    private void updateMergingState() throws CouldNotPerformException, InterruptedException {
+        synchronized (mergingLock) {
+            final int liveSensors = countLiveSensors();
+            final boolean merge = active && liveSensors > 1;
+            if (merge == mergingEnabled) {
+                return;
+            }
+            if (merge) {
+                LOGGER.info("Enabling merging for " + liveSensors + " live sensors.");
+                mergingScheduler.activate();
+                mergingEnabled = true;
+            } else {
+                LOGGER.info("Disabling merging, postures are passed through.");
+                mergingEnabled = false;
+                mergingScheduler.deactivate();
+            }
         }
-        if (scopeIdMap.keySet().stream().anyMatch(k -> scopeFileTransformerMap.keySet().stream().filter(k2 -> k == k2).count() > 1)) {
-            throw new JPValidationException("The same scope appeared in the file transformers and the registry transformers.");
+    }
+
+    /**
+     * Checks if a registry transformer can be registered on the given scope.
+     *
+     * @param scope the scope of the registry transformer.
+     * @param fileScopes the scopes of the file transformers.
+     * @param registryScopes the scopes of the registry transformers registered so far.
+     * @throws JPValidationException is thrown, if the scope is already used by a file or a registry transformer.
+     */
+    static void checkScope(final Scope scope, final Set<Scope> fileScopes, final Map<Scope, String> registryScopes) throws JPValidationException {
+        if (fileScopes.contains(scope)) {
+            throw new JPValidationException("The scope " + scope + " appeared in the file transformers and the registry transformers.");
         }
-        if (scopeIdMap.keySet().stream().anyMatch(k -> scopeIdMap.keySet().stream().filter(k2 -> k == k2).count() > 1)) {
-            throw new JPValidationException("The same scope appeared multiple times in the registry.");
+        if (registryScopes.containsKey(scope)) {
+            throw new JPValidationException("The scope " + scope + " appeared multiple times in the registry.");
         }
     }
 
@@ -298,11 +407,13 @@ public class SkeletonMergingController extends AbstractEventHandler implements S
             Registries.waitForData();
             LOGGER.info("Activating Registry synchronization.");
             registryTransformerRegistrySynchronizer.activate();
-            rsbConnection.activate();
-            if (mergingEnabled) {
-                mergingScheduler.activate();
+            transformFileWatcher.activate();
+            if (pipeline != null) {
+                pipeline.activate();
             }
+            rsbConnection.activate();
             active = true;
+            updateMergingState();
         }
     }
 
@@ -310,13 +421,16 @@ public class SkeletonMergingController extends AbstractEventHandler implements S
     public void deactivate() throws CouldNotPerformException, InterruptedException {
         LOGGER.info("Deactivating " + getClass().getName() + ".");
         if (active) {
-            if (mergingEnabled) {
-                mergingScheduler.deactivate();
-            }
+            active = false;
+            updateMergingState();
+            lastReceiveTimes.clear();
             rsbConnection.deactivate();
+            if (pipeline != null) {
+                pipeline.deactivate();
+            }
+            transformFileWatcher.deactivate();
             LOGGER.info("Deactivating Registry synchronization.");
             registryTransformerRegistrySynchronizer.deactivate();
-            active = false;
         }
     }
 
@@ -327,16 +441,27 @@ public class SkeletonMergingController extends AbstractEventHandler implements S
 
     @Override
     public synchronized void update(DataProvider<Map<String, RegistryTransformer>> source, Map<String, RegistryTransformer> data) throws Exception {
-        scopeIdMap.clear();
         LOGGER.info("Clearing registry scopes");
+        final Map<Scope, String> newScopeIdMap = new HashMap<>();
+        final Map<Scope, Transformer> routes = new HashMap<>(scopeFileTransformerMap);
         for (Entry<String, RegistryTransformer> e : data.entrySet()) {
-            scopeIdMap.put(e.getValue().getScope(), e.getKey());
+            try {
+                checkScope(e.getValue().getScope(), scopeFileTransformerMap.keySet(), newScopeIdMap);
+            } catch (JPValidationException ex) {
+                ExceptionPrinter.printHistory(new CouldNotPerformException("Skipping unit with id " + e.getKey() + ".", ex), LOGGER, LogLevel.WARN);
+                continue;
+            }
+            newScopeIdMap.put(e.getValue().getScope(), e.getKey());
+            routes.put(e.getValue().getScope(), e.getValue());
             LOGGER.info("Registering on scope " + e.getValue().getScope().toString() + " Unit with id " + e.getKey());
         }
+        // Replaced as a whole, so that the event handling never sees a partially updated map.
+        scopeIdMap = newScopeIdMap;
+        router = new ScopeRouter(routes);
         try {
-            checkScopeMaps();
-        } catch (JPValidationException ex) {
-            ExceptionPrinter.printHistory(ex, LOGGER, LogLevel.WARN);
+            updateMergingState();
+        } catch (CouldNotPerformException ex) {
+            ExceptionPrinter.printHistory(new CouldNotPerformException("Could not update the merging state.", ex), LOGGER, LogLevel.ERROR);
         }
     }
 
@@ -2,13 +2,19 @@ package org.openbase.bco.psc.sm;
 
 import org.openbase.bco.psc.lib.jp.JPPSCBaseScope;
 import org.openbase.bco.psc.lib.jp.JPPostureScope;
+import org.openbase.bco.psc.sm.jp.JPAssociationType;
 import org.openbase.bco.psc.sm.jp.JPDeviceClassList;
 import org.openbase.bco.psc.sm.jp.JPDisableRegistry;
 import org.openbase.bco.psc.sm.jp.JPFileTransformers;
 import org.openbase.bco.psc.sm.jp.JPFrameRate;
+import org.openbase.bco.psc.sm.jp.JPPipelineWorkers;
 import org.openbase.bco.psc.sm.jp.JPRawPostureBaseScope;
 import org.openbase.bco.psc.sm.jp.JPRegistryTransformers;
+import org.openbase.bco.psc.sm.jp.JPSchedulingMode;
+import org.openbase.bco.psc.sm.jp.JPStabilizerType;
 import org.openbase.bco.psc.sm.jp.JPStabilizationFactor;
+import org.openbase.bco.psc.sm.jp.JPTemporalAlignment;
+import org.openbase.bco.psc.sm.jp.JPTrackTimeout;
 import org.openbase.bco.authentication.lib.BCO;
 import org.openbase.jps.core.JPService;
 import org.openbase.jul.exception.CouldNotPerformException;
@@ -63,6 +69,12 @@ public class SkeletonMergingLauncher extends AbstractLauncher<SkeletonMergingCon
         JPService.registerProperty(JPDeviceClassList.class);
         JPService.registerProperty(JPFrameRate.class);
         JPService.registerProperty(JPStabilizationFactor.class);
+        JPService.registerProperty(JPStabilizerType.class);
+        JPService.registerProperty(JPAssociationType.class);
+        JPService.registerProperty(JPSchedulingMode.class);
+        JPService.registerProperty(JPTemporalAlignment.class);
+        JPService.registerProperty(JPTrackTimeout.class);
+        JPService.registerProperty(JPPipelineWorkers.class);
 
         // Transport specification
         JPService.registerProperty(JPRSBTransport.class);
@@ -0,0 +1,82 @@
+package org.openbase.bco.psc.sm.jp;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Skeleton Merging
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import org.openbase.bco.psc.sm.merging.SchedulingMode;
+import org.openbase.jps.exception.JPNotAvailableException;
+import org.openbase.jps.preset.AbstractJPEnum;
+
+/**
+ * JavaProperty used to specify how the merging is timed.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class JPSchedulingMode extends AbstractJPEnum<SchedulingMode> {
+
+    /**
+     * The identifiers that can be used in front of the command line argument.
+     */
+    public final static String[] COMMAND_IDENTIFIERS = {"--sm-scheduling"};
+    /**
+     * Names of the enum values.
+     */
+    private String typeNames;
+
+    /**
+     * Constructor.
+     */
+    public JPSchedulingMode() {
+        super(COMMAND_IDENTIFIERS);
+        SchedulingMode[] types = SchedulingMode.values();
+        typeNames = "[";
+        for (int i = 0; i < types.length; i++) {
+            if (i != 0) {
+                typeNames += ", ";
+            }
+            typeNames += types[i].name();
+        }
+        typeNames += "]";
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     * @throws JPNotAvailableException {@inheritDoc}
+     */
+    @Override
+    protected SchedulingMode getPropertyDefaultValue() throws JPNotAvailableException {
+        return SchedulingMode.TIMER;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public String getDescription() {
+        return "Defines when the skeletons are merged and published. Possible choices are: " + typeNames;
+    }
+
+}
@@ -0,0 +1,54 @@
+package org.openbase.bco.psc.sm.jp;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Skeleton Merging
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+/**
+ * JavaProperty used to enable the temporal alignment of the frames of different sources before merging.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class JPTemporalAlignment extends org.openbase.jps.preset.AbstractJPBoolean {
+
+    /**
+     * The identifiers that can be used in front of the command line argument.
+     */
+    public final static String[] COMMAND_IDENTIFIERS = {"--sm-temporal-alignment"};
+
+    /**
+     * Constructor.
+     */
+    public JPTemporalAlignment() {
+        super(COMMAND_IDENTIFIERS);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public String getDescription() {
+        return "If true, frames are timestamped with the creation time of their rsb event and the skeletons of all sources are interpolated to a common point in time before merging. Requires synchronized clocks of the sending hosts.";
+    }
+
+}
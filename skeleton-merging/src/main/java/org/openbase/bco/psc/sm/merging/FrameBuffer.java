@@ -0,0 +1,198 @@
+package org.openbase.bco.psc.sm.merging;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Skeleton Merging
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+/**
+ * Immutable buffer of the latest frames of a single source, ordered from the newest to the oldest frame.
+ * Adding a frame creates a new buffer, so buffers can be shared between threads without locking.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class FrameBuffer {
+
+    /**
+     * Maximal time in milliseconds a skeleton is extrapolated beyond the newest frame.
+     */
+    private static final long MAX_EXTRAPOLATION = 50;
+
+    private final PostureFrame[] frames;
+    /**
+     * Local time in milliseconds at which the last frame was received. The frame timestamps may come from the clock
+     * of the sensor host, so only this time can be compared with the local clock.
+     */
+    private final long receiveTime;
+    /**
+     * Difference between the local receive time and the timestamp of the last received frame in milliseconds. It
+     * converts the sensor clock to the local clock, including the transport latency.
+     */
+    private final long clockOffset;
+
+    /**
+     * Creates a buffer containing a single frame.
+     *
+     * @param frame the frame.
+     * @param capacity the maximal number of frames kept.
+     * @param receiveTime the local time in milliseconds at which the frame was received.
+     */
+    public FrameBuffer(final PostureFrame frame, final int capacity, final long receiveTime) {
+        this.frames = new PostureFrame[Math.max(1, capacity)];
+        this.frames[0] = frame;
+        this.receiveTime = receiveTime;
+        this.clockOffset = receiveTime - frame.getTimestamp();
+    }
+
+    private FrameBuffer(final PostureFrame[] frames, final long receiveTime, final long clockOffset) {
+        this.frames = frames;
+        this.receiveTime = receiveTime;
+        this.clockOffset = clockOffset;
+    }
+
+    /**
+     * Creates a new buffer with <code>frame</code> added. Frames are sorted by their timestamp and the oldest frame is
+     * dropped if the capacity is exceeded.
+     *
+     * @param frame the new frame.
+     * @param receiveTime the local time in milliseconds at which the frame was received.
+     * @return the new buffer.
+     */
+    public FrameBuffer add(final PostureFrame frame, final long receiveTime) {
+        final PostureFrame[] newFrames = new PostureFrame[frames.length];
+        int source = 0;
+        int target = 0;
+        while (source < frames.length && frames[source] != null && frames[source].getTimestamp() > frame.getTimestamp()) {
+            newFrames[target++] = frames[source++];
+        }
+        if (target < newFrames.length) {
+            newFrames[target++] = frame;
+        }
+        while (target < newFrames.length) {
+            newFrames[target++] = frames[source++];
+        }
+        if (receiveTime >= this.receiveTime) {
+            return new FrameBuffer(newFrames, receiveTime, receiveTime - frame.getTimestamp());
+        }
+        return new FrameBuffer(newFrames, this.receiveTime, clockOffset);
+    }
+
+    /**
+     * Gets the local time at which the last frame was received.
+     *
+     * @return the receive time in milliseconds.
+     */
+    public long getReceiveTime() {
+        return receiveTime;
+    }
+
+    /**
+     * Converts a timestamp of this source to the local clock using the offset of the last received frame.
+     *
+     * @param timestamp the timestamp of the source in milliseconds.
+     * @return the local time in milliseconds.
+     */
+    public long toLocalTime(final long timestamp) {
+        return timestamp + clockOffset;
+    }
+
+    /**
+     * Converts a local time to the clock of this source using the offset of the last received frame.
+     *
+     * @param localTime the local time in milliseconds.
+     * @return the timestamp of the source in milliseconds.
+     */
+    public long toSourceTime(final long localTime) {
+        return localTime - clockOffset;
+    }
+
+    /**
+     * Gets the time since the last frame was received.
+     *
+     * @param currentTime the current local time in milliseconds.
+     * @return the age in milliseconds.
+     */
+    public long getAge(final long currentTime) {
+        return currentTime - receiveTime;
+    }
+
+    /**
+     * Gets the newest frame.
+     *
+     * @return the newest frame.
+     */
+    public PostureFrame getLatest() {
+        return frames[0];
+    }
+
+    /**
+     * Creates a frame for <code>timestamp</code> by linear interpolation between the two buffered frames around it.
+     * If <code>timestamp</code> lies after the newest frame, the skeletons are extrapolated using the two newest frames,
+     * but by at most <code>MAX_EXTRAPOLATION</code> milliseconds. If it lies before the oldest frame, the oldest frame is used.
+     * Skeletons are matched by their index, which is the body index of the tracking sensor.
+     *
+     * @param timestamp the point in time in milliseconds.
+     * @return the aligned frame.
+     */
+    public PostureFrame getAligned(final long timestamp) {
+        final PostureFrame newest = frames[0];
+        if (newest.getTimestamp() == timestamp || frames.length == 1 || frames[1] == null) {
+            return newest;
+        }
+        PostureFrame before;
+        PostureFrame after;
+        long target = timestamp;
+        if (timestamp > newest.getTimestamp()) {
+            before = frames[1];
+            after = newest;
+            target = Math.min(timestamp, newest.getTimestamp() + MAX_EXTRAPOLATION);
+        } else {
+            int index = 1;
+            while (index < frames.length && frames[index] != null && frames[index].getTimestamp() > timestamp) {
+                index++;
+            }
+            if (index == frames.length || frames[index] == null) {
+                return frames[index - 1];
+            }
+            before = frames[index];
+            after = frames[index - 1];
+        }
+        final long interval = after.getTimestamp() - before.getTimestamp();
+        if (interval <= 0) {
+            return after;
+        }
+        final double weight = (double) (target - before.getTimestamp()) / interval;
+
+        final int count = after.getSkeletonCount();
+        final PackedSkeleton3D[] skeletons = new PackedSkeleton3D[count];
+        final int[] jointCounts = new int[count];
+        for (int i = 0; i < count; i++) {
+            jointCounts[i] = after.getJointCount(i);
+            if (i < before.getSkeletonCount() && !before.isEmpty(i) && !after.isEmpty(i)) {
+                skeletons[i] = new PackedSkeleton3D().setInterpolated(before.getPackedSkeleton(i), after.getPackedSkeleton(i), weight);
+                jointCounts[i] = Math.min(jointCounts[i], before.getJointCount(i));
+            } else {
+                skeletons[i] = after.getPackedSkeleton(i);
+            }
+        }
+        return new PostureFrame(timestamp, after.getScope(), skeletons, jointCounts);
+    }
+}
@@ -32,13 +32,12 @@ import org.openbase.type.geometry.TranslationType.Translation;
  */
 public class Joint3D {
 
-    private final Translation translation;
+    private Translation translation;
     private final Point3D position;
     private final double confidence;
 
     public Joint3D(Point3D position, double confidence) {
         this.position = position;
-        this.translation = PostureFunctions.toTranslation(position);
         this.confidence = confidence;
     }
 
@@ -49,6 +48,10 @@ public class Joint3D {
     }
 
     public Translation getTranslation() {
+        // Created lazily, as most joints of the merging process are never published.
+        if (translation == null) {
+            translation = PostureFunctions.toTranslation(position);
+        }
         return translation;
     }
 
@@ -22,22 +22,28 @@ package org.openbase.bco.psc.sm.merging;
  * <http://www.gnu.org/licenses/gpl-3.0.html>.
  * #L%
  */
+import java.util.Arrays;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.openbase.bco.psc.lib.rsb.TrackMetaData;
 import org.openbase.bco.psc.sm.rsb.RSBConnection;
 import org.openbase.jul.exception.CouldNotPerformException;
 import org.openbase.jul.exception.printer.ExceptionPrinter;
 import org.openbase.jul.exception.printer.LogLevel;
 import org.openbase.jul.iface.Launchable;
 import org.openbase.jul.iface.VoidInitializable;
+import org.openbase.type.tracking.TrackedPostures3DFloatType.TrackedPostures3DFloat;
 import org.slf4j.LoggerFactory;
+import rsb.Event;
 
 /**
  * This class handles the timing of merging and publishing of the tracked posture data.
  *
  * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
  */
-public class MergingScheduler extends TimerTask implements Launchable<Void>, VoidInitializable {
+public class MergingScheduler implements Launchable<Void>, VoidInitializable {
 
     /**
      * Logger instance.
@@ -45,9 +51,17 @@ public class MergingScheduler extends TimerTask implements Launchable<Void>, Voi
     private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(MergingScheduler.class);
 
     /**
-     * The period in milliseconds after which the <code>run()</code> function is called.
+     * The period in milliseconds after which the merging is repeated in timer mode.
      */
     private final long updatePeriod;
+    /**
+     * The period in nanoseconds used by the paced and event-driven modes.
+     */
+    private final long updatePeriodNanos;
+    /**
+     * The way the merging is timed.
+     */
+    private final SchedulingMode mode;
     /**
      * RSBConnection used to publish the merged data on.
      */
@@ -60,6 +74,18 @@ public class MergingScheduler extends TimerTask implements Launchable<Void>, Voi
      * The timer that executes the merging schedule.
      */
     private Timer timer;
+    /**
+     * The thread that executes the merging schedule in the paced and event-driven modes.
+     */
+    private Thread schedulingThread;
+    /**
+     * Flag that keeps the scheduling thread running.
+     */
+    private volatile boolean running;
+    /**
+     * Number of runs that were skipped because the previous merging took too long.
+     */
+    private volatile long skippedRuns;
 
     /**
      * Constructor.
@@ -69,21 +95,44 @@ public class MergingScheduler extends TimerTask implements Launchable<Void>, Voi
      * @param merger The merger from which the merged data can be acquired.
      */
     public MergingScheduler(final int frameRate, final RSBConnection rsbConnection, final SkeletonMergerInterface merger) {
-        LOGGER.info("Merging Scheduler initialized for the selected framerate of " + frameRate + "/second.");
+        this(frameRate, SchedulingMode.TIMER, rsbConnection, merger);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param frameRate Framerate in which the merging and publishing is taking place.
+     * @param mode The way the merging is timed.
+     * @param rsbConnection RSBConnection used to publish the merged data on.
+     * @param merger The merger from which the merged data can be acquired.
+     */
+    public MergingScheduler(final int frameRate, final SchedulingMode mode, final RSBConnection rsbConnection, final SkeletonMergerInterface merger) {
+        LOGGER.info("Merging Scheduler initialized for the selected framerate of " + frameRate + "/second in mode " + mode.name() + ".");
         this.updatePeriod = 1000 / frameRate;
+        this.updatePeriodNanos = TimeUnit.SECONDS.toNanos(1) / frameRate;
+        this.mode = mode;
         this.rsbConnection = rsbConnection;
         this.merger = merger;
     }
 
     /**
-     * {@inheritDoc}
+     * Merges the current frames and publishes the result.
+     *
+     * @param timestamp the time in milliseconds for which the merged data is created.
      */
-    @Override
-    public void run() {
+    private void publishMergedData(final long timestamp) {
         try {
             if (rsbConnection.isActive()) {
-                rsbConnection.publishData(merger.createMergedData());
-                //TODO: Send rsb messages for new and lost postures...
+                final TrackedPostures3DFloat postures = merger.createMergedData(timestamp);
+                final TrackUpdate trackUpdate = merger.getTrackUpdate();
+                final Event event = new Event(TrackedPostures3DFloat.class, postures);
+                TrackMetaData.setTrackIds(event.getMetaData(), TrackMetaData.TRACK_IDS, trackUpdate.getTrackIds());
+                if (trackUpdate.hasChanges()) {
+                    TrackMetaData.setTrackIds(event.getMetaData(), TrackMetaData.NEW_TRACKS, trackUpdate.getNewTracks());
+                    TrackMetaData.setTrackIds(event.getMetaData(), TrackMetaData.LOST_TRACKS, trackUpdate.getLostTracks());
+                    LOGGER.debug("New tracks: " + Arrays.toString(trackUpdate.getNewTracks()) + ", lost tracks: " + Arrays.toString(trackUpdate.getLostTracks()));
+                }
+                rsbConnection.publishEvent(event);
             }
         } catch (CouldNotPerformException ex) {
             ExceptionPrinter.printHistory(new CouldNotPerformException("Sending the merged postures failed.", ex), LOGGER, LogLevel.ERROR);
@@ -93,6 +142,52 @@ public class MergingScheduler extends TimerTask implements Launchable<Void>, Voi
         }
     }
 
+    /**
+     * Scheduling loop of the paced and event-driven modes. In paced mode the merging takes place on a fixed grid of
+     * deadlines and deadlines that already passed are skipped instead of being caught up. In event-driven mode the
+     * merging also takes place as soon as every source delivered a frame newer than the last output and the next
+     * deadline is one period after the last output.
+     */
+    private void schedule() {
+        final boolean eventDriven = mode == SchedulingMode.EVENT_DRIVEN;
+        long deadline = System.nanoTime();
+        long lastOutput = 0;
+        while (running) {
+            long now = System.nanoTime();
+            while (running && now - deadline < 0 && !(eventDriven && merger.hasNewFrames(lastOutput))) {
+                LockSupport.parkNanos(this, deadline - now);
+                now = System.nanoTime();
+            }
+            if (!running) {
+                break;
+            }
+            lastOutput = System.currentTimeMillis();
+            publishMergedData(lastOutput);
+
+            now = System.nanoTime();
+            if (eventDriven) {
+                deadline = now + updatePeriodNanos;
+            } else {
+                deadline += updatePeriodNanos;
+                if (now - deadline >= 0) {
+                    final long missed = (now - deadline) / updatePeriodNanos + 1;
+                    skippedRuns += missed;
+                    deadline += missed * updatePeriodNanos;
+                    LOGGER.debug("Merging took too long, skipped " + missed + " run(s).");
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of runs that were skipped in paced mode because the merging took too long.
+     *
+     * @return the number of skipped runs.
+     */
+    public long getSkippedRuns() {
+        return skippedRuns;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -102,8 +197,24 @@ public class MergingScheduler extends TimerTask implements Launchable<Void>, Voi
     @Override
     public void activate() throws CouldNotPerformException, InterruptedException {
         LOGGER.info("Activating merging scheduler.");
-        timer = new Timer();
-        timer.scheduleAtFixedRate(this, 0, updatePeriod);
+        if (mode == SchedulingMode.TIMER) {
+            timer = new Timer();
+            // A cancelled TimerTask can not be scheduled again, so every activation uses a new task.
+            timer.scheduleAtFixedRate(new TimerTask() {
+                @Override
+                public void run() {
+                    publishMergedData(System.currentTimeMillis());
+                }
+            }, 0, updatePeriod);
+            return;
+        }
+        running = true;
+        schedulingThread = new Thread(this::schedule, "MergingScheduler");
+        if (mode == SchedulingMode.EVENT_DRIVEN) {
+            final Thread thread = schedulingThread;
+            merger.setUpdateListener(() -> LockSupport.unpark(thread));
+        }
+        schedulingThread.start();
     }
 
     /**
@@ -115,9 +226,18 @@ public class MergingScheduler extends TimerTask implements Launchable<Void>, Voi
     @Override
     public void deactivate() throws CouldNotPerformException, InterruptedException {
         LOGGER.info("Deactivating merging scheduler.");
-        timer.cancel();
-        timer.purge();
-        timer = null;
+        if (timer != null) {
+            timer.cancel();
+            timer.purge();
+            timer = null;
+        }
+        if (schedulingThread != null) {
+            running = false;
+            merger.setUpdateListener(null);
+            LockSupport.unpark(schedulingThread);
+            schedulingThread.join();
+            schedulingThread = null;
+        }
     }
 
     /**
@@ -127,7 +247,7 @@ public class MergingScheduler extends TimerTask implements Launchable<Void>, Voi
      */
     @Override
     public boolean isActive() {
-        return timer != null;
+        return timer != null || schedulingThread != null;
     }
 
 }
@@ -0,0 +1,320 @@
+package org.openbase.bco.psc.sm.merging;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Skeleton Merging
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.Arrays;
+import javafx.geometry.Point3D;
+import org.openbase.bco.psc.lib.pointing.Joints;
+import org.openbase.bco.psc.lib.pointing.PostureFunctions;
+
+/**
+ * Skeleton representation backed by a single primitive array containing x, y, z and confidence of every joint.
+ * All arithmetic operations work in place, so instances can be reused via a <code>PackedSkeleton3DPool</code>.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class PackedSkeleton3D {
+
+    /**
+     * Number of joints of a skeleton.
+     */
+    public static final int JOINT_COUNT = Joints.values().length;
+    /**
+     * Number of values stored per joint.
+     */
+    public static final int STRIDE = 4;
+    /**
+     * Length of the backing array.
+     */
+    public static final int SIZE = JOINT_COUNT * STRIDE;
+    /**
+     * Index of the mirrored joint for every joint index.
+     */
+    private static final int[] MIRRORED_JOINTS = new int[JOINT_COUNT];
+
+    static {
+        for (final Joints joint : Joints.values()) {
+            MIRRORED_JOINTS[joint.getValue()] = PostureFunctions.otherJoint(joint).getValue();
+        }
+    }
+
+    private final double[] data = new double[SIZE];
+    private long trackId = -1;
+
+    /**
+     * Gets the index of the joint on the other side of the body.
+     *
+     * @param joint the joint index.
+     * @return the index of the mirrored joint.
+     */
+    public static int mirroredJoint(final int joint) {
+        return MIRRORED_JOINTS[joint];
+    }
+
+    /**
+     * Gets the backing array. Joint <code>j</code> is stored at <code>j * STRIDE</code> as x, y, z, confidence.
+     *
+     * @return the backing array.
+     */
+    public double[] getData() {
+        return data;
+    }
+
+    /**
+     * Gets the id of the person this skeleton belongs to.
+     *
+     * @return the track id or -1 if the skeleton is not tracked.
+     */
+    public long getTrackId() {
+        return trackId;
+    }
+
+    public void setTrackId(final long trackId) {
+        this.trackId = trackId;
+    }
+
+    public double getX(final int joint) {
+        return data[joint * STRIDE];
+    }
+
+    public double getY(final int joint) {
+        return data[joint * STRIDE + 1];
+    }
+
+    public double getZ(final int joint) {
+        return data[joint * STRIDE + 2];
+    }
+
+    public double getConfidence(final int joint) {
+        return data[joint * STRIDE + 3];
+    }
+
+    public void setJoint(final int joint, final double x, final double y, final double z, final double confidence) {
+        final int offset = joint * STRIDE;
+        data[offset] = x;
+        data[offset + 1] = y;
+        data[offset + 2] = z;
+        data[offset + 3] = confidence;
+    }
+
+    /**
+     * Resets all positions and confidences to zero and the track id to -1.
+     *
+     * @return this skeleton.
+     */
+    public PackedSkeleton3D clear() {
+        Arrays.fill(data, 0.0);
+        trackId = -1;
+        return this;
+    }
+
+    /**
+     * Copies the joints and the track id of <code>skeleton</code> into this skeleton. Missing joints get a confidence
+     * of zero.
+     *
+     * @param skeleton the skeleton to be copied.
+     * @return this skeleton.
+     */
+    public PackedSkeleton3D set(final Skeleton3D skeleton) {
+        final int size = Math.min(skeleton.size(), JOINT_COUNT);
+        for (int i = 0; i < size; i++) {
+            final Joint3D joint = skeleton.get(i);
+            final Point3D position = joint.getPosition();
+            setJoint(i, position.getX(), position.getY(), position.getZ(), joint.getConfidence());
+        }
+        Arrays.fill(data, size * STRIDE, SIZE, 0.0);
+        trackId = skeleton.getTrackId();
+        return this;
+    }
+
+    /**
+     * Copies the values and the track id of <code>other</code> into this skeleton.
+     *
+     * @param other the skeleton to be copied.
+     * @return this skeleton.
+     */
+    public PackedSkeleton3D set(final PackedSkeleton3D other) {
+        System.arraycopy(other.data, 0, data, 0, SIZE);
+        trackId = other.trackId;
+        return this;
+    }
+
+    /**
+     * Multiplies all positions by <code>factor</code>.
+     *
+     * @param factor the factor.
+     * @return this skeleton.
+     */
+    public PackedSkeleton3D scale(final double factor) {
+        for (int offset = 0; offset < SIZE; offset += STRIDE) {
+            data[offset] *= factor;
+            data[offset + 1] *= factor;
+            data[offset + 2] *= factor;
+        }
+        return this;
+    }
+
+    /**
+     * Adds the positions of <code>other</code> multiplied by <code>factor</code> to the positions of this skeleton.
+     * The confidences stay untouched.
+     *
+     * @param other the skeleton to be added.
+     * @param factor the factor applied to the positions of <code>other</code>.
+     * @return this skeleton.
+     */
+    public PackedSkeleton3D addScaled(final PackedSkeleton3D other, final double factor) {
+        for (int offset = 0; offset < SIZE; offset += STRIDE) {
+            data[offset] += other.data[offset] * factor;
+            data[offset + 1] += other.data[offset + 1] * factor;
+            data[offset + 2] += other.data[offset + 2] * factor;
+        }
+        return this;
+    }
+
+    /**
+     * Sets the positions of this skeleton to the linear interpolation between <code>first</code> and <code>second</code>.
+     * Weights outside of [0, 1] extrapolate. The confidences are taken from the skeleton closer to the weight.
+     *
+     * @param first the skeleton at weight 0.
+     * @param second the skeleton at weight 1.
+     * @param weight the interpolation weight.
+     * @return this skeleton.
+     */
+    public PackedSkeleton3D setInterpolated(final PackedSkeleton3D first, final PackedSkeleton3D second, final double weight) {
+        final double[] confidenceSource = weight < 0.5 ? first.data : second.data;
+        for (int offset = 0; offset < SIZE; offset += STRIDE) {
+            data[offset] = first.data[offset] + (second.data[offset] - first.data[offset]) * weight;
+            data[offset + 1] = first.data[offset + 1] + (second.data[offset + 1] - first.data[offset + 1]) * weight;
+            data[offset + 2] = first.data[offset + 2] + (second.data[offset + 2] - first.data[offset + 2]) * weight;
+            data[offset + 3] = confidenceSource[offset + 3];
+        }
+        return this;
+    }
+
+    /**
+     * Swaps the joints of the left and the right side of the body.
+     *
+     * @return this skeleton.
+     */
+    public PackedSkeleton3D mirror() {
+        for (int joint = 0; joint < JOINT_COUNT; joint++) {
+            final int other = MIRRORED_JOINTS[joint];
+            if (other > joint) {
+                final int offset = joint * STRIDE;
+                final int otherOffset = other * STRIDE;
+                for (int k = 0; k < STRIDE; k++) {
+                    final double value = data[offset + k];
+                    data[offset + k] = data[otherOffset + k];
+                    data[otherOffset + k] = value;
+                }
+            }
+        }
+        return this;
+    }
+
+    public double getTotalConfidence() {
+        double totalConfidence = 0.0;
+        for (int offset = 3; offset < SIZE; offset += STRIDE) {
+            totalConfidence += data[offset];
+        }
+        return totalConfidence;
+    }
+
+    /**
+     * Calculates the unweighted mean of all joint positions.
+     *
+     * @param result array of at least three values the x, y and z coordinates of the mean are written to.
+     * @return <code>result</code>.
+     */
+    public double[] getMean(final double[] result) {
+        double x = 0.0, y = 0.0, z = 0.0;
+        for (int offset = 0; offset < SIZE; offset += STRIDE) {
+            x += data[offset];
+            y += data[offset + 1];
+            z += data[offset + 2];
+        }
+        result[0] = x / JOINT_COUNT;
+        result[1] = y / JOINT_COUNT;
+        result[2] = z / JOINT_COUNT;
+        return result;
+    }
+
+    /**
+     * Calculates the confidence weighted mean distance of the joints of both skeletons.
+     *
+     * @param other the other skeleton.
+     * @param mirrored if true, the joints of this skeleton are compared to the mirrored joints of <code>other</code>.
+     * @return the weighted mean joint distance.
+     */
+    public double jointDistance(final PackedSkeleton3D other, final boolean mirrored) {
+        double totalConf = 0.0;
+        double totalDist = 0.0;
+        for (int joint = 0; joint < JOINT_COUNT; joint++) {
+            final int offset = joint * STRIDE;
+            final int otherOffset = (mirrored ? MIRRORED_JOINTS[joint] : joint) * STRIDE;
+            final double conf = data[offset + 3] * other.data[otherOffset + 3];
+            final double dx = data[offset] - other.data[otherOffset];
+            final double dy = data[offset + 1] - other.data[otherOffset + 1];
+            final double dz = data[offset + 2] - other.data[otherOffset + 2];
+            totalConf += conf;
+            totalDist += Math.sqrt(dx * dx + dy * dy + dz * dz) * conf;
+        }
+        return totalDist / totalConf;
+    }
+
+    /**
+     * Calculates the confidence weighted mean distance of the corresponding joints of both skeletons.
+     *
+     * @param other the other skeleton.
+     * @return the weighted mean joint distance.
+     */
+    public double distance(final PackedSkeleton3D other) {
+        return jointDistance(other, false);
+    }
+
+    /**
+     * Creates a <code>Skeleton3D</code> containing the joints of this skeleton.
+     *
+     * @return the new skeleton.
+     */
+    public Skeleton3D toSkeleton3D() {
+        return toSkeleton3D(JOINT_COUNT);
+    }
+
+    /**
+     * Creates a <code>Skeleton3D</code> containing the first <code>jointCount</code> joints and the track id of this
+     * skeleton.
+     *
+     * @param jointCount the number of joints to be copied.
+     * @return the new skeleton.
+     */
+    public Skeleton3D toSkeleton3D(final int jointCount) {
+        final Skeleton3D skeleton = new Skeleton3D();
+        skeleton.ensureCapacity(jointCount);
+        for (int offset = 0; offset < jointCount * STRIDE; offset += STRIDE) {
+            skeleton.add(new Joint3D(new Point3D(data[offset], data[offset + 1], data[offset + 2]), data[offset + 3]));
+        }
+        skeleton.setTrackId(trackId);
+        return skeleton;
+    }
+}
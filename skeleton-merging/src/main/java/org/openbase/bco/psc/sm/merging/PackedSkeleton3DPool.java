@@ -0,0 +1,66 @@
+package org.openbase.bco.psc.sm.merging;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Skeleton Merging
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.ArrayDeque;
+
+/**
+ * A simple pool of <code>PackedSkeleton3D</code> objects that avoids allocating new skeletons in every merging cycle.
+ * This class is not thread-safe and should only be used by a single thread.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class PackedSkeleton3DPool {
+
+    private final ArrayDeque<PackedSkeleton3D> free = new ArrayDeque<>();
+
+    /**
+     * Takes a skeleton from the pool or creates a new one if the pool is empty.
+     * The values of the returned skeleton are undefined.
+     *
+     * @return a skeleton.
+     */
+    public PackedSkeleton3D acquire() {
+        final PackedSkeleton3D skeleton = free.pollLast();
+        return skeleton != null ? skeleton : new PackedSkeleton3D();
+    }
+
+    /**
+     * Takes a skeleton from the pool and fills it with the joints of <code>skeleton</code>.
+     *
+     * @param skeleton the skeleton to be copied.
+     * @return the filled skeleton.
+     */
+    public PackedSkeleton3D acquire(final Skeleton3D skeleton) {
+        return acquire().set(skeleton);
+    }
+
+    /**
+     * Returns a skeleton to the pool. It must not be used by the caller afterwards.
+     *
+     * @param skeleton the skeleton to be returned.
+     */
+    public void release(final PackedSkeleton3D skeleton) {
+        free.addLast(skeleton);
+    }
+}
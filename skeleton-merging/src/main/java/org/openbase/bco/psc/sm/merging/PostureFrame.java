@@ -22,15 +22,18 @@ package org.openbase.bco.psc.sm.merging;
  * <http://www.gnu.org/licenses/gpl-3.0.html>.
  * #L%
  */
-import java.util.Iterator;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 import rsb.Scope;
+import org.openbase.type.geometry.TranslationType.Translation;
 import org.openbase.type.kinematics.Posture3DFloatType.Posture3DFloat;
 import org.openbase.type.tracking.TrackedPosture3DFloatType.TrackedPosture3DFloat;
 import org.openbase.type.tracking.TrackedPostures3DFloatType.TrackedPostures3DFloat;
 
 /**
+ * A set of skeletons received from one source or created by the merging at a specific time.
+ * The joints are stored in <code>PackedSkeleton3D</code> objects, the <code>Skeleton3D</code> view and the protobuf
+ * representation are only created if they are requested.
  *
  * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
  */
@@ -38,46 +41,84 @@ public class PostureFrame {
 
     private final long timestamp;
     private final Scope scope;
-    private final TrackedPostures3DFloat postures;
-    private final List<Skeleton3D> joints;
+    private final PackedSkeleton3D[] packedSkeletons;
+    private final int[] jointCounts;
+    private TrackedPostures3DFloat postures;
+    private List<Skeleton3D> joints;
 
     public PostureFrame(final long timestamp, final Scope scope, final TrackedPostures3DFloat postures) {
+        this(timestamp, scope, postures, null);
+        this.postures = postures;
+    }
+
+    /**
+     * Creates a frame from received postures and transforms all positions while decoding them.
+     * The protobuf representation of the transformed postures is only created if <code>getPostures()</code> is called
+     * and does not contain the joint rotations.
+     *
+     * @param timestamp the timestamp of the frame.
+     * @param scope the scope on which the postures were received.
+     * @param postures the received postures.
+     * @param transform row-major 4x4 matrix applied to every position, or null to keep the positions.
+     */
+    public PostureFrame(final long timestamp, final Scope scope, final TrackedPostures3DFloat postures, final double[] transform) {
         this.timestamp = timestamp;
         this.scope = scope;
-        this.postures = postures;
-        this.joints = postures.getPostureList().stream()
-                .map(p -> {
-                    final Iterator<Float> i = p.getConfidenceList().iterator();
-                    // Check whether this works:
-                    return p.getPosture().getPositionList().stream()
-                            .filter(x -> i.hasNext())
-                            .map(pos -> new Joint3D(pos, i.next()))
-                            .collect(Collectors.toCollection(Skeleton3D::new));
-                })
-                .collect(Collectors.toList());
+        final int postureCount = postures.getPostureCount();
+        this.packedSkeletons = new PackedSkeleton3D[postureCount];
+        this.jointCounts = new int[postureCount];
+        for (int i = 0; i < postureCount; i++) {
+            final TrackedPosture3DFloat trackedPosture = postures.getPosture(i);
+            final Posture3DFloat posture = trackedPosture.getPosture();
+            final int jointCount = Math.min(Math.min(posture.getPositionCount(), trackedPosture.getConfidenceCount()), PackedSkeleton3D.JOINT_COUNT);
+            final PackedSkeleton3D packed = new PackedSkeleton3D();
+            for (int j = 0; j < jointCount; j++) {
+                final Translation position = posture.getPosition(j);
+                final double x = position.getX();
+                final double y = position.getY();
+                final double z = position.getZ();
+                if (transform == null) {
+                    packed.setJoint(j, x, y, z, trackedPosture.getConfidence(j));
+                } else if (position.hasX() && position.hasY() && position.hasZ()) {
+                    packed.setJoint(j,
+                            transform[0] * x + transform[1] * y + transform[2] * z + transform[3],
+                            transform[4] * x + transform[5] * y + transform[6] * z + transform[7],
+                            transform[8] * x + transform[9] * y + transform[10] * z + transform[11],
+                            trackedPosture.getConfidence(j));
+                } else {
+                    packed.setJoint(j, 0.0, 0.0, 0.0, trackedPosture.getConfidence(j));
+                }
+            }
+            packedSkeletons[i] = packed;
+            jointCounts[i] = jointCount;
+        }
+    }
+
+    /**
+     * Creates a frame from already decoded skeletons.
+     *
+     * @param timestamp the timestamp of the frame.
+     * @param scope the scope of the source of the frame.
+     * @param packedSkeletons the skeletons, which must not be modified afterwards.
+     * @param jointCounts the number of valid joints of every skeleton.
+     */
+    public PostureFrame(final long timestamp, final Scope scope, final PackedSkeleton3D[] packedSkeletons, final int[] jointCounts) {
+        this.timestamp = timestamp;
+        this.scope = scope;
+        this.packedSkeletons = packedSkeletons;
+        this.jointCounts = jointCounts;
     }
 
     public PostureFrame(final long timestamp, final List<Skeleton3D> joints) {
         this.timestamp = timestamp;
         this.scope = new Scope("/");
         this.joints = joints;
-        this.postures = TrackedPostures3DFloat.newBuilder()
-                .addAllPosture(joints.stream()
-                        .map((Skeleton3D jl)
-                                -> TrackedPosture3DFloat.newBuilder()
-                                .setPosture(Posture3DFloat.newBuilder()
-                                        .addAllPosition(jl.stream()
-                                                .map((Joint3D j) -> j.getTranslation())
-                                                .collect(Collectors.toList())
-                                        )
-                                )
-                                .addAllConfidence(jl.stream()
-                                        .map((Joint3D j) -> (float) j.getConfidence())
-                                        .collect(Collectors.toList())
-                                ).build()
-                        )
-                        .collect(Collectors.toList())
-                ).build();
+        this.packedSkeletons = new PackedSkeleton3D[joints.size()];
+        this.jointCounts = new int[joints.size()];
+        for (int i = 0; i < joints.size(); i++) {
+            packedSkeletons[i] = new PackedSkeleton3D().set(joints.get(i));
+            jointCounts[i] = Math.min(joints.get(i).size(), PackedSkeleton3D.JOINT_COUNT);
+        }
     }
 
     public long getTimestamp() {
@@ -96,11 +137,63 @@ public class PostureFrame {
         return scope;
     }
 
-    public TrackedPostures3DFloat getPostures() {
+    /**
+     * Gets the protobuf representation of this frame. For merged frames it is created on the first call.
+     *
+     * @return the postures of this frame.
+     */
+    public synchronized TrackedPostures3DFloat getPostures() {
+        if (postures == null) {
+            final TrackedPostures3DFloat.Builder posturesBuilder = TrackedPostures3DFloat.newBuilder();
+            for (int i = 0; i < packedSkeletons.length; i++) {
+                final TrackedPosture3DFloat.Builder postureBuilder = posturesBuilder.addPostureBuilder();
+                final Posture3DFloat.Builder positionBuilder = postureBuilder.getPostureBuilder();
+                final PackedSkeleton3D packed = packedSkeletons[i];
+                for (int j = 0; j < jointCounts[i]; j++) {
+                    positionBuilder.addPositionBuilder().setX(packed.getX(j)).setY(packed.getY(j)).setZ(packed.getZ(j));
+                    postureBuilder.addConfidence((float) packed.getConfidence(j));
+                }
+            }
+            postures = posturesBuilder.build();
+        }
         return postures;
     }
 
-    public List<Skeleton3D> getSkeletons() {
+    /**
+     * Gets the skeletons of this frame as <code>Skeleton3D</code> objects, which are created on the first call.
+     *
+     * @return the skeletons of this frame.
+     */
+    public synchronized List<Skeleton3D> getSkeletons() {
+        if (joints == null) {
+            joints = new ArrayList<>(packedSkeletons.length);
+            for (int i = 0; i < packedSkeletons.length; i++) {
+                joints.add(packedSkeletons[i].toSkeleton3D(jointCounts[i]));
+            }
+        }
         return joints;
     }
+
+    public int getSkeletonCount() {
+        return packedSkeletons.length;
+    }
+
+    public int getJointCount(final int index) {
+        return jointCounts[index];
+    }
+
+    public boolean isEmpty(final int index) {
+        return jointCounts[index] == 0;
+    }
+
+    /**
+     * Gets the packed joints of a skeleton of this frame. The returned object is shared and must not be modified, only
+     * the merger stabilizes its merged frames in place before they are published.
+     *
+     * @param index index of the skeleton.
+     * @return the packed skeleton.
+     */
+    public PackedSkeleton3D getPackedSkeleton(final int index) {
+        return packedSkeletons[index];
+    }
 }
@@ -0,0 +1,44 @@
+package org.openbase.bco.psc.sm.merging;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Skeleton Merging
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+/**
+ * An enum of the different ways the merging is timed.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public enum SchedulingMode {
+    /**
+     * Merges at a fixed rate with a millisecond period using a <code>java.util.Timer</code>, which catches up missed runs.
+     */
+    TIMER,
+    /**
+     * Merges at a fixed rate with nanosecond pacing and skips runs that are already missed.
+     */
+    PACED,
+    /**
+     * Merges as soon as all sources delivered a new frame, but at the latest after one period.
+     */
+    EVENT_DRIVEN
+}
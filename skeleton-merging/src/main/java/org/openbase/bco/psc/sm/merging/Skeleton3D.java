@@ -39,6 +39,7 @@ public class Skeleton3D extends ArrayList<Joint3D> {
     private Point3D weightedMean;
     private Point3D mean;
     private double totalConfidence = Double.NaN;
+    private long trackId = -1;
 
     public Skeleton3D() {
         super();
@@ -55,6 +56,19 @@ public class Skeleton3D extends ArrayList<Joint3D> {
         super(other);
     }
 
+    /**
+     * Gets the id of the person this skeleton belongs to.
+     *
+     * @return the track id or -1 if the skeleton is not tracked.
+     */
+    public long getTrackId() {
+        return trackId;
+    }
+
+    public void setTrackId(final long trackId) {
+        this.trackId = trackId;
+    }
+
     public void set(final Joints joint, final Joint3D element) {
         set(joint.getValue(), element);
     }
@@ -95,7 +109,7 @@ public class Skeleton3D extends ArrayList<Joint3D> {
     }
 
     public double getTotalConfidence() {
-        if (totalConfidence == Double.NaN) {
+        if (Double.isNaN(totalConfidence)) {
             createTotalConfidence();
         }
         return totalConfidence;
@@ -24,16 +24,20 @@ package org.openbase.bco.psc.sm.merging;
  */
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
-import javafx.geometry.Point3D;
-import org.openbase.bco.psc.lib.pointing.Joints;
+import java.util.concurrent.atomic.AtomicReference;
+import org.openbase.bco.psc.sm.merging.clustering.AgglomerativeClustering;
+import org.openbase.bco.psc.sm.merging.clustering.DistanceMap;
 import org.openbase.bco.psc.sm.merging.stabilizing.Stabilizer;
 import org.openbase.type.tracking.TrackedPostures3DFloatType.TrackedPostures3DFloat;
+import rsb.Scope;
 
 /**
  *
@@ -43,50 +47,190 @@ public class SkeletonMerger implements SkeletonMergerInterface {
 
     private static final long FRAME_DURATION = 100;
     private static final double MIN_DISTANCE = 0.5;
+    /**
+     * Number of frames kept per source if the temporal alignment is enabled.
+     */
+    private static final int ALIGNMENT_BUFFER_SIZE = 4;
+    /**
+     * Scope of the frames containing the merged postures.
+     */
+    private static final Scope MERGED_SCOPE = new Scope("/");
 
     private final Stabilizer stabilizer;
-    private final HashMap<String, PostureFrame> inputFrames = new HashMap<>();
+    private final PackedSkeleton3DPool pool = new PackedSkeleton3DPool();
+    private final List<PackedSkeleton3D> packedPostures = new ArrayList<>();
+    private final double[] maxConf = new double[PackedSkeleton3D.JOINT_COUNT];
+    private final AssociationType associationType;
+    private final boolean temporalAlignment;
+    private final int bufferSize;
+    private final TrackManager trackManager;
+    /**
+     * Groups of the current merging cycle that kept at least one of their members of the previous cycle.
+     */
+    private final BitSet continuedGroups = new BitSet();
+    private volatile TrackUpdate trackUpdate = TrackUpdate.EMPTY;
+    /**
+     * The latest frames of every source. Sources publish by replacing the content of their slot, so they never wait
+     * for a running merging cycle.
+     */
+    private final ConcurrentHashMap<String, AtomicReference<FrameBuffer>> frameSlots = new ConcurrentHashMap<>();
+    /**
+     * Snapshot of the current frames, only valid during a merging cycle.
+     */
+    private HashMap<String, PostureFrame> inputFrames = new HashMap<>();
     private MergingHistory history;
+    private volatile Runnable updateListener;
     final AtomicInteger lastLostCounter = new AtomicInteger();
     final AtomicInteger lastAddCounter = new AtomicInteger();
 
     public SkeletonMerger(final Stabilizer stabilizer) {
+        this(stabilizer, AssociationType.GREEDY);
+    }
+
+    public SkeletonMerger(final Stabilizer stabilizer, final AssociationType associationType) {
+        this(stabilizer, associationType, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param stabilizer the stabilizer applied to the merged postures.
+     * @param associationType the strategy used to associate the skeletons of different sources.
+     * @param temporalAlignment if true, the frames of all sources are aligned to the mean timestamp of their newest frames
+     * before merging. Sources ahead of it are interpolated, sources behind it are extrapolated. The frame timestamps
+     * should be the sensor timestamps in this case.
+     */
+    public SkeletonMerger(final Stabilizer stabilizer, final AssociationType associationType, final boolean temporalAlignment) {
+        this(stabilizer, associationType, temporalAlignment, new TrackManager());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param stabilizer the stabilizer applied to the merged postures.
+     * @param associationType the strategy used to associate the skeletons of different sources.
+     * @param temporalAlignment if true, the frames of all sources are aligned to the mean timestamp of their newest frames
+     * before merging. Sources ahead of it are interpolated, sources behind it are extrapolated. The frame timestamps
+     * should be the sensor timestamps in this case.
+     * @param trackManager the track manager assigning persistent ids to the merged postures.
+     */
+    public SkeletonMerger(final Stabilizer stabilizer, final AssociationType associationType, final boolean temporalAlignment, final TrackManager trackManager) {
         this.stabilizer = stabilizer;
+        this.trackManager = trackManager;
+        this.associationType = associationType;
+        this.temporalAlignment = temporalAlignment;
+        this.bufferSize = temporalAlignment ? ALIGNMENT_BUFFER_SIZE : 1;
+    }
+
+    @Override
+    public void postureUpdate(final PostureFrame postureFrame) {
+        final long receiveTime = System.currentTimeMillis();
+        AtomicReference<FrameBuffer> slot = frameSlots.get(postureFrame.getKey());
+        if (slot == null) {
+            slot = frameSlots.computeIfAbsent(postureFrame.getKey(), key -> new AtomicReference<>());
+        }
+        if (bufferSize == 1) {
+            slot.set(new FrameBuffer(postureFrame, 1, receiveTime));
+        } else {
+            slot.updateAndGet(buffer -> buffer == null ? new FrameBuffer(postureFrame, bufferSize, receiveTime) : buffer.add(postureFrame, receiveTime));
+        }
+        final Runnable listener = updateListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    @Override
+    public boolean hasNewFrames(final long timestamp) {
+        boolean anyFrame = false;
+        for (final AtomicReference<FrameBuffer> slot : frameSlots.values()) {
+            final FrameBuffer buffer = slot.get();
+            if (buffer != null) {
+                if (buffer.getReceiveTime() <= timestamp) {
+                    return false;
+                }
+                anyFrame = true;
+            }
+        }
+        return anyFrame;
+    }
+
+    @Override
+    public void setUpdateListener(final Runnable listener) {
+        this.updateListener = listener;
+    }
+
+    @Override
+    public TrackUpdate getTrackUpdate() {
+        return trackUpdate;
     }
 
     @Override
-    public synchronized void postureUpdate(final PostureFrame postureFrame) {
-        inputFrames.put(postureFrame.getKey(), postureFrame);
+    public TrackedPostures3DFloat createMergedData() {
+        return createMergedData(System.currentTimeMillis());
     }
 
     @Override
-    public synchronized TrackedPostures3DFloat createMergedData() {
-        final long currentTime = System.currentTimeMillis();
+    public synchronized TrackedPostures3DFloat createMergedData(final long currentTime) {
         lastLostCounter.set(0);
         lastAddCounter.set(0);
+        continuedGroups.clear();
 
-        // Remove too old frames
-        inputFrames.entrySet().removeIf(e -> e.getValue().getAge(currentTime) > FRAME_DURATION);
+        // Take a snapshot of the current frames and remove too old ones. The age is based on the local receive time, as
+        // the frame timestamps may come from differently skewed sensor clocks. The merged frame is always timestamped in
+        // local time, so that the track timeouts and the stabilization see a single clock.
+        final HashMap<String, FrameBuffer> buffers = new HashMap<>();
+        long timestampSum = 0;
+        for (final Map.Entry<String, AtomicReference<FrameBuffer>> entry : frameSlots.entrySet()) {
+            final FrameBuffer buffer = entry.getValue().get();
+            if (buffer == null) {
+                continue;
+            }
+            if (buffer.getAge(currentTime) > FRAME_DURATION) {
+                entry.getValue().compareAndSet(buffer, null);
+            } else {
+                buffers.put(entry.getKey(), buffer);
+                timestampSum += buffer.toLocalTime(buffer.getLatest().getTimestamp());
+            }
+        }
+        final long mergeTime = temporalAlignment && !buffers.isEmpty() ? timestampSum / buffers.size() : currentTime;
+
+        // Align all frames to the mean of the newest timestamps in local time, sources ahead are interpolated and sources
+        // behind are extrapolated. The interpolation of each source uses its own clock.
+        inputFrames = new HashMap<>();
+        for (final Map.Entry<String, FrameBuffer> entry : buffers.entrySet()) {
+            final FrameBuffer buffer = entry.getValue();
+            inputFrames.put(entry.getKey(), temporalAlignment ? buffer.getAligned(buffer.toSourceTime(mergeTime)) : buffer.getLatest());
+        }
 
-        //TODO: Clustering approach where all distances are calculated first and then merging takes place in ascending order (Would probably be more accurate)?! Can use DistanceMap for that.
         // Create groups that belong to a single person based on previous groups
-        final List<HashMap<String, Integer>> postureCollection = collectGroups();
+        final List<HashMap<String, Integer>> postureCollection = associationType == AssociationType.CLUSTERING ? clusterGroups() : collectGroups();
 
         // Merging the collected posture groups to single postures.
-        final List<Skeleton3D> mergedPostures = postureCollection.stream()
-                .map(
-                        map -> mergePostures(map.entrySet().stream()
-                                .map(entry -> inputFrames.get(entry.getKey()).getSkeletons().get(entry.getValue()))
-                                .collect(Collectors.toList()))
-                )
-                .collect(Collectors.toList());
+        final PackedSkeleton3D[] mergedPostures = new PackedSkeleton3D[postureCollection.size()];
+        final int[] jointCounts = new int[postureCollection.size()];
+        for (int i = 0; i < mergedPostures.length; i++) {
+            mergedPostures[i] = mergePostures(postureCollection.get(i));
+            jointCounts[i] = postureCollection.get(i).isEmpty() ? 0 : PackedSkeleton3D.JOINT_COUNT;
+        }
+        final PostureFrame mergedFrame = new PostureFrame(mergeTime, MERGED_SCOPE, mergedPostures, jointCounts);
+
+        // Assigning persistent track ids to the merged postures.
+        trackUpdate = trackManager.update(mergedFrame, continuedGroups);
 
         // Applying a stabilization on the postures.
-        List<Skeleton3D> stabilizedPostures = stabilizer.stabilize(mergedPostures, history);
+        stabilizer.stabilize(mergedFrame, history);
 
-        // Creating the new history object.
-        history = new MergingHistory(new PostureFrame(currentTime, stabilizedPostures), (HashMap<String, PostureFrame>) inputFrames.clone(), postureCollection);
-        return history.getLastResult().getPostures();
+        // Creating the new history object. The merged skeletons of the previous cycle are not used anymore afterwards.
+        final MergingHistory previousHistory = history;
+        history = new MergingHistory(mergedFrame, inputFrames, postureCollection);
+        if (previousHistory != null) {
+            final PostureFrame previousResult = previousHistory.getLastResult();
+            for (int i = 0; i < previousResult.getSkeletonCount(); i++) {
+                pool.release(previousResult.getPackedSkeleton(i));
+            }
+        }
+        return mergedFrame.getPostures();
     }
 
     private List<HashMap<String, Integer>> collectGroups() {
@@ -95,9 +239,14 @@ public class SkeletonMerger implements SkeletonMergerInterface {
         while (historyIterator.hasNext()) {
             final HashMap<String, Integer> map = historyIterator.next();
             if (!map.isEmpty()) {
-                map.entrySet().removeIf(entry -> !inputFrames.containsKey(entry.getKey()) || inputFrames.get(entry.getKey()).getSkeletons().get(entry.getValue()).isEmpty());
+                // Sources may deliver fewer skeletons than in the previous cycle, so the stored indices can be stale.
+                map.entrySet().removeIf(entry -> !inputFrames.containsKey(entry.getKey())
+                        || entry.getValue() >= inputFrames.get(entry.getKey()).getSkeletonCount()
+                        || inputFrames.get(entry.getKey()).isEmpty(entry.getValue()));
                 if (map.isEmpty()) {
                     lastLostCounter.getAndIncrement();
+                } else {
+                    continuedGroups.set(historyIterator.previousIndex());
                 }
             }
             //TODO: remove empty ones in the back...
@@ -109,12 +258,10 @@ public class SkeletonMerger implements SkeletonMergerInterface {
 
         // Collect skeletons with low distance in groups.
         inputFrames.entrySet().stream().forEach(entry -> {
-            final ListIterator<Skeleton3D> postureIterator = entry.getValue().getSkeletons().listIterator();
-            while (postureIterator.hasNext()) {
-                final int postureIndex = postureIterator.nextIndex();
-                final Skeleton3D posture = postureIterator.next();
-                if (!posture.isEmpty()) {
-                    if (placeInList(entry.getKey(), postureIndex, posture, postureCollection, firstEmpty)) {
+            final PostureFrame frame = entry.getValue();
+            for (int postureIndex = 0; postureIndex < frame.getSkeletonCount(); postureIndex++) {
+                if (!frame.isEmpty(postureIndex)) {
+                    if (placeInList(entry.getKey(), postureIndex, frame.getPackedSkeleton(postureIndex), postureCollection, firstEmpty)) {
                         lastAddCounter.getAndIncrement();
                     }
 //                        placeInList2(entry.getKey(), index, p, firstCollection);
@@ -124,47 +271,120 @@ public class SkeletonMerger implements SkeletonMergerInterface {
         return postureCollection;
     }
 
-    private Skeleton3D mergePostures(final List<Skeleton3D> postures) {
+    private List<HashMap<String, Integer>> clusterGroups() {
+        final DistanceMap distanceMap = new DistanceMap(inputFrames);
+        final List<int[]> clusters = AgglomerativeClustering.cluster(distanceMap, MIN_DISTANCE);
+        final List<HashMap<String, Integer>> previousCollection = history != null ? history.getConnections() : Collections.emptyList();
+
+        // Keep the group index of the previous frame for every cluster that still contains one of its skeletons.
+        final List<HashMap<String, Integer>> postureCollection = new ArrayList<>(Math.max(previousCollection.size(), clusters.size()));
+        for (int i = 0; i < previousCollection.size(); i++) {
+            postureCollection.add(new HashMap<>());
+        }
+        final List<int[]> newClusters = new ArrayList<>();
+        for (final int[] cluster : clusters) {
+            final int groupIndex = previousGroup(cluster, distanceMap, previousCollection, postureCollection);
+            if (groupIndex < 0) {
+                newClusters.add(cluster);
+            } else {
+                fillGroup(postureCollection.get(groupIndex), cluster, distanceMap);
+                continuedGroups.set(groupIndex);
+            }
+        }
+        for (int i = 0; i < previousCollection.size(); i++) {
+            if (!previousCollection.get(i).isEmpty() && postureCollection.get(i).isEmpty()) {
+                lastLostCounter.getAndIncrement();
+            }
+        }
+
+        // Place the remaining clusters in free groups.
+        final AtomicInteger firstEmpty = new AtomicInteger();
+        for (final int[] cluster : newClusters) {
+            nextEmpty(firstEmpty, postureCollection);
+            if (firstEmpty.get() == postureCollection.size()) {
+                postureCollection.add(new HashMap<>());
+            }
+            fillGroup(postureCollection.get(firstEmpty.getAndIncrement()), cluster, distanceMap);
+            lastAddCounter.getAndIncrement();
+        }
+        return postureCollection;
+    }
+
+    private int previousGroup(final int[] cluster, final DistanceMap distanceMap, final List<HashMap<String, Integer>> previousCollection, final List<HashMap<String, Integer>> postureCollection) {
+        for (final int member : cluster) {
+            final String key = distanceMap.getKey(member);
+            for (int i = 0; i < previousCollection.size(); i++) {
+                final Integer previousIndex = previousCollection.get(i).get(key);
+                if (previousIndex != null && previousIndex == distanceMap.getPostureIndex(member) && postureCollection.get(i).isEmpty()) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void fillGroup(final HashMap<String, Integer> group, final int[] cluster, final DistanceMap distanceMap) {
+        for (final int member : cluster) {
+            group.put(distanceMap.getKey(member), distanceMap.getPostureIndex(member));
+        }
+    }
+
+    private PackedSkeleton3D mergePostures(final Map<String, Integer> group) {
+        final PackedSkeleton3D merged = pool.acquire().clear();
+        // Groups of lost persons stay in place to keep the indices of the others stable.
+        if (group.isEmpty()) {
+            return merged;
+        }
+
         // Use the posture with the highest confidence as base.
-        Collections.sort(postures, (s1, s2) -> Double.compare(s2.getTotalConfidence(), s1.getTotalConfidence()));
-        final Skeleton3D basePosture = postures.get(0);
-
-        final Point3D[] points = new Point3D[Joints.values().length];
-        Arrays.fill(points, Point3D.ZERO);
-        final double[] totalConf = new double[Joints.values().length];
-        Arrays.fill(totalConf, 0.0);
-        final double[] maxConf = new double[Joints.values().length];
+        packedPostures.clear();
+        PackedSkeleton3D basePosture = null;
+        double maxTotalConfidence = Double.NEGATIVE_INFINITY;
+        for (final Map.Entry<String, Integer> entry : group.entrySet()) {
+            final PackedSkeleton3D packed = inputFrames.get(entry.getKey()).getPackedSkeleton(entry.getValue());
+            packedPostures.add(packed);
+            final double totalConfidence = packed.getTotalConfidence();
+            if (totalConfidence > maxTotalConfidence) {
+                maxTotalConfidence = totalConfidence;
+                basePosture = packed;
+            }
+        }
+
+        final double[] sums = merged.getData();
         Arrays.fill(maxConf, 0.0);
 
-        final AtomicInteger mirrorCount = new AtomicInteger();
+        int mirrorCount = 0;
         // TODO: This needs to be done in a better way:
-        postures.forEach((p) -> {
+        for (final PackedSkeleton3D p : packedPostures) {
             // If the distance for the mirrored posture is smaller, use the mirrored one.
             final boolean mirrored = basePosture.jointDistance(p, true) < basePosture.jointDistance(p, false);
             if (mirrored) {
-                mirrorCount.getAndIncrement();
-            }
-            for (Joints joint : Joints.values()) {
-                final int jointIndex = joint.getValue();
-                final Joint3D currentJoint = p.get(joint, mirrored);
-                final double confidence = currentJoint.getConfidence() == 1.0 ? 1.0 : 0.25;
-                points[jointIndex] = points[jointIndex].add(currentJoint.getPosition().multiply(confidence));
-                totalConf[jointIndex] += confidence;
+                mirrorCount++;
+            }
+            for (int jointIndex = 0; jointIndex < PackedSkeleton3D.JOINT_COUNT; jointIndex++) {
+                final int sourceIndex = mirrored ? PackedSkeleton3D.mirroredJoint(jointIndex) : jointIndex;
+                final double confidence = p.getConfidence(sourceIndex) == 1.0 ? 1.0 : 0.25;
+                final int offset = jointIndex * PackedSkeleton3D.STRIDE;
+                sums[offset] += p.getX(sourceIndex) * confidence;
+                sums[offset + 1] += p.getY(sourceIndex) * confidence;
+                sums[offset + 2] += p.getZ(sourceIndex) * confidence;
+                // The confidence slot accumulates the total confidence until the positions are normalized.
+                sums[offset + 3] += confidence;
                 maxConf[jointIndex] = Double.max(maxConf[jointIndex], confidence);
             }
-        });
-
-        // TODO: So does this:
-        final Skeleton3D skeleton = new Skeleton3D();
-        for (int i = 0; i < points.length; i++) {
-            skeleton.add(new Joint3D(points[i].multiply(1.0 / totalConf[i]), maxConf[i]));
+        }
+        for (int jointIndex = 0; jointIndex < PackedSkeleton3D.JOINT_COUNT; jointIndex++) {
+            final int offset = jointIndex * PackedSkeleton3D.STRIDE;
+            final double factor = 1.0 / sums[offset + 3];
+            merged.setJoint(jointIndex, sums[offset] * factor, sums[offset + 1] * factor, sums[offset + 2] * factor, maxConf[jointIndex]);
         }
 
         // Mirror the skeleton if most of the input would suggest it.
-        if (mirrorCount.get() > postures.size() / 2) {
-            return skeleton.mirrored();
+        if (mirrorCount > packedPostures.size() / 2) {
+            merged.mirror();
         }
-        return skeleton;
+        packedPostures.clear();
+        return merged;
     }
 
     private <K, V> void nextEmpty(final AtomicInteger emptyIndex, final List<HashMap<K, V>> list) {
@@ -173,7 +393,7 @@ public class SkeletonMerger implements SkeletonMergerInterface {
         }
     }
 
-    private boolean placeInList(final String inputKey, final int postureIndex, final Skeleton3D posture, final List<HashMap<String, Integer>> list, final AtomicInteger firstEmpty) {
+    private boolean placeInList(final String inputKey, final int postureIndex, final PackedSkeleton3D posture, final List<HashMap<String, Integer>> list, final AtomicInteger firstEmpty) {
         final ListIterator<HashMap<String, Integer>> listIterator = list.listIterator();
         double minDistance = Double.MAX_VALUE;
         int minIndex = -1;
@@ -210,9 +430,9 @@ public class SkeletonMerger implements SkeletonMergerInterface {
         }
     }
 
-    private double maxDistance(final Skeleton3D posture, final HashMap<String, Integer> indexMap) {
+    private double maxDistance(final PackedSkeleton3D posture, final HashMap<String, Integer> indexMap) {
         return indexMap.entrySet().stream()
-                .mapToDouble(e -> posture.distance(inputFrames.get(e.getKey()).getSkeletons().get(e.getValue())))
+                .mapToDouble(e -> posture.distance(inputFrames.get(e.getKey()).getPackedSkeleton(e.getValue())))
                 .max()
                 .orElse(Double.MAX_VALUE);
     }
@@ -33,4 +33,34 @@ public interface SkeletonMergerInterface {
     void postureUpdate(final PostureFrame postureFrame);
 
     TrackedPostures3DFloat createMergedData();
+
+    /**
+     * Merges the current frames for the given point in time.
+     *
+     * @param timestamp the time in milliseconds for which the merged data is created.
+     * @return the merged postures.
+     */
+    TrackedPostures3DFloat createMergedData(final long timestamp);
+
+    /**
+     * Checks whether every source with a current frame has delivered a frame after <code>timestamp</code>.
+     *
+     * @param timestamp the local time in milliseconds the receive times of the frames are compared to.
+     * @return true if no source has to deliver a new frame anymore.
+     */
+    boolean hasNewFrames(final long timestamp);
+
+    /**
+     * Gets the track ids of the postures created by the last call of <code>createMergedData</code>.
+     *
+     * @return the track ids and the tracks that were created or retired in the last merging cycle.
+     */
+    TrackUpdate getTrackUpdate();
+
+    /**
+     * Sets a listener that is called after every posture update.
+     *
+     * @param listener the listener or null to remove it.
+     */
+    void setUpdateListener(final Runnable listener);
 }
@@ -0,0 +1,202 @@
+package org.openbase.bco.psc.sm.merging;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Skeleton Merging
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Assigns persistent track ids to the merged skeletons. A skeleton that stays in the same merging group keeps its
+ * track if the group kept one of its previous members or did not move further than the maximal distance. Otherwise it resumes the closest track that was not seen recently, or a new track with the next id is
+ * created. Tracks that were not seen for longer than the timeout are retired.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class TrackManager {
+
+    /**
+     * Default time in milliseconds after which an unseen track is retired.
+     */
+    public static final long DEFAULT_TIMEOUT = 1000;
+    /**
+     * Default maximal distance in meters between the last position of a track and a skeleton resuming it.
+     */
+    public static final double DEFAULT_MAX_DISTANCE = 0.5;
+
+    private final long timeout;
+    private final double maxDistance;
+    private final LinkedHashMap<Long, Track> tracks = new LinkedHashMap<>();
+    /**
+     * Track id of every group in the previous update, -1 for empty groups.
+     */
+    private long[] groupTracks = new long[0];
+    /**
+     * Mean position of the skeleton that is currently processed.
+     */
+    private final double[] mean = new double[3];
+    private long nextId;
+
+    /**
+     * Constructor using the default timeout and distance.
+     */
+    public TrackManager() {
+        this(DEFAULT_TIMEOUT, DEFAULT_MAX_DISTANCE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param timeout time in milliseconds after which an unseen track is retired.
+     * @param maxDistance maximal distance in meters between the last position of a track and a skeleton resuming it.
+     */
+    public TrackManager(final long timeout, final double maxDistance) {
+        this.timeout = timeout;
+        this.maxDistance = maxDistance;
+    }
+
+    /**
+     * Assigns track ids to the merged skeletons using only their distance to the previous groups.
+     *
+     * @param mergedFrame the merged skeletons, one per merging group. Its timestamp is the time of the merging cycle
+     * in milliseconds.
+     * @return the assigned ids and the created and retired tracks.
+     * @see #update(PostureFrame, BitSet)
+     */
+    public TrackUpdate update(final PostureFrame mergedFrame) {
+        return update(mergedFrame, null);
+    }
+
+    /**
+     * Assigns track ids to the merged skeletons and sets them via <code>PackedSkeleton3D.setTrackId</code>.
+     *
+     * @param mergedFrame the merged skeletons, one per merging group. Its timestamp is the time of the merging cycle
+     * in milliseconds.
+     * @param continuedGroups the groups that kept at least one of their members of the previous cycle, or null if
+     * unknown. The other groups only continue their track if they stayed within the maximal distance, because their
+     * slot may have been vacated and refilled by another person.
+     * @return the assigned ids and the created and retired tracks.
+     */
+    public synchronized TrackUpdate update(final PostureFrame mergedFrame, final BitSet continuedGroups) {
+        final long timestamp = mergedFrame.getTimestamp();
+        final long[] trackIds = new long[mergedFrame.getSkeletonCount()];
+        Arrays.fill(trackIds, -1);
+        for (final Track track : tracks.values()) {
+            track.assigned = false;
+        }
+
+        // Skeletons staying in their group continue the track of the group.
+        for (int i = 0; i < trackIds.length && i < groupTracks.length; i++) {
+            if (groupTracks[i] >= 0 && !mergedFrame.isEmpty(i)) {
+                final Track track = tracks.get(groupTracks[i]);
+                if (track == null) {
+                    continue;
+                }
+                mergedFrame.getPackedSkeleton(i).getMean(mean);
+                if ((continuedGroups != null && continuedGroups.get(i)) || track.distance(mean) < maxDistance) {
+                    assign(track, mean, timestamp);
+                    trackIds[i] = track.id;
+                }
+            }
+        }
+
+        // All other skeletons resume the closest unseen track or open a new one.
+        long[] newTracks = new long[0];
+        for (int i = 0; i < trackIds.length; i++) {
+            if (trackIds[i] >= 0 || mergedFrame.isEmpty(i)) {
+                continue;
+            }
+            mergedFrame.getPackedSkeleton(i).getMean(mean);
+            Track closest = null;
+            double closestDistance = maxDistance;
+            for (final Track track : tracks.values()) {
+                if (!track.assigned) {
+                    final double distance = track.distance(mean);
+                    if (distance < closestDistance) {
+                        closestDistance = distance;
+                        closest = track;
+                    }
+                }
+            }
+            if (closest == null) {
+                closest = new Track(nextId++);
+                tracks.put(closest.id, closest);
+                newTracks = append(newTracks, closest.id);
+            }
+            assign(closest, mean, timestamp);
+            trackIds[i] = closest.id;
+        }
+
+        // Retire the tracks that were not seen for too long.
+        long[] lostTracks = new long[0];
+        final Iterator<Track> it = tracks.values().iterator();
+        while (it.hasNext()) {
+            final Track track = it.next();
+            if (!track.assigned && timestamp - track.lastSeen > timeout) {
+                lostTracks = append(lostTracks, track.id);
+                it.remove();
+            }
+        }
+
+        for (int i = 0; i < trackIds.length; i++) {
+            mergedFrame.getPackedSkeleton(i).setTrackId(trackIds[i]);
+        }
+        groupTracks = trackIds;
+        return new TrackUpdate(trackIds.clone(), newTracks, lostTracks);
+    }
+
+    private static void assign(final Track track, final double[] position, final long timestamp) {
+        track.assigned = true;
+        System.arraycopy(position, 0, track.position, 0, 3);
+        track.lastSeen = timestamp;
+    }
+
+    private static long[] append(final long[] array, final long value) {
+        final long[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = value;
+        return result;
+    }
+
+    /**
+     * State of a single track.
+     */
+    private static class Track {
+
+        private final long id;
+        private final double[] position = new double[3];
+        private long lastSeen;
+        private boolean assigned;
+
+        private Track(final long id) {
+            this.id = id;
+        }
+
+        private double distance(final double[] other) {
+            final double dx = position[0] - other[0];
+            final double dy = position[1] - other[1];
+            final double dz = position[2] - other[2];
+            return Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.openbase.bco.psc.sm.merging;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Skeleton Merging
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+/**
+ * The result of a single update of the <code>TrackManager</code>.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class TrackUpdate {
+
+    /**
+     * Update without any tracks.
+     */
+    public static final TrackUpdate EMPTY = new TrackUpdate(new long[0], new long[0], new long[0]);
+
+    private final long[] trackIds;
+    private final long[] newTracks;
+    private final long[] lostTracks;
+
+    /**
+     * Constructor.
+     *
+     * @param trackIds the track id of every merged posture in the order of the postures, -1 for empty postures.
+     * @param newTracks the ids of the tracks that were created in this update.
+     * @param lostTracks the ids of the tracks that were retired in this update.
+     */
+    public TrackUpdate(final long[] trackIds, final long[] newTracks, final long[] lostTracks) {
+        this.trackIds = trackIds;
+        this.newTracks = newTracks;
+        this.lostTracks = lostTracks;
+    }
+
+    /**
+     * Gets the track id of every merged posture in the order of the postures. Empty postures have the id -1.
+     *
+     * @return the track ids, which must not be modified.
+     */
+    public long[] getTrackIds() {
+        return trackIds;
+    }
+
+    /**
+     * Gets the ids of the tracks that were created in this update.
+     *
+     * @return the new track ids, which must not be modified.
+     */
+    public long[] getNewTracks() {
+        return newTracks;
+    }
+
+    /**
+     * Gets the ids of the tracks that were retired in this update.
+     *
+     * @return the lost track ids, which must not be modified.
+     */
+    public long[] getLostTracks() {
+        return lostTracks;
+    }
+
+    /**
+     * Checks whether tracks were created or retired in this update.
+     *
+     * @return true if the set of tracks changed.
+     */
+    public boolean hasChanges() {
+        return newTracks.length != 0 || lostTracks.length != 0;
+    }
+}
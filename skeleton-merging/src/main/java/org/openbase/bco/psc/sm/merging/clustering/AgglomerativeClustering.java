@@ -0,0 +1,104 @@
+package org.openbase.bco.psc.sm.merging.clustering;
+
+/*-
+ * #%L
+ * BCO PSC Skeleton Merging
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Complete-linkage agglomerative clustering of the skeletons in a <code>DistanceMap</code>.
+ * Skeleton pairs are processed in ascending order of their distance and two clusters are only joined if all of
+ * their members are closer than the maximal distance. As skeletons of the same source have the maximal possible
+ * distance, every resulting cluster contains at most one skeleton per source.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class AgglomerativeClustering {
+
+    /**
+     * Private constructor to avoid instantiation of this utility class.
+     */
+    private AgglomerativeClustering() {
+    }
+
+    /**
+     * Clusters the skeletons of <code>distanceMap</code>.
+     *
+     * @param distanceMap the distances of the skeletons to be clustered.
+     * @param maxDistance the exclusive upper bound of distances between members of the same cluster.
+     * @return the clusters, each containing the running indices of its skeletons.
+     */
+    public static List<int[]> cluster(final DistanceMap distanceMap, final double maxDistance) {
+        final int size = distanceMap.size();
+        // Every cluster is a linked list of its members, identified by its first member.
+        final int[] root = new int[size];
+        final int[] next = new int[size];
+        final int[] tail = new int[size];
+        final int[] clusterSize = new int[size];
+        for (int i = 0; i < size; i++) {
+            root[i] = i;
+            next[i] = -1;
+            tail[i] = i;
+            clusterSize[i] = 1;
+        }
+
+        for (final int pair : distanceMap.sortedPairs(maxDistance)) {
+            final int first = root[pair / size];
+            final int second = root[pair % size];
+            if (first == second || !linkable(distanceMap, first, second, next, maxDistance)) {
+                continue;
+            }
+            for (int member = second; member != -1; member = next[member]) {
+                root[member] = first;
+            }
+            next[tail[first]] = second;
+            tail[first] = tail[second];
+            clusterSize[first] += clusterSize[second];
+        }
+
+        final List<int[]> clusters = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (root[i] == i) {
+                final int[] cluster = new int[clusterSize[i]];
+                int index = 0;
+                for (int member = i; member != -1; member = next[member]) {
+                    cluster[index++] = member;
+                }
+                clusters.add(cluster);
+            }
+        }
+        return clusters;
+    }
+
+    private static boolean linkable(final DistanceMap distanceMap, final int first, final int second, final int[] next, final double maxDistance) {
+        for (int a = first; a != -1; a = next[a]) {
+            for (int b = second; b != -1; b = next[b]) {
+                if (!(distanceMap.getDistance(a, b) < maxDistance)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -22,56 +22,173 @@ package org.openbase.bco.psc.sm.merging.clustering;
  * #L%
  */
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import javafx.util.Pair;
+import java.util.Arrays;
+import java.util.Map;
+import org.openbase.bco.psc.sm.merging.PackedSkeleton3D;
 import org.openbase.bco.psc.sm.merging.PostureFrame;
-import org.openbase.bco.psc.sm.merging.Skeleton3D;
 
 /**
+ * Holds the pairwise distances of all non-empty skeletons of a merging frame in a flat primitive matrix.
+ * Skeletons are addressed by a running index that is assigned in the iteration order of the input frames.
+ * Pairs of skeletons coming from the same source can never belong to the same person and get the distance
+ * <code>Double.MAX_VALUE</code>.
  *
  * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
  */
 public class DistanceMap {
 
-    private final Double[][] distances;
-    private final List<Pair<String, Integer>> orderedIndices;
-    private final HashMap<String, List<Integer>> indexMap = new HashMap<>();
+    private final int size;
+    private final double[] distances;
+    private final String[] keys;
+    private final int[] sources;
+    private final int[] postureIndices;
+    private final PackedSkeleton3D[] skeletons;
 
-    public DistanceMap(HashMap<String, PostureFrame> inputFrames) {
-        AtomicInteger index = new AtomicInteger();
-        orderedIndices = inputFrames.entrySet().stream()
-                .map(e -> {
-                    indexMap.put(e.getKey(), new ArrayList<>());
-                    return IntStream.range(0, e.getValue().getSkeletons().size())
-                            .mapToObj(i -> {
-                                indexMap.get(e.getKey()).add(index.getAndIncrement());
-                                return new Pair<>(e.getKey(), i);
-                            })
-                            .collect(Collectors.toList());
-                })
-                .flatMap(List::stream)
-                .collect(Collectors.toList());
-        distances = new Double[orderedIndices.size()][orderedIndices.size()];
-        for (int i = 0; i < orderedIndices.size(); i++) {
-            for (int j = i + 1; j < orderedIndices.size(); j++) {
-                final Pair<String, Integer> index1 = orderedIndices.get(i);
-                final Pair<String, Integer> index2 = orderedIndices.get(j);
-                final Skeleton3D skeleton1 = inputFrames.get(index1.getKey()).getSkeletons().get(index1.getValue());
-                final Skeleton3D skeleton2 = inputFrames.get(index2.getKey()).getSkeletons().get(index2.getValue());
-                if (index1.getKey().equals(index2.getKey()) || skeleton1.isEmpty() || skeleton2.isEmpty()) {
-                    distances[i][j] = Double.MAX_VALUE;
-                } else {
-                    distances[i][j] = skeleton1.distance(skeleton2);
+    public DistanceMap(final Map<String, PostureFrame> inputFrames) {
+        int count = 0;
+        for (final PostureFrame frame : inputFrames.values()) {
+            for (int i = 0; i < frame.getSkeletonCount(); i++) {
+                if (!frame.isEmpty(i)) {
+                    count++;
                 }
-                distances[j][i] = distances[i][j];
             }
-            distances[i][i] = 0.0;
         }
+        size = count;
+        keys = new String[size];
+        sources = new int[size];
+        postureIndices = new int[size];
+        skeletons = new PackedSkeleton3D[size];
+
+        int index = 0;
+        int source = 0;
+        for (final Map.Entry<String, PostureFrame> entry : inputFrames.entrySet()) {
+            final PostureFrame frame = entry.getValue();
+            for (int i = 0; i < frame.getSkeletonCount(); i++) {
+                if (!frame.isEmpty(i)) {
+                    keys[index] = entry.getKey();
+                    sources[index] = source;
+                    postureIndices[index] = i;
+                    skeletons[index] = frame.getPackedSkeleton(i);
+                    index++;
+                }
+            }
+            source++;
+        }
+
+        distances = new double[size * size];
+        for (int i = 0; i < size; i++) {
+            distances[i * size + i] = 0.0;
+            for (int j = i + 1; j < size; j++) {
+                final double distance = sources[i] == sources[j] ? Double.MAX_VALUE : skeletons[i].distance(skeletons[j]);
+                distances[i * size + j] = distance;
+                distances[j * size + i] = distance;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of skeletons contained in this map.
+     *
+     * @return the number of skeletons.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the distance between the skeletons with the running indices <code>i</code> and <code>j</code>.
+     *
+     * @param i index of the first skeleton.
+     * @param j index of the second skeleton.
+     * @return the distance, <code>Double.MAX_VALUE</code> if both skeletons come from the same source.
+     */
+    public double getDistance(final int i, final int j) {
+        return distances[i * size + j];
+    }
+
+    /**
+     * Gets the key of the input frame the skeleton with running index <code>i</code> belongs to.
+     *
+     * @param i index of the skeleton.
+     * @return the input frame key.
+     */
+    public String getKey(final int i) {
+        return keys[i];
+    }
+
+    /**
+     * Gets a number identifying the input frame of the skeleton with running index <code>i</code>.
+     *
+     * @param i index of the skeleton.
+     * @return the source number.
+     */
+    public int getSource(final int i) {
+        return sources[i];
+    }
+
+    /**
+     * Gets the index of the skeleton with running index <code>i</code> inside its input frame.
+     *
+     * @param i index of the skeleton.
+     * @return the index inside the input frame.
+     */
+    public int getPostureIndex(final int i) {
+        return postureIndices[i];
+    }
+
+    /**
+     * Gets the skeleton with running index <code>i</code>.
+     *
+     * @param i index of the skeleton.
+     * @return the skeleton.
+     */
+    public PackedSkeleton3D getSkeleton(final int i) {
+        return skeletons[i];
+    }
+
+    /**
+     * Looks up the running index of a skeleton.
+     *
+     * @param key key of the input frame.
+     * @param postureIndex index of the skeleton inside the input frame.
+     * @return the running index or -1 if the skeleton is not contained.
+     */
+    public int indexOf(final String key, final int postureIndex) {
+        for (int i = 0; i < size; i++) {
+            if (postureIndices[i] == postureIndex && keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
     }
 
+    /**
+     * Gets the indices of all skeleton pairs coming from different sources whose distance is below <code>maxDistance</code>,
+     * sorted by ascending distance in float precision. Each pair is encoded as <code>i * size() + j</code> with
+     * <code>i &lt; j</code>.
+     *
+     * @param maxDistance the exclusive upper bound of the distances.
+     * @return the encoded pair indices.
+     */
+    public int[] sortedPairs(final double maxDistance) {
+        final long[] pairs = new long[size * (size - 1) / 2];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = i + 1; j < size; j++) {
+                final double distance = distances[i * size + j];
+                if (distance < maxDistance) {
+                    // The distance is rounded to float precision, so that its bits fit into the upper half of the sort key.
+                    // Non-negative floats keep their order when compared by their raw bits, pairs with distances that are
+                    // equal in float precision are ordered by their index.
+                    pairs[count++] = ((long) Float.floatToIntBits((float) distance) << 32) | (i * size + j);
+                }
+            }
+        }
+        Arrays.sort(pairs, 0, count);
+        final int[] result = new int[count];
+        for (int k = 0; k < count; k++) {
+            result[k] = (int) pairs[k];
+        }
+        return result;
+    }
 }
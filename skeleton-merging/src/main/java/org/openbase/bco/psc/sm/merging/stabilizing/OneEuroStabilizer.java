@@ -0,0 +1,138 @@
+package org.openbase.bco.psc.sm.merging.stabilizing;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Skeleton Merging
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.Arrays;
+import java.util.HashMap;
+import org.openbase.bco.psc.sm.merging.MergingHistory;
+import org.openbase.bco.psc.sm.merging.PackedSkeleton3D;
+import org.openbase.bco.psc.sm.merging.PostureFrame;
+
+/**
+ * Stabilizer applying a One-Euro filter to every joint coordinate. The filter smoothes strongly while a joint is
+ * resting and reduces the smoothing with increasing speed, which avoids the lag of a fixed exponential smoothing.
+ * Skeletons are matched with the previous cycle by their track id.
+ * See: Casiez et al., "1 € Filter: A Simple Speed-based Low-pass Filter for Noisy Input in Interactive Systems", CHI 2012.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class OneEuroStabilizer implements Stabilizer {
+
+    /**
+     * Default minimal cutoff frequency in Hz, used while a joint is resting.
+     */
+    public static final double DEFAULT_MIN_CUTOFF = 1.0;
+    /**
+     * Default increase of the cutoff frequency in Hz per meter per second of joint speed.
+     */
+    public static final double DEFAULT_BETA = 5.0;
+    /**
+     * Cutoff frequency in Hz used to smooth the joint speed.
+     */
+    private static final double DERIVATIVE_CUTOFF = 1.0;
+    /**
+     * Time step in seconds used if two cycles have the same timestamp.
+     */
+    private static final double DEFAULT_TIME_STEP = 1.0 / 30.0;
+    private static final int VALUE_COUNT = PackedSkeleton3D.JOINT_COUNT * 3;
+
+    private final double minCutoff;
+    private final double beta;
+    private final HashMap<Long, TrackState> tracks = new HashMap<>();
+    private long cycle;
+
+    public OneEuroStabilizer() {
+        this(DEFAULT_MIN_CUTOFF, DEFAULT_BETA);
+    }
+
+    public OneEuroStabilizer(final double minCutoff, final double beta) {
+        this.minCutoff = minCutoff;
+        this.beta = beta;
+    }
+
+    @Override
+    public void stabilize(final PostureFrame mergedFrame, final MergingHistory history) {
+        cycle++;
+        final long timestamp = mergedFrame.getTimestamp();
+        for (int i = 0; i < mergedFrame.getSkeletonCount(); i++) {
+            final PackedSkeleton3D packed = mergedFrame.getPackedSkeleton(i);
+            if (mergedFrame.isEmpty(i) || packed.getTrackId() < 0) {
+                continue;
+            }
+            TrackState state = tracks.get(packed.getTrackId());
+            if (state == null) {
+                state = new TrackState();
+                tracks.put(packed.getTrackId(), state);
+                state.reset(packed, timestamp);
+            } else {
+                state.filter(packed, timestamp);
+            }
+            state.cycle = cycle;
+        }
+        // Forget the tracks that were not continued.
+        tracks.values().removeIf(state -> state.cycle != cycle);
+    }
+
+    private static double alpha(final double cutoff, final double timeStep) {
+        final double tau = 1.0 / (2.0 * Math.PI * cutoff);
+        return 1.0 / (1.0 + tau / timeStep);
+    }
+
+    /**
+     * Filter state of a single track.
+     */
+    private class TrackState {
+
+        private final double[] values = new double[VALUE_COUNT];
+        private final double[] derivatives = new double[VALUE_COUNT];
+        private long timestamp;
+        private long cycle;
+
+        private void reset(final PackedSkeleton3D skeleton, final long timestamp) {
+            final double[] data = skeleton.getData();
+            for (int joint = 0; joint < PackedSkeleton3D.JOINT_COUNT; joint++) {
+                System.arraycopy(data, joint * PackedSkeleton3D.STRIDE, values, joint * 3, 3);
+            }
+            Arrays.fill(derivatives, 0.0);
+            this.timestamp = timestamp;
+        }
+
+        private void filter(final PackedSkeleton3D skeleton, final long timestamp) {
+            final double timeStep = timestamp > this.timestamp ? (timestamp - this.timestamp) / 1000.0 : DEFAULT_TIME_STEP;
+            final double derivativeAlpha = alpha(DERIVATIVE_CUTOFF, timeStep);
+            final double[] data = skeleton.getData();
+            for (int joint = 0; joint < PackedSkeleton3D.JOINT_COUNT; joint++) {
+                for (int k = 0; k < 3; k++) {
+                    final int index = joint * 3 + k;
+                    final int dataIndex = joint * PackedSkeleton3D.STRIDE + k;
+                    final double derivative = (data[dataIndex] - values[index]) / timeStep;
+                    derivatives[index] += derivativeAlpha * (derivative - derivatives[index]);
+                    final double cutoff = minCutoff + beta * Math.abs(derivatives[index]);
+                    values[index] += alpha(cutoff, timeStep) * (data[dataIndex] - values[index]);
+                    data[dataIndex] = values[index];
+                }
+            }
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -22,9 +22,8 @@ package org.openbase.bco.psc.sm.merging.stabilizing;
  * #L%
  */
 
-import java.util.List;
 import org.openbase.bco.psc.sm.merging.MergingHistory;
-import org.openbase.bco.psc.sm.merging.Skeleton3D;
+import org.openbase.bco.psc.sm.merging.PostureFrame;
 
 /**
  *
@@ -32,5 +31,13 @@ import org.openbase.bco.psc.sm.merging.Skeleton3D;
  */
 public interface Stabilizer {
 
-    List<Skeleton3D> stabilize(final List<Skeleton3D> mergedPostures, final MergingHistory history);
+    /**
+     * Stabilizes the merged postures in place. The packed skeletons of <code>mergedFrame</code> are modified directly,
+     * so this has to happen before the frame is published.
+     *
+     * @param mergedFrame the merged postures of the current cycle, one skeleton per merging group. The track ids are
+     * already assigned and the timestamp is the time the merged postures belong to.
+     * @param history the history of the previous merging cycle, may be null.
+     */
+    void stabilize(final PostureFrame mergedFrame, final MergingHistory history);
 }
@@ -22,11 +22,8 @@ package org.openbase.bco.psc.sm.merging.stabilizing;
  * <http://www.gnu.org/licenses/gpl-3.0.html>.
  * #L%
  */
-import java.util.List;
-import java.util.ListIterator;
-import java.util.stream.Collectors;
 import org.openbase.bco.psc.sm.merging.MergingHistory;
-import org.openbase.bco.psc.sm.merging.Skeleton3D;
+import org.openbase.bco.psc.sm.merging.PostureFrame;
 
 /**
  *
@@ -43,30 +40,18 @@ public class StabilizerImpl implements Stabilizer {
     }
 
     @Override
-    public List<Skeleton3D> stabilize(final List<Skeleton3D> mergedPostures, final MergingHistory history) {
-        final ListIterator<Skeleton3D> oldIterator = history.getLastResult().getSkeletons().listIterator();
-
-        return mergedPostures.stream()
-                .map(s -> {
-                    if (oldIterator.hasNext()) {
-                        final Skeleton3D old = oldIterator.next();
-                        if (old.isEmpty()) {
-                            return s;
-                        }
-
-                        // TODO: test this agains the next:
-//                        ListIterator<Joint3D> oldSkeletonIter = old.listIterator();
-//                        return new Skeleton3D(s.stream()
-//                                .map(j -> {
-//                                    final Joint3D j2 = oldSkeletonIter.next();
-//                                    return new Joint3D(j.getPosition().multiply(remainingFactor).add(j2.getPosition().multiply(stabilizationFactor)), j.getConfidence());
-//                                })
-//                                .collect(Collectors.toList())
-//                        );
-                        return s.multiply(remainingFactor).addPositions(old.multiply(stabilizationFactor));
-                    }
-                    return s;
-                })
-                .collect(Collectors.toList());
+    public void stabilize(final PostureFrame mergedFrame, final MergingHistory history) {
+        // There is nothing to stabilize against in the first merging cycle.
+        if (history == null) {
+            return;
+        }
+        final PostureFrame lastResult = history.getLastResult();
+        final int count = Math.min(mergedFrame.getSkeletonCount(), lastResult.getSkeletonCount());
+        for (int i = 0; i < count; i++) {
+            if (lastResult.isEmpty(i) || mergedFrame.isEmpty(i)) {
+                continue;
+            }
+            mergedFrame.getPackedSkeleton(i).scale(remainingFactor).addScaled(lastResult.getPackedSkeleton(i), stabilizationFactor);
+        }
     }
 }
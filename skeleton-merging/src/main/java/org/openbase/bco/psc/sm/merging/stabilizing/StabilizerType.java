@@ -0,0 +1,40 @@
+package org.openbase.bco.psc.sm.merging.stabilizing;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Skeleton Merging
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+
+/**
+ * An enum of the different stabilizers that can be applied to the merged skeletons.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public enum StabilizerType {
+    /**
+     * Exponential smoothing of the joint positions with a fixed stabilization factor.
+     */
+    EXPONENTIAL,
+    /**
+     * One-Euro filter, which adapts the smoothing of each joint coordinate to its speed.
+     */
+    ONE_EURO
+}
@@ -0,0 +1,269 @@
+package org.openbase.bco.psc.sm.rsb;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Skeleton Merging
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.iface.Launchable;
+import org.slf4j.LoggerFactory;
+import rsb.Event;
+import rsb.Scope;
+
+/**
+ * Processes the events of every sensor on a pool of worker threads. Every sensor has its own bounded queue. If a
+ * sensor delivers events faster than they can be processed, its oldest queued events are dropped. Events of the same
+ * sensor are processed in order and never concurrently, so a slow or bursting sensor occupies at most one worker and
+ * never delays the events of the other sensors.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class SensorEventPipeline implements Launchable<Void> {
+
+    /**
+     * Logger instance.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(SensorEventPipeline.class);
+
+    /**
+     * Default number of events queued per sensor.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 2;
+
+    /**
+     * Number of worker threads.
+     */
+    private final int workerCount;
+    /**
+     * Number of events queued per sensor.
+     */
+    private final int queueCapacity;
+    /**
+     * Processes a single event of the sensor with the given scope.
+     */
+    private final BiConsumer<Scope, Event> processor;
+    /**
+     * The queues of all sensors by their scope.
+     */
+    private final ConcurrentHashMap<Scope, SensorQueue> queues = new ConcurrentHashMap<>();
+    /**
+     * Number of events that were dropped because a queue was full.
+     */
+    private final AtomicLong droppedEvents = new AtomicLong();
+    /**
+     * The worker pool, only available while the pipeline is active.
+     */
+    private volatile ExecutorService executor;
+
+    /**
+     * Constructor.
+     *
+     * @param workerCount number of worker threads.
+     * @param queueCapacity number of events queued per sensor.
+     * @param processor processes a single event of the sensor with the given scope.
+     */
+    public SensorEventPipeline(final int workerCount, final int queueCapacity, final BiConsumer<Scope, Event> processor) {
+        this.workerCount = workerCount;
+        this.queueCapacity = queueCapacity;
+        this.processor = processor;
+    }
+
+    /**
+     * Queues an event of the sensor with the given scope. Events submitted while the pipeline is not active are
+     * dropped.
+     *
+     * @param scope the scope identifying the sensor.
+     * @param event the event.
+     */
+    public void submit(final Scope scope, final Event event) {
+        final ExecutorService currentExecutor = executor;
+        if (currentExecutor == null) {
+            droppedEvents.incrementAndGet();
+            return;
+        }
+        final SensorQueue queue = queues.computeIfAbsent(scope, SensorQueue::new);
+        if (queue.offer(event)) {
+            execute(currentExecutor, queue);
+        }
+    }
+
+    /**
+     * Executes the task of a queue. If the execution is rejected, the queue is drained and marked as not scheduled,
+     * so that it is scheduled again once the pipeline is reactivated.
+     *
+     * @param executor the worker pool.
+     * @param queue the queue.
+     */
+    private void execute(final ExecutorService executor, final SensorQueue queue) {
+        try {
+            executor.execute(queue);
+        } catch (RejectedExecutionException ex) {
+            LOGGER.debug("Event processing skipped, because the pipeline is deactivated.");
+            queue.reset();
+        }
+    }
+
+    /**
+     * Gets the number of events that were dropped because a sensor delivered them faster than they were processed.
+     *
+     * @return the number of dropped events.
+     */
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws CouldNotPerformException {@inheritDoc}
+     * @throws InterruptedException {@inheritDoc}
+     */
+    @Override
+    public void activate() throws CouldNotPerformException, InterruptedException {
+        LOGGER.info("Activating sensor event pipeline with " + workerCount + " workers.");
+        final AtomicInteger threadCounter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workerCount, runnable -> {
+            final Thread thread = new Thread(runnable, "SensorEventPipeline-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws CouldNotPerformException {@inheritDoc}
+     * @throws InterruptedException {@inheritDoc}
+     */
+    @Override
+    public void deactivate() throws CouldNotPerformException, InterruptedException {
+        LOGGER.info("Deactivating sensor event pipeline.");
+        final ExecutorService currentExecutor = executor;
+        if (currentExecutor == null) {
+            return;
+        }
+        executor = null;
+        currentExecutor.shutdown();
+        if (!currentExecutor.awaitTermination(1, TimeUnit.SECONDS)) {
+            currentExecutor.shutdownNow();
+        }
+        queues.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public boolean isActive() {
+        return executor != null;
+    }
+
+    /**
+     * The queue of a single sensor. It is executed as a task whenever it becomes non-empty and processes one event per
+     * execution, so that all sensors share the workers fairly.
+     */
+    private class SensorQueue implements Runnable {
+
+        private final Scope scope;
+        private final ArrayDeque<Event> events = new ArrayDeque<>(queueCapacity);
+        /**
+         * True while a task of this queue is submitted or running.
+         */
+        private boolean scheduled;
+
+        private SensorQueue(final Scope scope) {
+            this.scope = scope;
+        }
+
+        /**
+         * Adds an event and drops the oldest one if the queue is full.
+         *
+         * @param event the event.
+         * @return true if the queue has to be scheduled.
+         */
+        private synchronized boolean offer(final Event event) {
+            if (events.size() >= queueCapacity) {
+                events.pollFirst();
+                droppedEvents.incrementAndGet();
+                LOGGER.trace("Dropped an event of scope " + scope + " because its queue is full.");
+            }
+            events.addLast(event);
+            if (scheduled) {
+                return false;
+            }
+            scheduled = true;
+            return true;
+        }
+
+        /**
+         * Drops all queued events and marks the queue as not scheduled.
+         */
+        private synchronized void reset() {
+            droppedEvents.addAndGet(events.size());
+            events.clear();
+            scheduled = false;
+        }
+
+        private synchronized Event poll() {
+            return events.pollFirst();
+        }
+
+        /**
+         * Marks the queue as not scheduled if it is empty.
+         *
+         * @return true if the queue still contains events.
+         */
+        private synchronized boolean reschedule() {
+            scheduled = !events.isEmpty();
+            return scheduled;
+        }
+
+        @Override
+        public void run() {
+            try {
+                final Event event = poll();
+                if (event != null) {
+                    processor.accept(scope, event);
+                }
+            } finally {
+                final ExecutorService currentExecutor = executor;
+                if (reschedule()) {
+                    if (currentExecutor == null) {
+                        reset();
+                    } else {
+                        execute(currentExecutor, this);
+                    }
+                }
+            }
+        }
+    }
+}
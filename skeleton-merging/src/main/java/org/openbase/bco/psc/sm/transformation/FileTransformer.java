@@ -47,6 +47,11 @@ public class FileTransformer extends Transformer {
      */
     private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(FileTransformer.class);
 
+    /**
+     * File the transformation is parsed from.
+     */
+    private final File transformFile;
+
     /**
      * Constructor.
      *
@@ -57,6 +62,17 @@ public class FileTransformer extends Transformer {
      */
     public FileTransformer(File transformFile) throws CouldNotPerformException {
         LOGGER.info("Initializing Transformer from file: " + transformFile.getAbsolutePath());
+        this.transformFile = transformFile;
+        reload();
+    }
+
+    /**
+     * Parses the transform-file again and replaces the transformation. If the file can not be parsed, the previous
+     * transformation is kept.
+     *
+     * @throws CouldNotPerformException is thrown, if the file can not be parsed.
+     */
+    public final void reload() throws CouldNotPerformException {
         try {
             setTransform(parseFile(transformFile));
         } catch (CouldNotPerformException ex) {
@@ -64,6 +80,15 @@ public class FileTransformer extends Transformer {
         }
     }
 
+    /**
+     * Gets the file the transformation is parsed from.
+     *
+     * @return the transform-file.
+     */
+    public File getTransformFile() {
+        return transformFile;
+    }
+
     /**
      * The function parses the file <code>transformFile</code> and creates a
      * <code>Transform3D</code>-object from it.
@@ -93,6 +118,8 @@ public class FileTransformer extends Transformer {
             int i = 0;
             boolean rot = false;
             boolean trans = false;
+            int rotationRows = 0;
+            boolean translationSet = false;
             try {
                 while ((myLine = bufRead.readLine()) != null) {
                     String[] line = new String[3];
@@ -113,6 +140,7 @@ public class FileTransformer extends Transformer {
                     }
                     if (rot) {
                         rotation.setRow(i, values);
+                        rotationRows++;
                         i++;
                         if (i == 3) {
                             i = 0;
@@ -121,9 +149,17 @@ public class FileTransformer extends Transformer {
                     }
                     if (trans) {
                         translation.set(values);
+                        translationSet = true;
                         trans = false;
                     }
                 }
+                // A partially written file must not replace a valid transformation with a zero matrix or vector.
+                if (rotationRows < 3 || rot) {
+                    throw new CouldNotPerformException("The rotation matrix in " + transformFile.getAbsolutePath() + " is incomplete.");
+                }
+                if (!translationSet) {
+                    throw new CouldNotPerformException("The translation vector in " + transformFile.getAbsolutePath() + " is missing.");
+                }
                 Transform3D camera_transform = new Transform3D(rotation, translation, 1.0);
                 return camera_transform;
             } finally {
@@ -133,7 +169,7 @@ public class FileTransformer extends Transformer {
                     throw new CouldNotPerformException("Could not close input " + transformFile.getAbsolutePath(), ex);
                 }
             }
-        } catch (IOException ex) {
+        } catch (IOException | RuntimeException ex) {
             throw new CouldNotPerformException("Could not parse file " + transformFile.getAbsolutePath(), ex);
         }
     }
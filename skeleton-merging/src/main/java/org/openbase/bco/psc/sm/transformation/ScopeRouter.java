@@ -0,0 +1,114 @@
+package org.openbase.bco.psc.sm.transformation;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Skeleton Merging
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import rsb.Scope;
+
+/**
+ * Immutable routing table that assigns the events of a scope to the transformer registered on the longest matching
+ * super scope. Resolved event scopes are cached, so that routing the events of a known sensor only takes a single hash
+ * lookup and does not allocate. The router is rebuilt and replaced as a whole whenever the transformers change.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class ScopeRouter {
+
+    /**
+     * Router without any transformers.
+     */
+    public static final ScopeRouter EMPTY = new ScopeRouter(new HashMap<>());
+    /**
+     * Maximal number of cached event scopes, protects against unbounded growth by unrelated scopes.
+     */
+    private static final int MAX_CACHE_SIZE = 1024;
+    /**
+     * Cache entry of event scopes without a transformer.
+     */
+    private static final Scope NO_ROUTE = new Scope("/");
+
+    /**
+     * The transformers by the scope they are registered on.
+     */
+    private final Map<Scope, Transformer> transformers;
+    /**
+     * The resolved transformer scope by event scope.
+     */
+    private final ConcurrentHashMap<Scope, Scope> resolvedScopes = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param transformers the transformers by the scope they are registered on. The map is copied.
+     */
+    public ScopeRouter(final Map<Scope, ? extends Transformer> transformers) {
+        this.transformers = new HashMap<>(transformers);
+    }
+
+    /**
+     * Resolves the longest super scope of the event scope that a transformer is registered on.
+     *
+     * @param eventScope the scope of the event.
+     * @return the scope of the transformer or null, if no transformer matches.
+     */
+    public Scope resolve(final Scope eventScope) {
+        final Scope cached = resolvedScopes.get(eventScope);
+        if (cached != null) {
+            return cached == NO_ROUTE ? null : cached;
+        }
+        Scope best = null;
+        int bestLength = -1;
+        for (final Scope superScope : eventScope.superScopes(true)) {
+            final int length = superScope.toString().length();
+            if (length > bestLength && transformers.containsKey(superScope)) {
+                best = superScope;
+                bestLength = length;
+            }
+        }
+        if (resolvedScopes.size() < MAX_CACHE_SIZE) {
+            resolvedScopes.put(eventScope, best == null ? NO_ROUTE : best);
+        }
+        return best;
+    }
+
+    /**
+     * Gets the transformer registered on exactly the given scope.
+     *
+     * @param transformerScope a scope returned by <code>resolve</code>.
+     * @return the transformer or null, if none is registered on the scope.
+     */
+    public Transformer getTransformer(final Scope transformerScope) {
+        return transformers.get(transformerScope);
+    }
+
+    /**
+     * Gets the number of registered transformers.
+     *
+     * @return the number of transformers.
+     */
+    public int size() {
+        return transformers.size();
+    }
+}
@@ -0,0 +1,187 @@
+package org.openbase.bco.psc.sm.transformation;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Skeleton Merging
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.printer.ExceptionPrinter;
+import org.openbase.jul.exception.printer.LogLevel;
+import org.openbase.jul.iface.Launchable;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the files of <code>FileTransformer</code>s and reloads a transformer whenever its file changes on disk, so
+ * that a recalibrated camera is used without a restart.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class TransformFileWatcher implements Launchable<Void> {
+
+    /**
+     * Logger instance.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(TransformFileWatcher.class);
+
+    /**
+     * The watched transformers by their file.
+     */
+    private final Map<Path, List<FileTransformer>> transformers = new HashMap<>();
+    /**
+     * The watch service, only available while the watcher is active.
+     */
+    private WatchService watchService;
+    /**
+     * The thread waiting for file changes.
+     */
+    private Thread watchThread;
+
+    /**
+     * Constructor.
+     *
+     * @param fileTransformers the transformers whose files are watched.
+     */
+    public TransformFileWatcher(final Collection<FileTransformer> fileTransformers) {
+        for (final FileTransformer transformer : fileTransformers) {
+            final Path path = transformer.getTransformFile().toPath().toAbsolutePath().normalize();
+            transformers.computeIfAbsent(path, k -> new ArrayList<>()).add(transformer);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws CouldNotPerformException {@inheritDoc}
+     * @throws InterruptedException {@inheritDoc}
+     */
+    @Override
+    public void activate() throws CouldNotPerformException, InterruptedException {
+        if (transformers.isEmpty() || watchService != null) {
+            return;
+        }
+        LOGGER.info("Watching " + transformers.size() + " transform-file(s) for changes.");
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            for (final Path path : transformers.keySet()) {
+                path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        } catch (IOException ex) {
+            closeWatchService();
+            throw new CouldNotPerformException("Could not watch the transform-files.", ex);
+        }
+        final WatchService service = watchService;
+        watchThread = new Thread(() -> watch(service), "TransformFileWatcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    /**
+     * Waits for changes of the watched files until the watch service is closed.
+     *
+     * @param service the watch service.
+     */
+    private void watch(final WatchService service) {
+        try {
+            while (true) {
+                final WatchKey key = service.take();
+                final Path directory = (Path) key.watchable();
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        continue;
+                    }
+                    final List<FileTransformer> changed = transformers.get(directory.resolve((Path) event.context()));
+                    if (changed == null) {
+                        continue;
+                    }
+                    try {
+                        changed.forEach(this::reload);
+                    } catch (RuntimeException ex) {
+                        // a single bad file must not stop watching the other files
+                        ExceptionPrinter.printHistory(new CouldNotPerformException("Could not reload the transformation from " + directory.resolve((Path) event.context()), ex), LOGGER, LogLevel.ERROR);
+                    }
+                }
+                key.reset();
+            }
+        } catch (ClosedWatchServiceException ex) {
+            LOGGER.debug("Stopped watching the transform-files.");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reload(final FileTransformer transformer) {
+        try {
+            transformer.reload();
+            LOGGER.info("Reloaded transformation from file " + transformer.getTransformFile().getAbsolutePath());
+        } catch (CouldNotPerformException ex) {
+            ExceptionPrinter.printHistory(new CouldNotPerformException("Keeping the previous transformation.", ex), LOGGER, LogLevel.WARN);
+        }
+    }
+
+    private void closeWatchService() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ex) {
+                ExceptionPrinter.printHistory(new CouldNotPerformException("Could not close the watch service.", ex), LOGGER, LogLevel.WARN);
+            }
+            watchService = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws CouldNotPerformException {@inheritDoc}
+     * @throws InterruptedException {@inheritDoc}
+     */
+    @Override
+    public void deactivate() throws CouldNotPerformException, InterruptedException {
+        closeWatchService();
+        if (watchThread != null) {
+            watchThread.join();
+            watchThread = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public boolean isActive() {
+        return watchService != null;
+    }
+}
@@ -0,0 +1,81 @@
+package org.openbase.bco.psc.sm.transformation;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Skeleton Merging
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import javax.media.j3d.Transform3D;
+import javax.vecmath.Quat4d;
+
+/**
+ * Immutable snapshot of a transformation, prepared for the transformation of kinect postures. A transformer replaces
+ * its snapshot as a whole, so readers always see a matching pair of matrix and quaternion without locking.
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public final class TransformSnapshot {
+
+    /**
+     * Row-major 4x4 matrix with the mirroring of the kinect's x- and y-axis already applied.
+     */
+    private final double[] positionMatrix;
+    /**
+     * Rotation of the transformation as quaternion in the order w, x, y, z.
+     */
+    private final double[] rotationQuaternion;
+
+    /**
+     * Constructor.
+     *
+     * @param transform the transformation from kinect to root coordinates.
+     */
+    public TransformSnapshot(final Transform3D transform) {
+        final double[] matrix = new double[16];
+        transform.get(matrix);
+        // The kinect coordinates are mirrored in x- and y-direction before the transformation.
+        for (int row = 0; row < 4; row++) {
+            matrix[row * 4] = -matrix[row * 4];
+            matrix[row * 4 + 1] = -matrix[row * 4 + 1];
+        }
+        final Quat4d quaternion = new Quat4d();
+        transform.get(quaternion);
+        this.positionMatrix = matrix;
+        this.rotationQuaternion = new double[]{quaternion.w, quaternion.x, quaternion.y, quaternion.z};
+    }
+
+    /**
+     * Gets the matrix used to transform positions.
+     *
+     * @return the row-major 4x4 matrix, which must not be modified.
+     */
+    public double[] getPositionMatrix() {
+        return positionMatrix;
+    }
+
+    /**
+     * Gets the quaternion used to transform rotations.
+     *
+     * @return the quaternion in the order w, x, y, z, which must not be modified.
+     */
+    public double[] getRotationQuaternion() {
+        return rotationQuaternion;
+    }
+}
@@ -21,16 +21,14 @@ package org.openbase.bco.psc.sm.transformation;
  * <http://www.gnu.org/licenses/gpl-3.0.html>.
  * #L%
  */
-import java.util.stream.Collectors;
 import javax.media.j3d.Transform3D;
-import javax.vecmath.Point3d;
-import javax.vecmath.Quat4d;
+import org.openbase.bco.psc.sm.merging.PostureFrame;
 import org.openbase.jul.exception.CouldNotPerformException;
 import org.slf4j.LoggerFactory;
+import rsb.Scope;
 import org.openbase.type.geometry.RotationType.Rotation;
 import org.openbase.type.geometry.TranslationType.Translation;
 import org.openbase.type.kinematics.Posture3DFloatType.Posture3DFloat;
-import org.openbase.type.tracking.TrackedPosture3DFloatType.TrackedPosture3DFloat;
 import org.openbase.type.tracking.TrackedPostures3DFloatType.TrackedPostures3DFloat;
 
 /**
@@ -45,9 +43,9 @@ public class Transformer {
      */
     private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(Transformer.class);
     /**
-     * Transform object used to transform the postures.
+     * The current transformation, replaced as a whole so that transforming never needs a lock.
      */
-    private Transform3D transform;
+    private volatile TransformSnapshot snapshot;
 
     /**
      * Constructor for the use in child-classes.
@@ -61,100 +59,117 @@ public class Transformer {
      * @param transform the transform object used to transform the postures.
      */
     public Transformer(Transform3D transform) {
-        this.transform = transform;
+        setTransform(transform);
     }
 
     /**
-     * Sets the internal transform object to the argument.
+     * Sets the internal transform object to the argument. The new transformation is used by all following
+     * transformations, transformations that are already running finish with the previous one.
      * For the use in child-classes.
      *
      * @param transform New transform object.
      */
-    protected final synchronized void setTransform(Transform3D transform) {
-        this.transform = transform;
+    protected final void setTransform(Transform3D transform) {
+        snapshot = transform == null ? null : new TransformSnapshot(transform);
     }
 
     /**
-     * Transforms the argument's coordinates to root coordinates.
+     * Gets the current transformation.
      *
-     * @param skeletons postures that shall be transformed.
-     * @return A copy of the <code>skeletons</code> argument with transformed coordinates.
+     * @return the current snapshot of the transformation.
      * @throws CouldNotPerformException is thrown, if the internal transform object is not set.
      */
-    public synchronized TrackedPostures3DFloat transform(TrackedPostures3DFloat skeletons) throws CouldNotPerformException {
-        if (transform == null) {
+    public TransformSnapshot getSnapshot() throws CouldNotPerformException {
+        final TransformSnapshot currentSnapshot = snapshot;
+        if (currentSnapshot == null) {
             throw new CouldNotPerformException("Transform is null.");
         }
-        LOGGER.trace("Transforming postures.");
-        TrackedPostures3DFloat.Builder posturesBuilder = skeletons.toBuilder().clone().clearPosture();
-        posturesBuilder.addAllPosture(skeletons.getPostureList().stream()
-                .map(this::transformTrackedPosture)
-                .collect(Collectors.toList()));
-        return posturesBuilder.build();
+        return currentSnapshot;
     }
 
     /**
-     * Transforms the argument's coordinates to root coordinates.
+     * Transforms the argument's coordinates to root coordinates. The kinect's x- and y-axis are mirrored before the
+     * transformation. All positions and rotations are transformed in place on a single copy of the message, positions
+     * or rotations with missing components are cleared.
      *
-     * @param skeleton posture that shall be transformed.
-     * @return A copy of the <code>skeleton</code> argument with transformed coordinates.
+     * @param skeletons postures that shall be transformed.
+     * @return A copy of the <code>skeletons</code> argument with transformed coordinates.
+     * @throws CouldNotPerformException is thrown, if the internal transform object is not set.
      */
-    private TrackedPosture3DFloat transformTrackedPosture(TrackedPosture3DFloat skeleton) {
-        TrackedPosture3DFloat.Builder tpBuilder = skeleton.toBuilder().clone().clearPosture();
-        tpBuilder.setPosture(transformPosture(skeleton.getPosture()));
-        return tpBuilder.build();
+    public TrackedPostures3DFloat transform(TrackedPostures3DFloat skeletons) throws CouldNotPerformException {
+        final TransformSnapshot currentSnapshot = getSnapshot();
+        final double[] matrix = currentSnapshot.getPositionMatrix();
+        final double[] quaternion = currentSnapshot.getRotationQuaternion();
+        LOGGER.trace("Transforming postures.");
+        TrackedPostures3DFloat.Builder posturesBuilder = skeletons.toBuilder();
+        for (int i = 0; i < posturesBuilder.getPostureCount(); i++) {
+            final Posture3DFloat.Builder postureBuilder = posturesBuilder.getPostureBuilder(i).getPostureBuilder();
+            for (int j = 0; j < postureBuilder.getPositionCount(); j++) {
+                transformPosition(postureBuilder.getPositionBuilder(j), matrix);
+            }
+            for (int j = 0; j < postureBuilder.getRotationCount(); j++) {
+                transformRotation(postureBuilder.getRotationBuilder(j), quaternion);
+            }
+        }
+        return posturesBuilder.build();
     }
 
     /**
-     * Transforms the argument's coordinates to root coordinates.
+     * Transforms the argument's coordinates to root coordinates and directly decodes them into a
+     * <code>PostureFrame</code> without creating an intermediate protobuf message. The kinect's x- and y-axis are
+     * mirrored before the transformation like in <code>transform</code>. Only the positions and confidences are
+     * decoded, the joint rotations are not used by the merging and therefore dropped. Positions with missing
+     * components are decoded as (0, 0, 0).
      *
-     * @param posture posture that shall be transformed.
-     * @return A copy of the <code>posture</code> argument with transformed coordinates.
+     * @param timestamp the timestamp of the resulting frame.
+     * @param scope the scope on which the postures were received.
+     * @param skeletons postures that shall be transformed.
+     * @return A frame containing the transformed postures.
+     * @throws CouldNotPerformException is thrown, if the internal transform object is not set.
      */
-    private Posture3DFloat transformPosture(Posture3DFloat posture) {
-        Posture3DFloat.Builder postureBuilder = posture.toBuilder().clone().clearPosition().clearRotation();
-        postureBuilder.addAllPosition(posture.getPositionList().stream()
-                .map(this::transformPosition)
-                .collect(Collectors.toList()));
-        postureBuilder.addAllRotation(posture.getRotationList().stream()
-                .map(this::transformRotation)
-                .collect(Collectors.toList()));
-        return postureBuilder.build();
+    public PostureFrame transformToFrame(final long timestamp, final Scope scope, final TrackedPostures3DFloat skeletons) throws CouldNotPerformException {
+        LOGGER.trace("Transforming postures into frame.");
+        return new PostureFrame(timestamp, scope, skeletons, getSnapshot().getPositionMatrix());
     }
 
     /**
-     * Transforms the argument to root coordinates.
+     * Transforms the argument to root coordinates. If one of the components is missing, all components are cleared.
      *
-     * @param translation translation that shall be transformed.
-     * @return The transformed <code>translation</code> argument.
+     * @param translation translation that shall be transformed in place.
+     * @param matrix the row-major 4x4 matrix used for the transformation.
      */
-    private Translation transformPosition(Translation translation) {
-        Translation.Builder transformedTranslation = translation.toBuilder().clone().clearX().clearY().clearZ();
+    private void transformPosition(Translation.Builder translation, double[] matrix) {
         if (translation.hasX() && translation.hasY() && translation.hasZ()) {
-            Point3d point = new Point3d(-translation.getX(), -translation.getY(), translation.getZ());
-            transform.transform(point);
-            transformedTranslation.setX(point.x).setY(point.y).setZ(point.z);
+            final double x = translation.getX();
+            final double y = translation.getY();
+            final double z = translation.getZ();
+            translation.setX(matrix[0] * x + matrix[1] * y + matrix[2] * z + matrix[3])
+                    .setY(matrix[4] * x + matrix[5] * y + matrix[6] * z + matrix[7])
+                    .setZ(matrix[8] * x + matrix[9] * y + matrix[10] * z + matrix[11]);
+        } else {
+            translation.clearX().clearY().clearZ();
         }
-        return transformedTranslation.build();
     }
 
     /**
-     * Transforms the argument to root coordinates.
+     * Transforms the argument to root coordinates by multiplying the rotation of the transformation from the left and
+     * normalizing the result. If one of the components is missing, all components are cleared.
      *
-     * @param rotation rotation that shall be transformed.
-     * @return The <code>rotation</code> argument.
+     * @param rotation rotation that shall be transformed in place.
+     * @param quaternion the rotation of the transformation in the order w, x, y, z.
      */
-    private Rotation transformRotation(Rotation rotation) {
-        Rotation.Builder transformedRotation = rotation.toBuilder().clone().clearQw().clearQx().clearQy().clearQz();
+    private void transformRotation(Rotation.Builder rotation, double[] quaternion) {
         if (rotation.hasQw() && rotation.hasQx() && rotation.hasQy() && rotation.hasQz()) {
-            Transform3D t = new Transform3D();
-            t.set(new Quat4d(rotation.getQw(), rotation.getQx(), rotation.getQy(), rotation.getQz()));
-            Transform3D multiply = new Transform3D();
-            multiply.mul(transform, t);
-            Quat4d result = new Quat4d();
-            multiply.get(result);
-            transformedRotation.setQw(result.w).setQx(result.x).setQy(result.y).setQz(result.z);
+            final double w1 = quaternion[0], x1 = quaternion[1], y1 = quaternion[2], z1 = quaternion[3];
+            final double w2 = rotation.getQw(), x2 = rotation.getQx(), y2 = rotation.getQy(), z2 = rotation.getQz();
+            final double w = w1 * w2 - x1 * x2 - y1 * y2 - z1 * z2;
+            final double x = w1 * x2 + x1 * w2 + y1 * z2 - z1 * y2;
+            final double y = w1 * y2 - x1 * z2 + y1 * w2 + z1 * x2;
+            final double z = w1 * z2 + x1 * y2 - y1 * x2 + z1 * w2;
+            final double norm = Math.sqrt(w * w + x * x + y * y + z * z);
+            rotation.setQw(w / norm).setQx(x / norm).setQy(y / norm).setQz(z / norm);
+        } else {
+            rotation.clearQw().clearQx().clearQy().clearQz();
         }
-        return transformedRotation.build();
     }
 }
@@ -0,0 +1,83 @@
+package org.openbase.bco.psc.sm;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Skeleton Merging
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+import org.openbase.jps.exception.JPValidationException;
+import rsb.Scope;
+
+/**
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class SkeletonMergingControllerTest {
+
+    private static final Scope RAW_BASE_SCOPE = new Scope("/pointing/skeleton");
+
+    /**
+     * Creates the file transformer scopes of two file transformers on the scopes /kinect1 and /kinect2.
+     */
+    private static Set<Scope> createFileScopes() {
+        final Set<Scope> fileScopes = new HashSet<>();
+        fileScopes.add(RAW_BASE_SCOPE.concat(new Scope("/kinect1")));
+        fileScopes.add(RAW_BASE_SCOPE.concat(new Scope("/kinect2")));
+        return fileScopes;
+    }
+
+    /**
+     * Test of checkScope method, of class SkeletonMergingController. Distinct scopes are accepted with multiple file
+     * transformers.
+     */
+    @Test
+    public void testDistinctScopes() throws JPValidationException {
+        System.out.println("distinctScopes");
+        final HashMap<Scope, String> registryScopes = new HashMap<>();
+        SkeletonMergingController.checkScope(RAW_BASE_SCOPE.concat(new Scope("/kinect3")), createFileScopes(), registryScopes);
+        registryScopes.put(RAW_BASE_SCOPE.concat(new Scope("/kinect3")), "unit3");
+        SkeletonMergingController.checkScope(RAW_BASE_SCOPE.concat(new Scope("/kinect4")), createFileScopes(), registryScopes);
+    }
+
+    /**
+     * Test of checkScope method, of class SkeletonMergingController. A registry scope of a file transformer is rejected.
+     */
+    @Test(expected = JPValidationException.class)
+    public void testFileScope() throws JPValidationException {
+        System.out.println("fileScope");
+        SkeletonMergingController.checkScope(RAW_BASE_SCOPE.concat(new Scope("/kinect2")), createFileScopes(), new HashMap<>());
+    }
+
+    /**
+     * Test of checkScope method, of class SkeletonMergingController. A scope occurring twice in the registry is
+     * rejected.
+     */
+    @Test(expected = JPValidationException.class)
+    public void testDuplicateRegistryScope() throws JPValidationException {
+        System.out.println("duplicateRegistryScope");
+        final HashMap<Scope, String> registryScopes = new HashMap<>();
+        registryScopes.put(RAW_BASE_SCOPE.concat(new Scope("/kinect3")), "unit3");
+        SkeletonMergingController.checkScope(RAW_BASE_SCOPE.concat(new Scope("/kinect3")), createFileScopes(), registryScopes);
+    }
+}
@@ -0,0 +1,129 @@
+package org.openbase.bco.psc.sm.merging;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Skeleton Merging
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.Random;
+import javafx.geometry.Point3D;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class PackedSkeleton3DTest {
+
+    private static final double DELTA = 0.0;
+
+    private static Skeleton3D createSkeleton(final Random random, final int jointCount) {
+        final Skeleton3D skeleton = new Skeleton3D();
+        for (int i = 0; i < jointCount; i++) {
+            skeleton.add(new Joint3D(new Point3D(random.nextDouble(), random.nextDouble(), random.nextDouble()), random.nextDouble()));
+        }
+        return skeleton;
+    }
+
+    private static void assertSkeletonEquals(final Skeleton3D expected, final Skeleton3D actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.getTrackId(), actual.getTrackId());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getPosition(), actual.get(i).getPosition());
+            assertEquals(expected.get(i).getConfidence(), actual.get(i).getConfidence(), DELTA);
+        }
+    }
+
+    /**
+     * Test of set and toSkeleton3D methods, of class PackedSkeleton3D.
+     */
+    @Test
+    public void testRoundTrip() {
+        System.out.println("roundTrip");
+        final Random random = new Random(42);
+        final Skeleton3D skeleton = createSkeleton(random, PackedSkeleton3D.JOINT_COUNT);
+        skeleton.setTrackId(7);
+        final PackedSkeleton3D packed = new PackedSkeleton3D().set(skeleton);
+        assertEquals(7, packed.getTrackId());
+        for (int i = 0; i < PackedSkeleton3D.JOINT_COUNT; i++) {
+            assertEquals(skeleton.get(i).getPosition().getX(), packed.getX(i), DELTA);
+            assertEquals(skeleton.get(i).getPosition().getY(), packed.getY(i), DELTA);
+            assertEquals(skeleton.get(i).getPosition().getZ(), packed.getZ(i), DELTA);
+            assertEquals(skeleton.get(i).getConfidence(), packed.getConfidence(i), DELTA);
+        }
+        assertSkeletonEquals(skeleton, packed.toSkeleton3D());
+        assertSkeletonEquals(skeleton, new PackedSkeleton3D().set(packed).toSkeleton3D());
+
+        // Missing joints are not taken over from a previous content.
+        final Skeleton3D partial = createSkeleton(random, 5);
+        packed.set(partial);
+        assertEquals(-1, packed.getTrackId());
+        assertSkeletonEquals(partial, packed.toSkeleton3D(5));
+        for (int i = 5; i < PackedSkeleton3D.JOINT_COUNT; i++) {
+            assertEquals(0.0, packed.getConfidence(i), DELTA);
+        }
+
+        // Mirroring twice restores the original skeleton.
+        packed.set(skeleton).mirror();
+        assertEquals(skeleton.get(PackedSkeleton3D.mirroredJoint(4)).getConfidence(), packed.getConfidence(4), DELTA);
+        assertSkeletonEquals(skeleton, packed.mirror().toSkeleton3D());
+    }
+
+    /**
+     * Test of getMean method, of class PackedSkeleton3D.
+     */
+    @Test
+    public void testGetMean() {
+        System.out.println("getMean");
+        final Skeleton3D skeleton = createSkeleton(new Random(7), PackedSkeleton3D.JOINT_COUNT);
+        final double[] mean = new PackedSkeleton3D().set(skeleton).getMean(new double[3]);
+        assertEquals(skeleton.getMean().getX(), mean[0], 1e-12);
+        assertEquals(skeleton.getMean().getY(), mean[1], 1e-12);
+        assertEquals(skeleton.getMean().getZ(), mean[2], 1e-12);
+    }
+
+    /**
+     * Test of acquire and release methods, of class PackedSkeleton3DPool.
+     */
+    @Test
+    public void testPoolReuse() {
+        System.out.println("poolReuse");
+        final PackedSkeleton3DPool pool = new PackedSkeleton3DPool();
+        final PackedSkeleton3D first = pool.acquire();
+        final PackedSkeleton3D second = pool.acquire();
+        assertNotSame(first, second);
+
+        pool.release(first);
+        pool.release(second);
+        final PackedSkeleton3D reused = pool.acquire();
+        assertSame(second, reused);
+        assertSame(first, pool.acquire());
+        assertNotSame(first, pool.acquire());
+
+        final Skeleton3D skeleton = createSkeleton(new Random(3), PackedSkeleton3D.JOINT_COUNT);
+        pool.release(reused);
+        final PackedSkeleton3D filled = pool.acquire(skeleton);
+        assertSame(reused, filled);
+        assertSkeletonEquals(skeleton, filled.toSkeleton3D());
+        assertEquals(0.0, filled.clear().getTotalConfidence(), DELTA);
+        assertEquals(-1, filled.getTrackId());
+    }
+}
@@ -0,0 +1,118 @@
+package org.openbase.bco.psc.sm.merging;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Skeleton Merging
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.openbase.bco.psc.sm.merging.stabilizing.StabilizerImpl;
+import org.openbase.type.kinematics.Posture3DFloatType.Posture3DFloat;
+import org.openbase.type.tracking.TrackedPosture3DFloatType.TrackedPosture3DFloat;
+import org.openbase.type.tracking.TrackedPostures3DFloatType.TrackedPostures3DFloat;
+import rsb.Scope;
+
+/**
+ * Measures how long sensor threads are blocked by <code>SkeletonMerger.postureUpdate</code> while the merging is
+ * running at 30 Hz. Every simulated sensor publishes frames as fast as possible.
+ * <p>
+ * Usage: <code>SkeletonMergerContentionBenchmark [sensors] [bodies] [durationMillis]</code>
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class SkeletonMergerContentionBenchmark {
+
+    private static final int FRAME_RATE = 30;
+
+    public static void main(final String[] args) throws InterruptedException {
+        final int sensors = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        final int bodies = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        final long durationMillis = args.length > 2 ? Long.parseLong(args[2]) : 10000;
+
+        final SkeletonMerger merger = new SkeletonMerger(new StabilizerImpl(0.1), AssociationType.CLUSTERING);
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+
+        final LongAdder updates = new LongAdder();
+        final LongAdder updateNanos = new LongAdder();
+        final AtomicLong maxUpdateNanos = new AtomicLong();
+        final List<Thread> threads = new ArrayList<>();
+        for (int sensor = 0; sensor < sensors; sensor++) {
+            final Scope scope = new Scope("/benchmark/kinect" + sensor);
+            final TrackedPostures3DFloat postures = createPostures(bodies, new Random(sensor));
+            final Thread thread = new Thread(() -> {
+                while (System.nanoTime() < deadline) {
+                    final PostureFrame frame = new PostureFrame(System.currentTimeMillis(), scope, postures);
+                    final long start = System.nanoTime();
+                    merger.postureUpdate(frame);
+                    final long duration = System.nanoTime() - start;
+                    updates.increment();
+                    updateNanos.add(duration);
+                    maxUpdateNanos.accumulateAndGet(duration, Math::max);
+                }
+            }, "sensor-" + sensor);
+            threads.add(thread);
+        }
+
+        long merges = 0;
+        long mergeNanos = 0;
+        long maxMergeNanos = 0;
+        threads.forEach(Thread::start);
+        final long period = TimeUnit.SECONDS.toNanos(1) / FRAME_RATE;
+        long next = System.nanoTime();
+        while (System.nanoTime() < deadline) {
+            final long start = System.nanoTime();
+            merger.createMergedData();
+            final long duration = System.nanoTime() - start;
+            merges++;
+            mergeNanos += duration;
+            maxMergeNanos = Math.max(maxMergeNanos, duration);
+            next += period;
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, next - System.nanoTime()));
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        System.out.println("Sensors: " + sensors + ", bodies per sensor: " + bodies + ", duration: " + durationMillis + "ms");
+        System.out.println("postureUpdate: " + updates.sum() + " calls, mean " + updateNanos.sum() / Math.max(1, updates.sum()) + "ns, max " + maxUpdateNanos.get() + "ns");
+        System.out.println("createMergedData: " + merges + " calls, mean " + mergeNanos / Math.max(1, merges) / 1000 + "us, max " + maxMergeNanos / 1000 + "us");
+    }
+
+    private static TrackedPostures3DFloat createPostures(final int bodies, final Random random) {
+        final TrackedPostures3DFloat.Builder posturesBuilder = TrackedPostures3DFloat.newBuilder();
+        for (int body = 0; body < bodies; body++) {
+            final TrackedPosture3DFloat.Builder postureBuilder = posturesBuilder.addPostureBuilder();
+            final Posture3DFloat.Builder positionBuilder = postureBuilder.getPostureBuilder();
+            for (int joint = 0; joint < PackedSkeleton3D.JOINT_COUNT; joint++) {
+                positionBuilder.addPositionBuilder()
+                        .setX(body * 1.5 + random.nextGaussian() * 0.02)
+                        .setY(random.nextGaussian() * 0.02)
+                        .setZ(joint * 0.07 + random.nextGaussian() * 0.02);
+                postureBuilder.addConfidence(1.0f);
+            }
+        }
+        return posturesBuilder.build();
+    }
+}
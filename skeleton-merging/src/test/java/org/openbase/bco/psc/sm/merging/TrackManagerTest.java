@@ -0,0 +1,144 @@
+package org.openbase.bco.psc.sm.merging;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Skeleton Merging
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.BitSet;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import rsb.Scope;
+
+/**
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class TrackManagerTest {
+
+    private static final long[] NONE = new long[0];
+
+    /**
+     * Creates a merged frame with one skeleton per offset, all joints of a skeleton are placed at (offset, 0, 0).
+     * Groups with an offset of NaN are empty.
+     */
+    private static PostureFrame createFrame(final long timestamp, final double... offsets) {
+        final PackedSkeleton3D[] skeletons = new PackedSkeleton3D[offsets.length];
+        final int[] jointCounts = new int[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            skeletons[i] = new PackedSkeleton3D();
+            if (!Double.isNaN(offsets[i])) {
+                for (int joint = 0; joint < PackedSkeleton3D.JOINT_COUNT; joint++) {
+                    skeletons[i].setJoint(joint, offsets[i], 0.0, 0.0, 1.0);
+                }
+                jointCounts[i] = PackedSkeleton3D.JOINT_COUNT;
+            }
+        }
+        return new PostureFrame(timestamp, new Scope("/"), skeletons, jointCounts);
+    }
+
+    /**
+     * Test of update method, of class TrackManager. Skeletons staying in their group keep their id.
+     */
+    @Test
+    public void testIdAssignment() {
+        System.out.println("idAssignment");
+        final TrackManager trackManager = new TrackManager();
+        final PostureFrame first = createFrame(0, 0.0, 3.0);
+        TrackUpdate update = trackManager.update(first);
+        assertArrayEquals(new long[]{0, 1}, update.getTrackIds());
+        assertArrayEquals(new long[]{0, 1}, update.getNewTracks());
+        assertArrayEquals(NONE, update.getLostTracks());
+        assertEquals(0, first.getPackedSkeleton(0).getTrackId());
+        assertEquals(1, first.getPackedSkeleton(1).getTrackId());
+
+        // Staying in the group within the maximal distance keeps the id.
+        final PostureFrame second = createFrame(100, 0.1, 3.1);
+        update = trackManager.update(second);
+        assertArrayEquals(new long[]{0, 1}, update.getTrackIds());
+        assertFalse(update.hasChanges());
+        assertEquals(1, second.getPackedSkeleton(1).getTrackId());
+    }
+
+    /**
+     * Test of update method, of class TrackManager. A group that was vacated and refilled by another skeleton in the
+     * same cycle gets a new id, while a group that kept one of its members keeps its id for large movements.
+     */
+    @Test
+    public void testRefilledGroup() {
+        System.out.println("refilledGroup");
+        final TrackManager trackManager = new TrackManager(TrackManager.DEFAULT_TIMEOUT, 0.5);
+        trackManager.update(createFrame(0, 0.0, 3.0));
+
+        final BitSet continuedGroups = new BitSet();
+        continuedGroups.set(1);
+        final PostureFrame frame = createFrame(100, 6.0, 4.0);
+        final TrackUpdate update = trackManager.update(frame, continuedGroups);
+        assertArrayEquals(new long[]{2, 1}, update.getTrackIds());
+        assertArrayEquals(new long[]{2}, update.getNewTracks());
+        assertArrayEquals(NONE, update.getLostTracks());
+        assertEquals(2, frame.getPackedSkeleton(0).getTrackId());
+    }
+
+    /**
+     * Test of update method, of class TrackManager. Skeletons appearing in another group resume close tracks.
+     */
+    @Test
+    public void testReidentification() {
+        System.out.println("reidentification");
+        final TrackManager trackManager = new TrackManager(TrackManager.DEFAULT_TIMEOUT, 0.5);
+        trackManager.update(createFrame(0, 0.0, 3.0));
+
+        TrackUpdate update = trackManager.update(createFrame(100, Double.NaN, 3.0));
+        assertArrayEquals(new long[]{-1, 1}, update.getTrackIds());
+        assertFalse(update.hasChanges());
+
+        // The skeleton close to the last position of track 0 resumes it, the far one opens a new track.
+        final PostureFrame frame = createFrame(200, Double.NaN, 3.0, 0.2, 10.0);
+        update = trackManager.update(frame);
+        assertArrayEquals(new long[]{-1, 1, 0, 2}, update.getTrackIds());
+        assertArrayEquals(new long[]{2}, update.getNewTracks());
+        assertArrayEquals(NONE, update.getLostTracks());
+        assertEquals(-1, frame.getPackedSkeleton(0).getTrackId());
+        assertEquals(0, frame.getPackedSkeleton(2).getTrackId());
+    }
+
+    /**
+     * Test of update method, of class TrackManager. Unseen tracks are retired after the timeout.
+     */
+    @Test
+    public void testExpiry() {
+        System.out.println("expiry");
+        final TrackManager trackManager = new TrackManager(1000, 0.5);
+        trackManager.update(createFrame(0, 0.0));
+
+        TrackUpdate update = trackManager.update(createFrame(1000, Double.NaN));
+        assertArrayEquals(new long[]{-1}, update.getTrackIds());
+        assertArrayEquals(NONE, update.getLostTracks());
+
+        update = trackManager.update(createFrame(1001, Double.NaN));
+        assertArrayEquals(new long[]{0}, update.getLostTracks());
+
+        // A retired track is not resumed anymore.
+        update = trackManager.update(createFrame(1100, 0.0));
+        assertArrayEquals(new long[]{1}, update.getTrackIds());
+        assertArrayEquals(new long[]{1}, update.getNewTracks());
+    }
+}
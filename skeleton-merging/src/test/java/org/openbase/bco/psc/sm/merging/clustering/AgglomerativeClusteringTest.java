@@ -0,0 +1,157 @@
+package org.openbase.bco.psc.sm.merging.clustering;
+
+/*
+ * -
+ * #%L
+ * BCO PSC Skeleton Merging
+ * %%
+ * Copyright (C) 2016 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.openbase.bco.psc.sm.merging.AssociationType;
+import org.openbase.bco.psc.sm.merging.PackedSkeleton3D;
+import org.openbase.bco.psc.sm.merging.PostureFrame;
+import org.openbase.bco.psc.sm.merging.SkeletonMerger;
+import org.openbase.bco.psc.sm.merging.stabilizing.StabilizerImpl;
+import org.openbase.type.tracking.TrackedPostures3DFloatType.TrackedPostures3DFloat;
+import rsb.Scope;
+
+/**
+ *
+ * @author <a href="mailto:thuppke@techfak.uni-bielefeld.de">Thoren Huppke</a>
+ */
+public class AgglomerativeClusteringTest {
+
+    /**
+     * Creates a frame containing one skeleton per offset, all joints of a skeleton are placed at (offset, 0, 0).
+     */
+    private static PostureFrame createFrame(final String scope, final double... offsets) {
+        final PackedSkeleton3D[] skeletons = new PackedSkeleton3D[offsets.length];
+        final int[] jointCounts = new int[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            skeletons[i] = new PackedSkeleton3D();
+            for (int joint = 0; joint < PackedSkeleton3D.JOINT_COUNT; joint++) {
+                skeletons[i].setJoint(joint, offsets[i], 0.0, 0.0, 1.0);
+            }
+            jointCounts[i] = PackedSkeleton3D.JOINT_COUNT;
+        }
+        return new PostureFrame(System.currentTimeMillis(), new Scope(scope), skeletons, jointCounts);
+    }
+
+    private static Map<String, PostureFrame> createFrames(final PostureFrame... frames) {
+        final Map<String, PostureFrame> inputFrames = new LinkedHashMap<>();
+        for (final PostureFrame frame : frames) {
+            inputFrames.put(frame.getKey(), frame);
+        }
+        return inputFrames;
+    }
+
+    /**
+     * Converts the clusters to sorted lists of "key:index" strings, so they can be compared independent of the order.
+     */
+    private static List<String> describe(final List<int[]> clusters, final DistanceMap distanceMap) {
+        final List<String> result = new ArrayList<>();
+        for (final int[] cluster : clusters) {
+            final String[] members = new String[cluster.length];
+            for (int i = 0; i < cluster.length; i++) {
+                members[i] = distanceMap.getKey(cluster[i]) + ":" + distanceMap.getPostureIndex(cluster[i]);
+            }
+            Arrays.sort(members);
+            result.add(String.join(",", members));
+        }
+        result.sort(null);
+        return result;
+    }
+
+    /**
+     * Test of sortedPairs method, of class DistanceMap.
+     */
+    @Test
+    public void testSortedPairs() {
+        System.out.println("sortedPairs");
+        final DistanceMap distanceMap = new DistanceMap(createFrames(createFrame("/a", 0.0, 5.0), createFrame("/b", 0.3, 5.1)));
+        assertEquals(4, distanceMap.size());
+        assertEquals(Double.MAX_VALUE, distanceMap.getDistance(0, 1), 0.0);
+        final int[] pairs = distanceMap.sortedPairs(1.0);
+        assertEquals(2, pairs.length);
+        // (a:1, b:1) with a distance of 0.1 comes before (a:0, b:0) with a distance of 0.3.
+        assertEquals(1 * 4 + 3, pairs[0]);
+        assertEquals(0 * 4 + 2, pairs[1]);
+    }
+
+    /**
+     * Test of cluster method, of class AgglomerativeClustering.
+     */
+    @Test
+    public void testClusterThreshold() {
+        System.out.println("clusterThreshold");
+        final Map<String, PostureFrame> inputFrames = createFrames(
+                createFrame("/a", 0.0, 5.0),
+                createFrame("/b", 0.1, 5.2),
+                createFrame("/c", 0.3));
+        final DistanceMap distanceMap = new DistanceMap(inputFrames);
+
+        assertEquals(Arrays.asList("/a:0,/b:0,/c:0", "/a:1,/b:1"), describe(AgglomerativeClustering.cluster(distanceMap, 0.5), distanceMap));
+        assertEquals(Arrays.asList("/a:0,/b:0", "/a:1", "/b:1", "/c:0"), describe(AgglomerativeClustering.cluster(distanceMap, 0.15), distanceMap));
+        assertEquals(5, AgglomerativeClustering.cluster(distanceMap, 0.05).size());
+    }
+
+    /**
+     * Test of cluster method, of class AgglomerativeClustering. Clusters are only joined if all members are close.
+     */
+    @Test
+    public void testClusterCompleteLinkage() {
+        System.out.println("clusterCompleteLinkage");
+        final Map<String, PostureFrame> inputFrames = createFrames(
+                createFrame("/a", 0.0),
+                createFrame("/b", 0.3),
+                createFrame("/c", 0.65));
+        final DistanceMap distanceMap = new DistanceMap(inputFrames);
+        // b is closer to a, c can not join as it is too far away from a.
+        assertEquals(Arrays.asList("/a:0,/b:0", "/c:0"), describe(AgglomerativeClustering.cluster(distanceMap, 0.5), distanceMap));
+    }
+
+    /**
+     * Test of the association types of class SkeletonMerger.
+     */
+    @Test
+    public void testAssociationTypes() {
+        System.out.println("associationTypes");
+        for (final AssociationType associationType : AssociationType.values()) {
+            final SkeletonMerger merger = new SkeletonMerger(new StabilizerImpl(0.0), associationType);
+            merger.postureUpdate(createFrame("/a", 0.0, 3.0));
+            merger.postureUpdate(createFrame("/b", 3.2, 0.2));
+            final TrackedPostures3DFloat merged = merger.createMergedData(System.currentTimeMillis());
+            assertEquals(associationType.name(), 2, merged.getPostureCount());
+            final double[] xs = new double[2];
+            for (int i = 0; i < 2; i++) {
+                assertEquals(PackedSkeleton3D.JOINT_COUNT, merged.getPosture(i).getPosture().getPositionCount());
+                xs[i] = merged.getPosture(i).getPosture().getPosition(0).getX();
+            }
+            Arrays.sort(xs);
+            assertEquals(associationType.name(), 0.1, xs[0], 1e-6);
+            assertEquals(associationType.name(), 3.1, xs[1], 1e-6);
+        }
+    }
+}